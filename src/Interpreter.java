@@ -20,8 +20,14 @@ import java.io.FileNotFoundException;
 import java.util.Scanner;
 
 import ast.EvaluationException;
+import ast.MemoCache;
+import ast.MemoFunction;
+import ast.Memoizer;
+import ast.ParallelMap;
 import ast.SyntaxTree;
+import ast.nodes.IncrementalChecker;
 import ast.typesystem.TypeException;
+import compiler.CompileException;
 import environment.Environment;
 import environment.TypeEnvironment;
 import merrimackutil.cli.LongOption;
@@ -43,6 +49,9 @@ public class Interpreter
     private static boolean doFile = false;       // Run program in the file.
     private static String fileName = null;       // File containing the program.
     private static boolean displayAST = false;   // Display the AST resulting from parsing.
+    private static boolean doCompile = false;    // Compile the program to bytecode.
+    private static boolean doVM = false;         // Run the program on the VM.
+    private static boolean doMemo = false;       // Memoize every function.
 
     /**
      * Show the license message to the screen.
@@ -62,13 +71,21 @@ public class Interpreter
     public static void usage()
     {
         System.err.println("usage:");
-        System.err.println("   mfl [--trace] [--ast] --file <filename>");
-        System.err.println("   mfl [--trace] [--ast]");
+        System.err.println("   mfl [--trace] [--ast] [--compile | --vm] [memo options] [parallel options] --file <filename>");
+        System.err.println("   mfl [--trace] [--ast] [memo options] [parallel options]");
         System.err.println("   mfl --help");
         System.err.println("options:");
         System.err.println("--trace, -t \t\tTurn on interpreter tracing.");
         System.err.println("--file, -f \t\tInterpret the file.");
         System.err.println("--ast,-a \t\tDisplay the abstract syntax tree.");
+        System.err.println("--compile, -c \t\tCompile the file to JVM bytecode.");
+        System.err.println("--vm, -v \t\tRun the file on the bytecode VM.");
+        System.err.println("--memo, -m \t\tMemoize every top-level function.");
+        System.err.println("--memo-size, -s <n> \tCache at most n results per function.");
+        System.err.println("--memo-policy, -p <p> \tEvict by policy p, lru or tinylfu.");
+        System.err.println("--parallel, -j <n> \tMap long lists, and check long programs, on n threads.");
+        System.err.println("--parallel-min, -n <n> \tMap lists of at least n elements in parallel.");
+        System.err.println("--parallel-check-min, -k <n> \tCheck programs of at least n expressions in parallel.");
         System.err.println("--help, -h \t\tDisplay this message");
         System.exit(1);
     }
@@ -86,10 +103,13 @@ public class Interpreter
         Environment env = null; // For the first line, mark that we don't have
                                 // an environment.
         TypeEnvironment tenv = null;    // The type environment to keep around.
+        IncrementalChecker checker = new IncrementalChecker(); // Remembers
+                                        // the definitions already checked.
         
         showLicense();
         System.out.println();
         System.out.println("MFL interactive mode. Enter .quit to exit.");
+        System.out.println("Enter .load <file> to load a file, or to reload it once edited.");
         while (!exit)
         {
             System.out.print("mfl> ");
@@ -99,8 +119,23 @@ public class Interpreter
             line.trim();
             if (!line.isEmpty() && !line.equals(".quit"))
             {
-                // Try to interpret the program.
-                parse = new MFLParser(line);
+                // A file loaded replaces the definitions made so far, only
+                // the definitions changed since it was last loaded are
+                // checked again.
+                boolean load = line.startsWith(".load ");
+                try
+                {
+                    if (load)
+                        parse = new MFLParser(
+                                new File(line.substring(6).trim()));
+                    else
+                        parse = new MFLParser(line);
+                }
+                catch (FileNotFoundException ex)
+                {
+                    System.out.println(ex.getMessage());
+                    continue;
+                }
 
                 // Determine if we should turn on tracing.
                 if (doTracing)
@@ -116,11 +151,12 @@ public class Interpreter
                 if (displayAST)
                     ast.printTree();
 
-                if (env != null)
+                if (env != null && !load)
                     ast.setEnvironment(env);
                     
-                if (tenv != null)
+                if (tenv != null && !load)
                     ast.setTypeEnvironment(tenv);
+                ast.setChecker(checker);
                 try
                 {
                     String type = ast.getType();
@@ -178,13 +214,24 @@ public class Interpreter
             {
                 if (!ast.typeCheck())
                     System.exit(1);
-                Object res = ast.evaluate();
+                Object res;
+                if (doCompile)
+                    res = ast.compile().run();
+                else if (doVM)
+                    res = ast.assemble().run();
+                else
+                    res = ast.evaluate();
                 System.out.println(res + " : " + ast.getType());
+                showMemoStatistics();
             }
             catch (EvaluationException ex)
             {
                 System.out.println(ex.getMessage());
             }
+            catch (CompileException cex)
+            {
+                System.out.println(cex.getMessage());
+            }
             catch (TypeException tex)
             {   
                 // This should *never* happen.
@@ -199,6 +246,15 @@ public class Interpreter
         }
     }
 
+    /**
+     * Shows the cache statistics of the memoized functions.
+     */
+    public static void showMemoStatistics()
+    {
+        for (MemoFunction memo : Memoizer.getFunctions())
+            System.err.println("memo " + memo.getStatistics());
+    }
+
     /**
      * Process the command line arguments.
      * 
@@ -208,17 +264,25 @@ public class Interpreter
     {
         OptionParser parser;
 
-        LongOption[] opts = new LongOption[4];
+        LongOption[] opts = new LongOption[12];
         opts[0] = new LongOption("help", false, 'h');
         opts[1] = new LongOption("file", true, 'f');
         opts[2] = new LongOption("trace", false, 't');
         opts[3] = new LongOption("ast", false, 'a');
+        opts[4] = new LongOption("compile", false, 'c');
+        opts[5] = new LongOption("vm", false, 'v');
+        opts[6] = new LongOption("memo", false, 'm');
+        opts[7] = new LongOption("memo-size", true, 's');
+        opts[8] = new LongOption("memo-policy", true, 'p');
+        opts[9] = new LongOption("parallel", true, 'j');
+        opts[10] = new LongOption("parallel-min", true, 'n');
+        opts[11] = new LongOption("parallel-check-min", true, 'k');
 
         Tuple<Character, String> currOpt;
 
         parser = new OptionParser(args);
         parser.setLongOpts(opts);
-        parser.setOptString("hf:ta");
+        parser.setOptString("hf:tacvms:p:j:n:k:");
 
         while (parser.getOptIdx() != args.length)
         {
@@ -239,6 +303,71 @@ public class Interpreter
             case 'a':
                 displayAST = true;
                 break;
+            case 'c':
+                doCompile = true;
+                break;
+            case 'v':
+                doVM = true;
+                break;
+            case 'm':
+                doMemo = true;
+                Memoizer.setMemoizeAll(true);
+                break;
+            case 's':
+                try
+                {
+                    Memoizer.setCapacity(
+                            Integer.parseInt(currOpt.getSecond()));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    usage();
+                }
+                break;
+            case 'p':
+                try
+                {
+                    Memoizer.setPolicy(MemoCache.Policy
+                            .valueOf(currOpt.getSecond().toUpperCase()));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    usage();
+                }
+                break;
+            case 'j':
+                try
+                {
+                    ParallelMap.setParallelism(
+                            Integer.parseInt(currOpt.getSecond()));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    usage();
+                }
+                break;
+            case 'n':
+                try
+                {
+                    ParallelMap.setThreshold(
+                            Integer.parseInt(currOpt.getSecond()));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    usage();
+                }
+                break;
+            case 'k':
+                try
+                {
+                    ParallelMap.setCheckThreshold(
+                            Integer.parseInt(currOpt.getSecond()));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    usage();
+                }
+                break;
             case '?':
                 usage();
                 break;
@@ -246,7 +375,12 @@ public class Interpreter
         }
 
         // Verify the options are not conflicting.
-        if (doFile && doHelp || doTracing && doHelp || displayAST && doHelp)
+        if (doFile && doHelp || doTracing && doHelp || displayAST && doHelp
+                || doMemo && doHelp)
+            usage();
+
+        // Only a file can be compiled, and only by one backend.
+        if ((doCompile || doVM) && !doFile || doCompile && doVM)
             usage();
     }
 
@@ -259,7 +393,7 @@ public class Interpreter
     public static void main(String[] args)
     {
         // Determine if we are looking at file or command line.
-        if (args.length > 4)
+        if (args.length > 15)
             usage();
 
         // Determine what the user requested.
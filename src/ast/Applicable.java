@@ -0,0 +1,36 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+/**
+ * A function value that can be applied to an argument. The interpreter, the
+ * JVM compiler, and the bytecode VM each have their own closures; this lets
+ * the runtime operations shared between them apply any of them.
+ *
+ * @author Zach Kissel
+ */
+public interface Applicable
+{
+    /**
+     * Applies the function to {@code arg}.
+     *
+     * @param arg the argument value.
+     * @return the result of the application.
+     * @throws EvaluationException if the evaluation of the body fails.
+     */
+    Object apply(Object arg) throws EvaluationException;
+}
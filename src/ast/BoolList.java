@@ -0,0 +1,208 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of bools packed into the bits of an array of longs. The tail of the
+ * list is a view of the same bits.
+ *
+ * @author Zach Kissel
+ */
+public final class BoolList extends ListValue
+{
+    private long[] bits;            // The elements, shared by the tails.
+    private int offset;             // The bit of the first element.
+    private int length;             // The length of the list.
+
+    private BoolList(long[] bits, int offset, int length)
+    {
+        this.bits = bits;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Packs the first {@code count} values of an array, which are all
+     * bools.
+     */
+    static BoolList from(Object[] values, int count)
+    {
+        long[] packed = new long[(count + 63) >>> 6];
+        for (int i = 0; i < count; i++)
+            if ((Boolean) values[i])
+                packed[i >>> 6] |= 1L << i;
+        return new BoolList(packed, 0, count);
+    }
+
+    /**
+     * Get an element without boxing it.
+     *
+     * @param index the position of the element, less than the length.
+     * @return the element.
+     */
+    public boolean getBoolean(int index)
+    {
+        int bit = offset + index;
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return length;
+    }
+
+    @Override
+    public Object head()
+    {
+        return getBoolean(0);
+    }
+
+    @Override
+    public ListValue tail()
+    {
+        if (length == 1)
+            return EMPTY;
+        return new BoolList(bits, offset + 1, length - 1);
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(index);
+        return getBoolean(index);
+    }
+
+    @Override
+    public ListValue take(int count)
+    {
+        if (count >= length)
+            return this;
+        if (count <= 0)
+            return EMPTY;
+        return new BoolList(bits, offset, count);
+    }
+
+    @Override
+    public ListValue drop(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        return new BoolList(bits, offset + count, length - count);
+    }
+
+    @Override
+    public boolean setOwned(int index, Object value)
+    {
+        if (!(value instanceof Boolean))
+            return false;
+        set(bits, offset + index, (Boolean) value);
+        changed();
+        return true;
+    }
+
+    @Override
+    public ListValue dropOwned(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        offset += count;
+        length -= count;
+        changed();
+        return this;
+    }
+
+    @Override
+    public ListValue appendOwned(ListValue other)
+    {
+        if (!(other instanceof BoolList))
+            return append(other);
+
+        BoolList rest = (BoolList) other;
+        int count = length + rest.length;
+        if (offset + count > bits.length << 6)
+        {
+            long[] grown = new long[(2 * count + 63) >>> 6];
+            for (int i = 0; i < length; i++)
+                set(grown, i, getBoolean(i));
+            bits = grown;
+            offset = 0;
+        }
+        for (int i = 0; i < rest.length; i++)
+            set(bits, offset + length + i, rest.getBoolean(i));
+        length = count;
+        changed();
+        return this;
+    }
+
+    /**
+     * Sets or clears a bit of an array of longs.
+     */
+    private static void set(long[] bits, int bit, boolean value)
+    {
+        if (value)
+            bits[bit >>> 6] |= 1L << bit;
+        else
+            bits[bit >>> 6] &= ~(1L << bit);
+    }
+
+    @Override
+    protected ListValue pack(ListValue other)
+    {
+        if (!(other instanceof BoolList))
+            return null;
+
+        BoolList rest = (BoolList) other;
+        int count = length + rest.length;
+        long[] packed = new long[(count + 63) >>> 6];
+        for (int i = 0; i < count; i++)
+            if (i < length ? getBoolean(i) : rest.getBoolean(i - length))
+                packed[i >>> 6] |= 1L << i;
+        return new BoolList(packed, 0, count);
+    }
+
+    @Override
+    public Iterator<Object> iterator()
+    {
+        return new Iterator<Object>()
+        {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < length;
+            }
+
+            @Override
+            public Object next()
+            {
+                if (next == length)
+                    throw new NoSuchElementException();
+                return getBoolean(next++);
+            }
+        };
+    }
+}
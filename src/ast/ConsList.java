@@ -0,0 +1,121 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list made of cons cells. It holds the lists whose elements can not be
+ * packed and the lists made by consing onto another list; the last cell may
+ * link to a packed list.
+ *
+ * @author Zach Kissel
+ */
+final class ConsList extends ListValue
+{
+    private final Object head;      // The first element.
+    private final ListValue tail;   // The rest of the list.
+    private final int length;       // The length of the list.
+
+    /**
+     * Constructs a cell, or the empty list if {@code tail} is null.
+     *
+     * @param head the first element.
+     * @param tail the rest of the list.
+     */
+    ConsList(Object head, ListValue tail)
+    {
+        this.head = head;
+        this.tail = tail;
+        this.length = tail == null ? 0 : tail.size() + 1;
+    }
+
+    /**
+     * Makes a chain of cells holding the first {@code count} values of an
+     * array.
+     */
+    static ListValue from(Object[] values, int count)
+    {
+        ListValue lst = EMPTY;
+        for (int i = count - 1; i >= 0; i--)
+            lst = new ConsList(values[i], lst);
+        return lst;
+    }
+
+    @Override
+    public int size()
+    {
+        return length;
+    }
+
+    @Override
+    public Object head()
+    {
+        if (length == 0)
+            throw new NoSuchElementException();
+        return head;
+    }
+
+    @Override
+    public ListValue tail()
+    {
+        if (length == 0)
+            throw new NoSuchElementException();
+        return tail;
+    }
+
+    /**
+     * Get an iterator over the elements of the list. The iterator follows
+     * the cells and then the list the last cell links to.
+     *
+     * @return the iterator.
+     */
+    @Override
+    public Iterator<Object> iterator()
+    {
+        return new Iterator<Object>()
+        {
+            private ListValue cell = ConsList.this;
+            private Iterator<Object> rest = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (rest != null)
+                    return rest.hasNext();
+                if (cell instanceof ConsList)
+                    return !cell.isEmpty();
+                rest = cell.iterator();
+                return rest.hasNext();
+            }
+
+            @Override
+            public Object next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (rest != null)
+                    return rest.next();
+
+                ConsList curr = (ConsList) cell;
+                cell = curr.tail;
+                return curr.head;
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.HashMap;
+
+/**
+ * The constant values of a syntax tree. Constant lists are interned so every
+ * occurrence of the same list literal shares one value. Lists never change,
+ * so a pooled list is safe to share.
+ *
+ * @author Zach Kissel
+ */
+public final class ConstantPool
+{
+    private final HashMap<ListValue, ListValue> lists; // The lists.
+
+    /**
+     * Constructs an empty pool.
+     */
+    public ConstantPool()
+    {
+        lists = new HashMap<>();
+    }
+
+    /**
+     * Get the shared copy of a constant value. A list equal to one already in
+     * the pool is replaced by the pooled list; any other value is its own
+     * shared copy.
+     *
+     * @param value the constant value.
+     * @return the value to share.
+     */
+    public Object intern(Object value)
+    {
+        if (!(value instanceof ListValue))
+            return value;
+
+        ListValue list = (ListValue) value;
+        ListValue pooled = lists.putIfAbsent(list, list);
+        return pooled == null ? list : pooled;
+    }
+
+    /**
+     * Get the number of distinct lists in the pool.
+     *
+     * @return the number of lists.
+     */
+    public int size()
+    {
+        return lists.size();
+    }
+}
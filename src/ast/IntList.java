@@ -0,0 +1,193 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of ints packed into an array. The tail of the list is a view of
+ * the same array.
+ *
+ * @author Zach Kissel
+ */
+public final class IntList extends ListValue
+{
+    private int[] values;           // The elements, shared by the tails.
+    private int offset;             // The index of the first element.
+    private int length;             // The length of the list.
+
+    private IntList(int[] values, int offset, int length)
+    {
+        this.values = values;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Packs the first {@code count} values of an array, which are all
+     * ints.
+     */
+    static IntList from(Object[] values, int count)
+    {
+        int[] packed = new int[count];
+        for (int i = 0; i < count; i++)
+            packed[i] = (Integer) values[i];
+        return new IntList(packed, 0, count);
+    }
+
+    /**
+     * Get an element without boxing it.
+     *
+     * @param index the position of the element, less than the length.
+     * @return the element.
+     */
+    public int getInt(int index)
+    {
+        return values[offset + index];
+    }
+
+    @Override
+    public int size()
+    {
+        return length;
+    }
+
+    @Override
+    public Object head()
+    {
+        return values[offset];
+    }
+
+    @Override
+    public ListValue tail()
+    {
+        if (length == 1)
+            return EMPTY;
+        return new IntList(values, offset + 1, length - 1);
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(index);
+        return values[offset + index];
+    }
+
+    @Override
+    public ListValue take(int count)
+    {
+        if (count >= length)
+            return this;
+        if (count <= 0)
+            return EMPTY;
+        return new IntList(values, offset, count);
+    }
+
+    @Override
+    public ListValue drop(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        return new IntList(values, offset + count, length - count);
+    }
+
+    @Override
+    public boolean setOwned(int index, Object value)
+    {
+        if (!(value instanceof Integer))
+            return false;
+        values[offset + index] = (Integer) value;
+        changed();
+        return true;
+    }
+
+    @Override
+    public ListValue dropOwned(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        offset += count;
+        length -= count;
+        changed();
+        return this;
+    }
+
+    @Override
+    public ListValue appendOwned(ListValue other)
+    {
+        if (!(other instanceof IntList))
+            return append(other);
+
+        IntList rest = (IntList) other;
+        int count = length + rest.length;
+        if (offset + count > values.length)
+        {
+            int[] grown = new int[2 * count];
+            System.arraycopy(values, offset, grown, 0, length);
+            values = grown;
+            offset = 0;
+        }
+        System.arraycopy(rest.values, rest.offset, values, offset + length,
+                rest.length);
+        length = count;
+        changed();
+        return this;
+    }
+
+    @Override
+    protected ListValue pack(ListValue other)
+    {
+        if (!(other instanceof IntList))
+            return null;
+
+        IntList rest = (IntList) other;
+        int[] packed = new int[length + rest.length];
+        System.arraycopy(values, offset, packed, 0, length);
+        System.arraycopy(rest.values, rest.offset, packed, length,
+                rest.length);
+        return new IntList(packed, 0, packed.length);
+    }
+
+    @Override
+    public Iterator<Object> iterator()
+    {
+        return new Iterator<Object>()
+        {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < length;
+            }
+
+            @Override
+            public Object next()
+            {
+                if (next == length)
+                    throw new NoSuchElementException();
+                return values[offset + next++];
+            }
+        };
+    }
+}
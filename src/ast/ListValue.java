@@ -0,0 +1,432 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The list value of MFL programs. A list the program can reach from more
+ * than one place never changes: taking the tail of a list takes constant
+ * time, and the tail shares the storage of the list it came from. A list
+ * knows its length without a walk.
+ *
+ * The elements of a list all have the same type, so a list of ints, reals,
+ * or bools is packed into an array of the primitive values when it is built.
+ * Other lists, and lists made by consing onto another list, are chains of
+ * cells. Appending long lists makes a vector, a balanced tree of arrays.
+ * Lists with the same elements are equal whatever their storage.
+ *
+ * A list nothing else in the program can reach, found by the resolver, may
+ * be changed in place by the operation that consumes it; the
+ * {@code *Owned} methods are only called on such lists.
+ *
+ * @author Zach Kissel
+ */
+public abstract class ListValue implements Iterable<Object>
+{
+    /**
+     * The empty list.
+     */
+    public static final ListValue EMPTY = new ConsList(null, null);
+
+    private int hash;   // The hash code once it is computed.
+
+    /**
+     * Makes a list of the values of an array, packed if the values are all
+     * ints, all reals, or all bools.
+     *
+     * @param values the elements of the list in order.
+     * @return the list.
+     */
+    public static ListValue of(Object... values)
+    {
+        return of(values, values.length);
+    }
+
+    /**
+     * Makes a list of the first {@code count} values of an array, packed if
+     * the values are all ints, all reals, or all bools.
+     *
+     * @param values the elements of the list in order.
+     * @param count  the number of elements.
+     * @return the list.
+     */
+    public static ListValue of(Object[] values, int count)
+    {
+        if (count == 0)
+            return EMPTY;
+
+        Class<?> type = values[0].getClass();
+        for (int i = 1; i < count; i++)
+            if (values[i].getClass() != type)
+                return ConsList.from(values, count);
+
+        if (type == Integer.class)
+            return IntList.from(values, count);
+        if (type == Double.class)
+            return RealList.from(values, count);
+        if (type == Boolean.class)
+            return BoolList.from(values, count);
+        return ConsList.from(values, count);
+    }
+
+    /**
+     * Get the number of elements of the list.
+     *
+     * @return the length of the list.
+     */
+    public abstract int size();
+
+    /**
+     * Get the first element of the list.
+     *
+     * @return the first element.
+     * @throws NoSuchElementException if the list is empty.
+     */
+    public abstract Object head();
+
+    /**
+     * Get the list of all but the first element, it shares the storage of
+     * this list.
+     *
+     * @return the tail of the list.
+     * @throws NoSuchElementException if the list is empty.
+     */
+    public abstract ListValue tail();
+
+    /**
+     * Determine if the list is empty.
+     *
+     * @return true if the list has no elements.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Makes the list with {@code value} in front of this list. The new list
+     * shares the storage of this list.
+     *
+     * @param value the new first element.
+     * @return the new list.
+     */
+    public ListValue cons(Object value)
+    {
+        return new ConsList(value, this);
+    }
+
+    /**
+     * Get the element at a position of the list. Packed lists and vectors
+     * find it without a walk.
+     *
+     * @param index the position, counting from zero.
+     * @return the element.
+     * @throws IndexOutOfBoundsException if there is no such position.
+     */
+    public Object get(int index)
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(index);
+        return drop(index).head();
+    }
+
+    /**
+     * Get the list of the first {@code count} elements. Packed lists and
+     * vectors give a view of their storage, other lists are copied.
+     *
+     * @param count the number of elements to keep.
+     * @return the front of the list.
+     */
+    public ListValue take(int count)
+    {
+        if (count >= size())
+            return this;
+
+        Builder front = new Builder();
+        Iterator<Object> it = iterator();
+        for (int i = 0; i < count; i++)
+            front.add(it.next());
+        return front.build();
+    }
+
+    /**
+     * Get the list without its first {@code count} elements, it shares the
+     * storage of this list.
+     *
+     * @param count the number of elements to skip.
+     * @return the rest of the list.
+     */
+    public ListValue drop(int count)
+    {
+        ListValue rest = this;
+        for (int i = 0; i < count && !rest.isEmpty(); i++)
+            rest = rest.tail();
+        return rest;
+    }
+
+    /**
+     * Get an iterator over the elements of the list from the last to the
+     * first.
+     *
+     * @return the iterator.
+     */
+    public Iterator<Object> reverseIterator()
+    {
+        Object[] values = toArray();
+        return new Iterator<Object>()
+        {
+            private int next = values.length;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next > 0;
+            }
+
+            @Override
+            public Object next()
+            {
+                if (next == 0)
+                    throw new NoSuchElementException();
+                return values[--next];
+            }
+        };
+    }
+
+    /**
+     * Makes the list of the elements of this list followed by the elements of
+     * {@code other}. Short lists are packed together, or consed onto
+     * {@code other}, as before. Longer lists are joined into a vector so
+     * appending costs time logarithmic in their lengths once they are
+     * vectors.
+     *
+     * @param other the list to append.
+     * @return the combined list.
+     */
+    public ListValue append(ListValue other)
+    {
+        if (other.isEmpty())
+            return this;
+        if (isEmpty())
+            return other;
+
+        if (size() + other.size() > VectorList.LEAF
+                && (size() > VectorList.LEAF
+                        || other instanceof VectorList))
+            return VectorList.concat(this, other);
+
+        if (other.size() <= size())
+        {
+            ListValue packed = pack(other);
+            if (packed != null)
+                return packed;
+        }
+
+        Object[] values = toArray();
+        ListValue result = other;
+        for (int i = values.length - 1; i >= 0; i--)
+            result = result.cons(values[i]);
+        return result;
+    }
+
+    /**
+     * Stores {@code value} at a position of a list the caller owns, a list
+     * nothing else in the program can reach. Packed lists and vectors store
+     * values that fit their storage.
+     *
+     * @param index the position, less than the length.
+     * @param value the new element.
+     * @return true if the value was stored, false if the list is unchanged.
+     */
+    public boolean setOwned(int index, Object value)
+    {
+        return false;
+    }
+
+    /**
+     * Drops the first {@code count} elements of a list the caller owns.
+     * Packed lists and vectors move the start of their view instead of
+     * making a new one.
+     *
+     * @param count the number of elements to skip.
+     * @return the rest of the list, possibly this list.
+     */
+    public ListValue dropOwned(int count)
+    {
+        return drop(count);
+    }
+
+    /**
+     * Appends {@code other} to a list the caller owns. A packed list copies
+     * a packed list of its type into the spare room of its array, growing
+     * the array by doubling, so appending to it costs time in the length of
+     * {@code other} alone.
+     *
+     * @param other the list to append.
+     * @return the combined list, possibly this list.
+     */
+    public ListValue appendOwned(ListValue other)
+    {
+        return append(other);
+    }
+
+    /**
+     * Forgets the hash code after a list the caller owns changed.
+     */
+    protected final void changed()
+    {
+        hash = 0;
+    }
+
+    /**
+     * Packs the elements of this list and {@code other} into one array.
+     * Lists that are packed override this.
+     *
+     * @param other the list to append.
+     * @return the combined list or null if the lists can not be packed
+     *         together.
+     */
+    protected ListValue pack(ListValue other)
+    {
+        return null;
+    }
+
+    /**
+     * Get the elements of the list as an array.
+     *
+     * @return the elements in order.
+     */
+    public Object[] toArray()
+    {
+        Object[] values = new Object[size()];
+        int i = 0;
+        for (Object value : this)
+            values[i++] = value;
+        return values;
+    }
+
+    /**
+     * Determine if {@code obj} is a list with equal elements.
+     *
+     * @param obj the object to compare to.
+     * @return true if the lists are equal.
+     */
+    @Override
+    public final boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof ListValue))
+            return false;
+
+        ListValue other = (ListValue) obj;
+        if (size() != other.size())
+            return false;
+
+        Iterator<Object> left = iterator();
+        Iterator<Object> right = other.iterator();
+        while (left.hasNext())
+            if (!left.next().equals(right.next()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Get the hash code of the list, computed from its elements.
+     *
+     * @return the hash code.
+     */
+    @Override
+    public final int hashCode()
+    {
+        int h = hash;
+        if (h == 0 && !isEmpty())
+        {
+            h = 1;
+            for (Object value : this)
+                h = 31 * h + value.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Get the list as a string, its elements between brackets.
+     *
+     * @return the string form of the list.
+     */
+    @Override
+    public final String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        Iterator<Object> it = iterator();
+        while (it.hasNext())
+        {
+            sb.append(it.next());
+            if (it.hasNext())
+                sb.append(", ");
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Builds a list from the front to the back. The list is packed when it
+     * is built if its elements allow it.
+     */
+    public static final class Builder
+    {
+        private Object[] values = new Object[8];   // The elements so far.
+        private int count = 0;                      // The number of elements.
+
+        /**
+         * Adds an element to the back of the list.
+         *
+         * @param value the element.
+         * @return the builder.
+         */
+        public Builder add(Object value)
+        {
+            if (count == values.length)
+                values = Arrays.copyOf(values, 2 * count);
+            values[count++] = value;
+            return this;
+        }
+
+        /**
+         * Get the first element added.
+         *
+         * @return the first element or null if nothing was added.
+         */
+        public Object first()
+        {
+            return count == 0 ? null : values[0];
+        }
+
+        /**
+         * Finishes the list.
+         *
+         * @return the list of the elements added.
+         */
+        public ListValue build()
+        {
+            return of(values, count);
+        }
+    }
+}
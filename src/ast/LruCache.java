@@ -0,0 +1,65 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memo cache that evicts the least recently used entry.
+ *
+ * @author Zach Kissel
+ */
+final class LruCache extends MemoCache
+{
+    private final LinkedHashMap<Object, Object> entries; // In access order.
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity the largest number of entries held.
+     */
+    LruCache(int capacity)
+    {
+        entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> e)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public Object get(Object arg)
+    {
+        return entries.get(arg);
+    }
+
+    @Override
+    public void put(Object arg, Object result)
+    {
+        entries.put(arg, result);
+    }
+
+    @Override
+    public int size()
+    {
+        return entries.size();
+    }
+}
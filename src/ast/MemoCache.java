@@ -0,0 +1,82 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+/**
+ * A bounded cache of the results of a memoized function, keyed on the
+ * argument. Arguments are compared with {@code equals}, so list arguments
+ * are compared and hashed by their elements. Once the cache is full an
+ * entry is evicted according to the policy of the cache.
+ *
+ * @author Zach Kissel
+ */
+public abstract class MemoCache
+{
+    /**
+     * The eviction policies.
+     */
+    public enum Policy
+    {
+        /**
+         * Evict the least recently used entry.
+         */
+        LRU,
+
+        /**
+         * Evict the least recently used entry, but only to admit an argument
+         * that is used more often than it.
+         */
+        TINYLFU
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param policy   the eviction policy.
+     * @param capacity the largest number of entries held.
+     * @return the cache.
+     */
+    public static MemoCache create(Policy policy, int capacity)
+    {
+        if (policy == Policy.TINYLFU)
+            return new TinyLfuCache(capacity);
+        return new LruCache(capacity);
+    }
+
+    /**
+     * Get the result cached for {@code arg}.
+     *
+     * @param arg the argument.
+     * @return the result or null if it is not cached.
+     */
+    public abstract Object get(Object arg);
+
+    /**
+     * Caches the result of the function for {@code arg}.
+     *
+     * @param arg    the argument.
+     * @param result the result.
+     */
+    public abstract void put(Object arg, Object result);
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return the number of entries.
+     */
+    public abstract int size();
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayList;
+
+/**
+ * The memoized functions a chain of tail calls went through. A call in tail
+ * position has the value of the call that made it, so the loop making the
+ * tail calls runs the body of a memoized function itself instead of
+ * applying it, and caches the value of the whole chain for every argument
+ * once it is known. The chain is only built once a memoized function is
+ * met, a loop starts with a null chain. Every backend makes its tail calls
+ * into memoized functions through {@code enter}.
+ *
+ * @author Zach Kissel
+ */
+public final class MemoChain
+{
+    private final ArrayList<MemoFunction> functions; // The functions entered.
+    private final ArrayList<Object> arguments;       // Their arguments.
+    private Object cached;                           // The value found.
+
+    /**
+     * Constructs an empty chain.
+     */
+    public MemoChain()
+    {
+        functions = new ArrayList<>();
+        arguments = new ArrayList<>();
+        cached = null;
+    }
+
+    /**
+     * Enters the memoized function {@code memo} on {@code arg}, and the
+     * memoized functions it wraps in turn. A call whose value is cached ends
+     * the chain, its value is then found through {@code getCached}.
+     *
+     * @param memo the memoized function called in tail position.
+     * @param arg  the argument of the call.
+     * @return the function the loop runs next, or null if the value of the
+     *         chain is cached.
+     */
+    public Applicable enter(MemoFunction memo, Object arg)
+    {
+        Applicable function = memo;
+        while (function instanceof MemoFunction)
+        {
+            memo = (MemoFunction) function;
+            cached = memo.lookup(arg);
+            if (cached != null)
+                return null;
+            functions.add(memo);
+            arguments.add(arg);
+            function = memo.getFunction();
+        }
+        return function;
+    }
+
+    /**
+     * Get the cached value that ended the chain.
+     *
+     * @return the value of the chain.
+     */
+    public Object getCached()
+    {
+        return cached;
+    }
+
+    /**
+     * Caches {@code result} for every call of the chain.
+     *
+     * @param chain  the chain, or null.
+     * @param result the value of the chain.
+     * @return the result.
+     */
+    public static Object finish(MemoChain chain, Object result)
+    {
+        if (chain != null)
+            for (int i = 0; i < chain.functions.size(); i++)
+                chain.functions.get(i).store(chain.arguments.get(i), result);
+        return result;
+    }
+}
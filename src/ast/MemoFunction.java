@@ -0,0 +1,188 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+/**
+ * A memoized function. The results of the function are kept in a bounded
+ * cache keyed on the argument, so a call with an argument seen before does
+ * not run the function again. This is sound because MFL functions have no
+ * side effects. The lists kept as arguments and results are not changed
+ * afterwards: a list is only changed in place by the operation consuming it
+ * when a let holds it as its only reference, and the value of a call is
+ * never such a list. The function counts the calls answered from the cache.
+ *
+ * @author Zach Kissel
+ */
+public final class MemoFunction implements Applicable
+{
+    private final String name;          // The name of the function.
+    private final Applicable function;  // The function being memoized.
+    private final MemoCache cache;      // The results of the function.
+    private long hits;                  // Calls answered from the cache.
+    private long misses;                // Calls that ran the function.
+
+    /**
+     * Constructs a memoized version of {@code function}.
+     *
+     * @param name     the name of the function.
+     * @param function the function.
+     * @param cache    the cache to keep the results in.
+     */
+    public MemoFunction(String name, Applicable function, MemoCache cache)
+    {
+        this.name = name;
+        this.function = function;
+        this.cache = cache;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Applies the function to {@code arg}, answering from the cache when
+     * possible.
+     *
+     * @param arg the argument value.
+     * @return the result of the application.
+     * @throws EvaluationException if the evaluation of the body fails.
+     */
+    @Override
+    public Object apply(Object arg) throws EvaluationException
+    {
+        Object result = lookup(arg);
+        if (result != null)
+            return result;
+
+        result = function.apply(arg);
+        store(arg, result);
+        return result;
+    }
+
+    /**
+     * Get the result of the function on {@code arg} if it is in the cache.
+     * The lookup counts as a hit or a miss.
+     *
+     * @param arg the argument value.
+     * @return the cached result or null if the function must be run.
+     */
+    public Object lookup(Object arg)
+    {
+        synchronized (cache)
+        {
+            Object result = cache.get(arg);
+            if (result != null)
+                hits++;
+            else
+                misses++;
+            return result;
+        }
+    }
+
+    /**
+     * Caches {@code result} as the result of the function on {@code arg}.
+     *
+     * @param arg    the argument value.
+     * @param result the result of the function.
+     */
+    public void store(Object arg, Object result)
+    {
+        synchronized (cache)
+        {
+            cache.put(arg, result);
+        }
+    }
+
+    /**
+     * Get the function being memoized.
+     *
+     * @return the function.
+     */
+    public Applicable getFunction()
+    {
+        return function;
+    }
+
+    /**
+     * Get the name of the function.
+     *
+     * @return the name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Get the number of calls answered from the cache.
+     *
+     * @return the number of hits.
+     */
+    public long getHits()
+    {
+        synchronized (cache)
+        {
+            return hits;
+        }
+    }
+
+    /**
+     * Get the number of calls that ran the function.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses()
+    {
+        synchronized (cache)
+        {
+            return misses;
+        }
+    }
+
+    /**
+     * Get the number of results held in the cache.
+     *
+     * @return the number of entries.
+     */
+    public int getSize()
+    {
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Describes the use of the cache.
+     *
+     * @return the hit and miss counts of the function.
+     */
+    public String getStatistics()
+    {
+        return name + ": " + getHits() + " hits, " + getMisses()
+                + " misses, " + getSize() + " cached";
+    }
+
+    /**
+     * A memoized function prints as the function itself.
+     *
+     * @return the string form of the function.
+     */
+    @Override
+    public String toString()
+    {
+        return function.toString();
+    }
+}
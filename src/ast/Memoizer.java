@@ -0,0 +1,118 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memoization settings of the running program. Functions defined by
+ * {@code memo val}, or every function defined by a top-level {@code val}
+ * when memoization is turned on for the whole program, are wrapped in a
+ * {@link MemoFunction} when they are bound. The memoized functions are
+ * remembered so their cache statistics can be reported.
+ *
+ * @author Zach Kissel
+ */
+public final class Memoizer
+{
+    private static boolean memoizeAll = false;            // Memoize every val.
+    private static int capacity = 10000;                  // Entries per cache.
+    private static MemoCache.Policy policy = MemoCache.Policy.LRU;
+    private static final ArrayList<MemoFunction> functions = new ArrayList<>();
+
+    private Memoizer()
+    {
+    }
+
+    /**
+     * Turns memoization of every top-level function on or off.
+     *
+     * @param all true if every top-level function is memoized.
+     */
+    public static void setMemoizeAll(boolean all)
+    {
+        memoizeAll = all;
+    }
+
+    /**
+     * Determine if every top-level function is memoized.
+     *
+     * @return true if every top-level function is memoized.
+     */
+    public static boolean isMemoizeAll()
+    {
+        return memoizeAll;
+    }
+
+    /**
+     * Sets the number of results each memoized function keeps.
+     *
+     * @param size the capacity of a cache.
+     */
+    public static void setCapacity(int size)
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException("capacity must be positive.");
+        capacity = size;
+    }
+
+    /**
+     * Sets the eviction policy of the caches.
+     *
+     * @param evict the policy.
+     */
+    public static void setPolicy(MemoCache.Policy evict)
+    {
+        policy = evict;
+    }
+
+    /**
+     * Memoizes the value bound to {@code name}. Values that are not
+     * functions are returned unchanged.
+     *
+     * @param name  the name the value is bound to.
+     * @param value the value.
+     * @return the memoized function or the value itself.
+     */
+    public static Object memoize(String name, Object value)
+    {
+        if (!(value instanceof Applicable) || value instanceof MemoFunction)
+            return value;
+
+        MemoFunction memo = new MemoFunction(name, (Applicable) value,
+                MemoCache.create(policy, capacity));
+        synchronized (functions)
+        {
+            functions.add(memo);
+        }
+        return memo;
+    }
+
+    /**
+     * Get the functions memoized so far.
+     *
+     * @return the memoized functions in the order they were bound.
+     */
+    public static List<MemoFunction> getFunctions()
+    {
+        synchronized (functions)
+        {
+            return new ArrayList<>(functions);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The parallel map settings of the running program. Functions in MFL have no
+ * side effects, so the applications of a map are independent of each other.
+ * When the parallelism level is above one, a map over a list with at least
+ * {@code threshold} elements is split into chunks that are applied on a
+ * {@link ForkJoinPool}. Every application binds its argument in a frame of
+ * its own, so the tasks never share a frame. The results keep the order of
+ * the list. Folds with an associative function are reduced on the same pool
+ * as a tree of partial results. Long programs are type checked on the same
+ * pool, a program of at least {@code checkThreshold} top-level expressions
+ * checks its independent definitions at the same time.
+ *
+ * @author Zach Kissel
+ */
+public final class ParallelMap
+{
+    private static int parallelism = 1;           // The number of workers.
+    private static int threshold = 1000;          // The smallest parallel map.
+    private static int checkThreshold = 64;       // The smallest parallel check.
+    private static volatile ForkJoinPool pool = null;
+
+    /**
+     * An associative operation that combines two partial results of a fold.
+     */
+    public interface Combiner
+    {
+        /**
+         * Combines two partial results.
+         *
+         * @param left  the result of the earlier part of the list.
+         * @param right the result of the later part of the list.
+         * @return the combined result.
+         * @throws EvaluationException if the operation fails.
+         */
+        Object combine(Object left, Object right) throws EvaluationException;
+    }
+
+    private ParallelMap()
+    {
+    }
+
+    /**
+     * Sets the number of workers that apply a parallel map. A level of one
+     * turns parallel maps off.
+     *
+     * @param level the parallelism level.
+     */
+    public static synchronized void setParallelism(int level)
+    {
+        if (level <= 0)
+            throw new IllegalArgumentException(
+                    "parallelism must be positive.");
+        if (level == parallelism)
+            return;
+
+        parallelism = level;
+        if (pool != null)
+            pool.shutdown();
+        pool = null;
+    }
+
+    /**
+     * Get the number of workers that apply a parallel map.
+     *
+     * @return the parallelism level.
+     */
+    public static int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Sets the length a list must have before it is mapped in parallel.
+     *
+     * @param size the smallest list mapped in parallel.
+     */
+    public static void setThreshold(int size)
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException("threshold must be positive.");
+        threshold = size;
+    }
+
+    /**
+     * Get the length a list must have before it is mapped in parallel.
+     *
+     * @return the smallest list mapped in parallel.
+     */
+    public static int getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Sets the number of top-level expressions a program must have before it
+     * is type checked in parallel. Checking a definition costs far more than
+     * applying a function to an element, so the default of 64 is well below
+     * the threshold of a map.
+     *
+     * @param count the smallest program checked in parallel.
+     */
+    public static void setCheckThreshold(int count)
+    {
+        if (count <= 0)
+            throw new IllegalArgumentException("threshold must be positive.");
+        checkThreshold = count;
+    }
+
+    /**
+     * Get the number of top-level expressions a program must have before it
+     * is type checked in parallel.
+     *
+     * @return the smallest program checked in parallel.
+     */
+    public static int getCheckThreshold()
+    {
+        return checkThreshold;
+    }
+
+    /**
+     * Determine if a program of {@code count} top-level expressions is long
+     * enough to be type checked on the workers.
+     *
+     * @param count the number of top-level expressions.
+     * @return true if the program is checked in parallel.
+     */
+    public static boolean isParallelCheck(int count)
+    {
+        return parallelism > 1 && count >= checkThreshold;
+    }
+
+    /**
+     * Determine if a list of {@code size} elements is long enough to be
+     * split between the workers.
+     *
+     * @param size the length of the list.
+     * @return true if the list is mapped or reduced in parallel.
+     */
+    public static boolean isParallel(int size)
+    {
+        return parallelism > 1 && size >= threshold;
+    }
+
+    /**
+     * Determine if the current thread is a worker of a parallel map. The
+     * syntax tree is shared by the workers, so its nodes do not rewrite
+     * themselves on these threads.
+     *
+     * @return true if the thread applies part of a parallel map.
+     */
+    public static boolean isWorker()
+    {
+        ForkJoinPool current = pool;
+        return current != null && ForkJoinTask.getPool() == current;
+    }
+
+    /**
+     * Applies {@code f} to every element of {@code lst}.
+     *
+     * @param f   the function.
+     * @param lst the list.
+     * @return the list of results, in the order of {@code lst}.
+     * @throws EvaluationException if an application fails.
+     */
+    public static ListValue map(Applicable f, ListValue lst)
+            throws EvaluationException
+    {
+        if (!isParallel(lst.size()))
+        {
+            ListValue.Builder result = new ListValue.Builder();
+            for (Object elem : lst)
+                result.add(f.apply(elem));
+            return result.build();
+        }
+
+        Object[] values = lst.toArray();
+        run(new Chunk(f, values, 0, values.length, chunkSize(values.length)));
+        return ListValue.of(values);
+    }
+
+    /**
+     * Combines the elements of a non-empty list with an associative
+     * operation. The list is split into chunks that are reduced on the
+     * workers, the partial results are combined in the order of the list.
+     *
+     * @param op  the associative operation.
+     * @param lst the list.
+     * @return the combination of all the elements.
+     * @throws EvaluationException if an operation fails.
+     */
+    public static Object reduce(Combiner op, ListValue lst)
+            throws EvaluationException
+    {
+        Object[] values = lst.toArray();
+        Reduction task = new Reduction(op, values, 0, values.length,
+                chunkSize(values.length));
+        run(task);
+        return task.getRawResult();
+    }
+
+    /**
+     * Get the length of the chunks a list of {@code size} elements is split
+     * into, a few per worker so that a slow chunk does not hold up the
+     * others.
+     */
+    private static int chunkSize(int size)
+    {
+        return Math.max(1, size / (4 * parallelism));
+    }
+
+    /**
+     * Runs a task on the workers, or on the current thread if it already is
+     * a worker.
+     */
+    private static void run(ForkJoinTask<?> task) throws EvaluationException
+    {
+        try
+        {
+            if (isWorker())
+                task.invoke();
+            else
+                getPool().invoke(task);
+        }
+        catch (RuntimeException ex)
+        {
+            // The pool may rethrow a copy of the exception of the task.
+            for (Throwable t = ex; t != null; t = t.getCause())
+                if (t instanceof EvaluationException)
+                    throw (EvaluationException) t;
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the pool of the workers, starting it if this is the first parallel
+     * map or check. The pool lives until the parallelism level changes.
+     *
+     * @return the pool of the workers.
+     */
+    public static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+            pool = new ForkJoinPool(parallelism);
+        return pool;
+    }
+
+    /**
+     * Applies a function to a range of an array, replacing each element by
+     * its result. Ranges longer than a chunk are split in half.
+     */
+    private static final class Chunk extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Applicable f;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Chunk(Applicable f, Object[] values, int from, int to, int chunk)
+        {
+            this.f = f;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= chunk)
+            {
+                try
+                {
+                    for (int i = from; i < to; i++)
+                        values[i] = f.apply(values[i]);
+                }
+                catch (EvaluationException ex)
+                {
+                    throw new Failure(ex);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(f, values, from, mid, chunk),
+                    new Chunk(f, values, mid, to, chunk));
+        }
+    }
+
+    /**
+     * Combines a range of an array with an associative operation. Ranges
+     * longer than a chunk are split in half and the halves combined.
+     */
+    private static final class Reduction extends RecursiveTask<Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Combiner op;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Reduction(Combiner op, Object[] values, int from, int to, int chunk)
+        {
+            this.op = op;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Object compute()
+        {
+            try
+            {
+                if (to - from <= chunk)
+                {
+                    Object acc = values[from];
+                    for (int i = from + 1; i < to; i++)
+                        acc = op.combine(acc, values[i]);
+                    return acc;
+                }
+
+                int mid = (from + to) >>> 1;
+                Reduction left = new Reduction(op, values, from, mid, chunk);
+                Reduction right = new Reduction(op, values, mid, to, chunk);
+                right.fork();
+                Object lval = left.compute();
+                return op.combine(lval, right.join());
+            }
+            catch (EvaluationException ex)
+            {
+                throw new Failure(ex);
+            }
+        }
+    }
+
+    /**
+     * Carries the failure of an application out of a task.
+     */
+    private static final class Failure extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Failure(EvaluationException cause)
+        {
+            super(cause);
+        }
+    }
+}
@@ -16,13 +16,21 @@
  */
 package ast;
 
+import ast.nodes.IncrementalChecker;
+import ast.nodes.Inliner;
 import ast.nodes.ProgNode;
 import ast.nodes.SyntaxNode;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.Type;
+import compiler.CompileException;
+import compiler.CompiledProgram;
+import compiler.JvmCompiler;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Program;
 
 /**
  * Represents a syntax tree for the language.
@@ -35,6 +43,10 @@ public class SyntaxTree
     Environment env; // The executional environment.
     TypeEnvironment tenv; // The type environment.
     Inferencer inferencer;   // The type substitutions.
+    boolean resolved;        // True once the identifiers are resolved.
+    ConstantPool constants;  // The constant values of the tree.
+    Type type;               // The type of the tree, once checked.
+    IncrementalChecker checker; // Reuses the types of earlier checks.
 
     /**
      * Constructs a new syntax tree with root {@code root}.
@@ -47,6 +59,10 @@ public class SyntaxTree
         this.env = new Environment();
         this.tenv = new TypeEnvironment();
         this.inferencer = new Inferencer();
+        this.resolved = false;
+        this.constants = new ConstantPool();
+        this.type = null;
+        this.checker = null;
     }
 
     /**
@@ -65,6 +81,9 @@ public class SyntaxTree
     public void setRootNode(SyntaxNode root)
     {
         this.root = root;
+        this.resolved = false;
+        this.type = null;
+        setChecker(checker);
     }
 
     /**
@@ -85,9 +104,63 @@ public class SyntaxTree
      */
     public Object evaluate() throws EvaluationException
     {
+         resolve();
          return root.evaluate(env);
     }
 
+    /**
+     * Compiles the syntax tree to JVM bytecode. The program can be run as many
+     * times as needed; every run starts from the named values of the current
+     * executional environment.
+     * 
+     * @return the compiled program.
+     * @throws CompileException if the tree can not be compiled.
+     */
+    public CompiledProgram compile() throws CompileException
+    {
+        if (root == null)
+            throw new CompileException("Empty tree.");
+
+        resolve();
+        return JvmCompiler.compile(root, env.copy());
+    }
+
+    /**
+     * Compiles the syntax tree to MFL bytecode for the virtual machine. The
+     * program can be run as many times as needed; every run starts from the
+     * named values of the current executional environment.
+     * 
+     * @return the bytecode program.
+     * @throws CompileException if the tree can not be assembled.
+     */
+    public Program assemble() throws CompileException
+    {
+        if (root == null)
+            throw new CompileException("Empty tree.");
+
+        resolve();
+        return Assembler.assemble(root, env.copy());
+    }
+
+    /**
+     * Fuses list operations that consume a map, inlines the calls to small
+     * known functions, folds the constant subexpressions of the tree and
+     * resolves every identifier in the tree to its frame or closure address
+     * against the current executional environment. This happens at most
+     * once per tree and is done automatically before evaluation.
+     */
+    public void resolve()
+    {
+        if (resolved || root == null)
+            return;
+
+        root = root.fuse();
+        root = root.inline(new Inliner());
+        root = root.foldConstants(constants);
+        root.resolve(new Scope(env));
+        resolved = true;
+    }
+
     /**
      * Get a copy of the current executional evironment.
      * 
@@ -129,7 +202,25 @@ public class SyntaxTree
     }
 
     /**
-     * Get the type of the statement as a string.
+     * Sets the checker that infers the definitions of the program. Only the
+     * definitions that changed since the checker last saw them are
+     * inferred.
+     * 
+     * @param checker the incremental checker.
+     */
+    public void setChecker(IncrementalChecker checker)
+    {
+        this.checker = checker;
+        if (root instanceof ProgNode)
+            ((ProgNode) root).setChecker(checker);
+    }
+
+    /**
+     * Get the type of the statement as a string. A tree that was already
+     * type checked reports the type found then, otherwise the tree is
+     * checked now. The bindings made by the check are undone afterwards, so
+     * the types the statement left in the type environment are not affected
+     * by how it used them.
      * @return the syntax tree's type.
      * @throws TypeException when the type of the tree can not 
      * be determined.
@@ -138,22 +229,50 @@ public class SyntaxTree
     {
         if (root == null)
             throw new TypeException("Empty tree -- no type.");
-            
-        Type typ = root.typeOf(tenv, inferencer);
-        if (typ == null)
-            throw new TypeException("Unknown value.");
-        return typ.toString();  
+
+        if (type == null)
+        {
+            try
+            {
+                if (root.typeOf(tenv, inferencer) == null)
+                    throw new TypeException("Unknown value.");
+                annotate();
+            }
+            finally
+            {
+                inferencer.getSubstitutions().undo();
+            }
+        }
+        return type.toString();
     }
 
     /**
-     * Type checks the program.
+     * Type checks the program. A program that type checks is lowered so
+     * operations on proven int, real, and bool values run unboxed.
      * @return true if the program type checks; otherwise false.
      */
     public boolean typeCheck()
     {
-        if (root instanceof ProgNode)
-            return ((ProgNode)root).typeCheck(tenv, inferencer);
-        return false;
+        if (!(root instanceof ProgNode))
+            return false;
+        if (!((ProgNode) root).typeCheck(tenv, inferencer))
+            return false;
+
+        annotate();
+        return true;
+    }
+
+    /**
+     * Resolves the types recorded on the nodes of the tree once it has been
+     * type checked, and lowers the tree using them.
+     */
+    private void annotate()
+    {
+        inferencer.resolveTypes();
+        if (checker != null)
+            checker.commit();
+        root.lower(inferencer.getSubstitutions());
+        type = root.getType();
     }
     /**
      * Displays the syntax tree to the screen in a nicely formatted manner.
@@ -0,0 +1,62 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+/**
+ * A call in tail position that has not been made yet. A function body
+ * returns one in place of making the call, the closure that ran the body then
+ * makes the call itself so a chain of tail calls runs in constant stack.
+ *
+ * @author Zach Kissel
+ */
+public final class TailCall
+{
+    private final Applicable function;  // The function to call.
+    private final Object argument;      // The argument of the call.
+
+    /**
+     * Constructs a pending call of {@code function} on {@code argument}.
+     *
+     * @param function the function to call.
+     * @param argument the argument of the call.
+     */
+    public TailCall(Applicable function, Object argument)
+    {
+        this.function = function;
+        this.argument = argument;
+    }
+
+    /**
+     * Get the function to call.
+     *
+     * @return the function.
+     */
+    public Applicable getFunction()
+    {
+        return function;
+    }
+
+    /**
+     * Get the argument of the call.
+     *
+     * @return the argument.
+     */
+    public Object getArgument()
+    {
+        return argument;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.LinkedHashMap;
+
+/**
+ * A memo cache with TinyLFU admission. The cache estimates how often each
+ * argument is looked up with a count-min sketch of small counters that are
+ * halved periodically, so old popularity fades. When the cache is full a
+ * new result only replaces the least recently used entry if its argument
+ * is looked up more often, which keeps arguments seen once from flushing
+ * the results that are reused.
+ *
+ * @author Zach Kissel
+ */
+final class TinyLfuCache extends MemoCache
+{
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35,
+            0x27D4EB2F };               // One hash seed per sketch row.
+    private static final int MAX_COUNT = 15;    // The largest count kept.
+
+    private final int capacity;                 // The most entries held.
+    private final LinkedHashMap<Object, Object> entries; // In access order.
+    private final int[][] counts;               // The frequency sketch.
+    private final int mask;                     // Selects a sketch column.
+    private final int sampleSize;               // Lookups between agings.
+    private int lookups;                        // Lookups since aging.
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity the largest number of entries held.
+     */
+    TinyLfuCache(int capacity)
+    {
+        int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.counts = new int[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * capacity);
+        this.lookups = 0;
+    }
+
+    @Override
+    public Object get(Object arg)
+    {
+        record(arg);
+        return entries.get(arg);
+    }
+
+    @Override
+    public void put(Object arg, Object result)
+    {
+        if (entries.size() < capacity || entries.containsKey(arg))
+        {
+            entries.put(arg, result);
+            return;
+        }
+
+        Object victim = entries.keySet().iterator().next();
+        if (frequency(arg) > frequency(victim))
+        {
+            entries.remove(victim);
+            entries.put(arg, result);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Counts a lookup of {@code arg}, aging the sketch once enough lookups
+     * were seen.
+     */
+    private void record(Object arg)
+    {
+        int hash = arg.hashCode();
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            int[] row = counts[i];
+            int col = column(hash, i);
+            if (row[col] < MAX_COUNT)
+                row[col]++;
+        }
+
+        if (++lookups == sampleSize)
+        {
+            for (int[] row : counts)
+                for (int col = 0; col < row.length; col++)
+                    row[col] >>>= 1;
+            lookups /= 2;
+        }
+    }
+
+    /**
+     * Estimates how often {@code arg} was looked up.
+     */
+    private int frequency(Object arg)
+    {
+        int hash = arg.hashCode();
+        int freq = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++)
+            freq = Math.min(freq, counts[i][column(hash, i)]);
+        return freq;
+    }
+
+    /**
+     * Get the column of row {@code i} a hash is counted in.
+     */
+    private int column(int hash, int i)
+    {
+        int h = hash * SEEDS[i];
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list held in a balanced tree of small arrays. Two vectors are joined in
+ * time logarithmic in their lengths, and an element is found by walking down
+ * the tree, so the lists made by appending long lists index, slice and
+ * append without copying their elements. The tree is relaxed: its leaves
+ * need not be full, and the branches record the sizes of their subtrees.
+ *
+ * A vector is a view of part of a tree, taking or dropping elements makes a
+ * new view of the same tree.
+ *
+ * @author Zach Kissel
+ */
+final class VectorList extends ListValue
+{
+    /**
+     * The most elements a leaf holds.
+     */
+    static final int LEAF = 32;
+
+    private final Node root;        // The tree, shared by the views.
+    private int offset;             // The index of the first element.
+    private int length;             // The length of the list.
+
+    private VectorList(Node root, int offset, int length)
+    {
+        this.root = root;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Makes the list of the elements of {@code left} followed by the
+     * elements of {@code right}. Lists that are not vectors are first copied
+     * into a tree.
+     *
+     * @param left  the first part, not empty.
+     * @param right the second part, not empty.
+     * @return the combined list.
+     */
+    static ListValue concat(ListValue left, ListValue right)
+    {
+        Node tree = join(tree(left), tree(right));
+        return new VectorList(tree, 0, tree.size);
+    }
+
+    @Override
+    public int size()
+    {
+        return length;
+    }
+
+    @Override
+    public Object head()
+    {
+        return get(0);
+    }
+
+    @Override
+    public ListValue tail()
+    {
+        return drop(1);
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(index);
+
+        int[] pos = { offset + index };
+        return leaf(pos).values[pos[0]];
+    }
+
+    @Override
+    public boolean setOwned(int index, Object value)
+    {
+        int[] pos = { offset + index };
+        leaf(pos).values[pos[0]] = value;
+        changed();
+        return true;
+    }
+
+    @Override
+    public ListValue dropOwned(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        offset += count;
+        length -= count;
+        changed();
+        return this;
+    }
+
+    @Override
+    public ListValue take(int count)
+    {
+        if (count >= length)
+            return this;
+        if (count <= 0)
+            return EMPTY;
+        return new VectorList(root, offset, count);
+    }
+
+    @Override
+    public ListValue drop(int count)
+    {
+        if (count <= 0)
+            return this;
+        if (count >= length)
+            return EMPTY;
+        return new VectorList(root, offset + count, length - count);
+    }
+
+    @Override
+    public Iterator<Object> iterator()
+    {
+        return new Walk(false);
+    }
+
+    @Override
+    public Iterator<Object> reverseIterator()
+    {
+        return new Walk(true);
+    }
+
+    /**
+     * Finds the leaf holding the element at {@code pos[0]} of the tree and
+     * leaves the position of the element within the leaf in {@code pos[0]}.
+     */
+    private Leaf leaf(int[] pos)
+    {
+        Node node = root;
+        while (node instanceof Branch)
+        {
+            Branch br = (Branch) node;
+            if (pos[0] < br.left.size)
+                node = br.left;
+            else
+            {
+                pos[0] -= br.left.size;
+                node = br.right;
+            }
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Get the tree holding the elements of a list. A vector that views all
+     * of its tree gives the tree itself, part of a tree is sliced off, and
+     * any other list is copied into leaves.
+     */
+    private static Node tree(ListValue lst)
+    {
+        if (lst instanceof VectorList)
+        {
+            VectorList vec = (VectorList) lst;
+            return slice(vec.root, vec.offset, vec.offset + vec.length);
+        }
+
+        Object[] values = lst.toArray();
+        Node[] leaves = new Node[(values.length + LEAF - 1) / LEAF];
+        for (int i = 0; i < leaves.length; i++)
+            leaves[i] = new Leaf(Arrays.copyOfRange(values, i * LEAF,
+                    Math.min(values.length, (i + 1) * LEAF)));
+        return build(leaves, 0, leaves.length);
+    }
+
+    /**
+     * Builds a balanced tree over the leaves {@code lo ... hi - 1}.
+     */
+    private static Node build(Node[] leaves, int lo, int hi)
+    {
+        if (hi - lo == 1)
+            return leaves[lo];
+        int mid = (lo + hi) >>> 1;
+        return new Branch(build(leaves, lo, mid), build(leaves, mid, hi));
+    }
+
+    /**
+     * Get the tree of the elements {@code from ... to - 1} of a tree.
+     */
+    private static Node slice(Node node, int from, int to)
+    {
+        if (from == 0 && to == node.size)
+            return node;
+        if (node instanceof Leaf)
+            return new Leaf(Arrays.copyOfRange(((Leaf) node).values, from,
+                    to));
+
+        Branch br = (Branch) node;
+        int split = br.left.size;
+        if (to <= split)
+            return slice(br.left, from, to);
+        if (from >= split)
+            return slice(br.right, from - split, to - split);
+        return join(slice(br.left, from, split),
+                slice(br.right, 0, to - split));
+    }
+
+    /**
+     * Joins two trees into a balanced tree. The shorter tree is hung on the
+     * edge of the taller one at its own height and the edge is rebalanced
+     * on the way back up, so the work is the difference of the heights.
+     * Leaves that meet at the join are merged when they fit in one.
+     */
+    private static Node join(Node left, Node right)
+    {
+        if (left instanceof Leaf && right instanceof Leaf
+                && left.size + right.size <= LEAF)
+        {
+            Object[] values = Arrays.copyOf(((Leaf) left).values,
+                    left.size + right.size);
+            System.arraycopy(((Leaf) right).values, 0, values, left.size,
+                    right.size);
+            return new Leaf(values);
+        }
+
+        if (left.height > right.height + 1)
+        {
+            Branch br = (Branch) left;
+            return balance(br.left, join(br.right, right));
+        }
+        if (right.height > left.height + 1)
+        {
+            Branch br = (Branch) right;
+            return balance(join(left, br.left), br.right);
+        }
+        return new Branch(left, right);
+    }
+
+    /**
+     * Makes a branch over two trees whose heights may differ by two,
+     * rotating the taller one to restore the balance.
+     */
+    private static Node balance(Node left, Node right)
+    {
+        if (left.height > right.height + 1)
+        {
+            Branch br = (Branch) left;
+            if (br.left.height >= br.right.height)
+                return new Branch(br.left, new Branch(br.right, right));
+
+            Branch inner = (Branch) br.right;
+            return new Branch(new Branch(br.left, inner.left),
+                    new Branch(inner.right, right));
+        }
+        if (right.height > left.height + 1)
+        {
+            Branch br = (Branch) right;
+            if (br.right.height >= br.left.height)
+                return new Branch(new Branch(left, br.left), br.right);
+
+            Branch inner = (Branch) br.left;
+            return new Branch(new Branch(left, inner.left),
+                    new Branch(inner.right, br.right));
+        }
+        return new Branch(left, right);
+    }
+
+    /**
+     * A node of the tree.
+     */
+    private abstract static class Node
+    {
+        final int size;     // The number of elements below the node.
+        final int height;   // The longest path to a leaf.
+
+        Node(int size, int height)
+        {
+            this.size = size;
+            this.height = height;
+        }
+    }
+
+    /**
+     * A leaf, which holds up to {@link VectorList#LEAF} elements.
+     */
+    private static final class Leaf extends Node
+    {
+        final Object[] values;
+
+        Leaf(Object[] values)
+        {
+            super(values.length, 0);
+            this.values = values;
+        }
+    }
+
+    /**
+     * A branch with two subtrees whose heights differ by at most one.
+     */
+    private static final class Branch extends Node
+    {
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right)
+        {
+            super(left.size + right.size,
+                    1 + Math.max(left.height, right.height));
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Walks the leaves of the view in order, or in reverse order, keeping
+     * the subtrees still to visit on a stack.
+     */
+    private final class Walk implements Iterator<Object>
+    {
+        private final boolean reverse;
+        private final ArrayDeque<Node> pending = new ArrayDeque<>();
+        private Object[] leaf;
+        private int next;
+        private int remaining = length;
+
+        Walk(boolean reverse)
+        {
+            this.reverse = reverse;
+
+            // Find the leaf of the first element visited.
+            Node node = root;
+            int pos = reverse ? offset + length - 1 : offset;
+            while (node instanceof Branch)
+            {
+                Branch br = (Branch) node;
+                if (pos < br.left.size)
+                {
+                    if (!reverse)
+                        pending.push(br.right);
+                    node = br.left;
+                }
+                else
+                {
+                    if (reverse)
+                        pending.push(br.left);
+                    pos -= br.left.size;
+                    node = br.right;
+                }
+            }
+            leaf = ((Leaf) node).values;
+            next = pos;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return remaining > 0;
+        }
+
+        @Override
+        public Object next()
+        {
+            if (remaining == 0)
+                throw new NoSuchElementException();
+
+            if (next < 0 || next == leaf.length)
+            {
+                Node node = pending.pop();
+                while (node instanceof Branch)
+                {
+                    Branch br = (Branch) node;
+                    pending.push(reverse ? br.left : br.right);
+                    node = reverse ? br.right : br.left;
+                }
+                leaf = ((Leaf) node).values;
+                next = reverse ? leaf.length - 1 : 0;
+            }
+
+            remaining--;
+            return reverse ? leaf[next--] : leaf[next++];
+        }
+    }
+}
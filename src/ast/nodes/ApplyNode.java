@@ -16,29 +16,43 @@
  */
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.Applicable;
+import ast.ConstantPool;
 import ast.EvaluationException;
-import ast.nodes.LambdaNode.Closure;
+import ast.TailCall;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.FunType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * Represents a function application: (E1)(E2)
  */
 public final class ApplyNode extends SyntaxNode
 {
-    private final SyntaxNode function;
-    private final SyntaxNode argument;
+    private SyntaxNode function;
+    private SyntaxNode argument;
+    private boolean tail;       // True if the call is in tail position.
 
     public ApplyNode(SyntaxNode function, SyntaxNode argument, long line)
     {
         super(line);
-        this.function = function;
-        this.argument = argument;
+        this.function = adopt(function);
+        this.argument = adopt(argument);
     }
 
     @Override
@@ -46,20 +60,20 @@ public final class ApplyNode extends SyntaxNode
     {
         Object f = function.evaluate(env);
 
-        if (!(f instanceof Closure))
+        if (!(f instanceof Applicable))
             throw new EvaluationException();
 
-        Closure closure = (Closure) f;
+        Applicable closure = (Applicable) f;
 
         // Evaluate argument
         Object argVal = argument.evaluate(env);
 
-        // New env from closure
-        Environment newEnv = closure.getEnvironment().copy();
-        newEnv.updateEnvironment(closure.getParameter(), argVal);
+        // A tail call is made by the closure running the enclosing body.
+        if (tail)
+            return new TailCall(closure, argVal);
 
-        // Evaluate body in closure environment
-        return closure.getBody().evaluate(newEnv);
+        // Evaluate body in a new frame of the closure environment
+        return closure.apply(argVal);
     }
 
     /**
@@ -70,7 +84,7 @@ public final class ApplyNode extends SyntaxNode
      *   (function)(argument) : resultType
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type funType = function.typeOf(tenv, inferencer);
@@ -80,7 +94,7 @@ public final class ApplyNode extends SyntaxNode
         VarType resultType = tenv.getTypeVariable();
 
         // Expected: argType -> α
-        FunType expected = new FunType(argType, resultType);
+        FunType expected = TypeFactory.funType(argType, resultType);
 
         inferencer.unify(funType, expected,
                 buildErrorMessage("function application has incompatible types."));
@@ -89,6 +103,170 @@ public final class ApplyNode extends SyntaxNode
         return inferencer.getSubstitutions().apply(resultType);
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+        function.resolve(scope);
+        argument.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        function.lower(subst);
+        argument.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        function = adopt(function.foldConstants(pool));
+        argument = adopt(argument.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children, then expand the call itself if it
+     * calls a lambda or a small known function.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the expanded body or the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        function = adopt(function.inline(inliner));
+        argument = adopt(argument.inline(inliner));
+        return inliner.inlineCall(this, function, argument);
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        function = adopt(function.fuse());
+        argument = adopt(argument.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new ApplyNode(function.copy(bindings), argument.copy(bindings),
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + function.measure(names) + argument.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, function.fingerprint(nodes));
+        hash = mix(hash, argument.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (function == oldChild)
+            function = newChild;
+        if (argument == oldChild)
+            argument = newChild;
+    }
+
+    /**
+     * Marks the application as a tail call. Evaluating it returns the call
+     * to the closure running the function body instead of making it.
+     */
+    @Override
+    protected void markTail()
+    {
+        tail = true;
+    }
+
+    /**
+     * Compile the function and the argument and apply the function. A tail
+     * call returns the pending call instead.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        function.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("function", CodeGenerator.UNARY);
+        argument.compile(gen);
+        gen.callRuntime(tail ? "tailCall" : "apply",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Assemble the function and the argument followed by {@code APPLY}.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        function.assemble(asm);
+        asm.emit(Opcode.FUNCTION, getLineNumber());
+        argument.assemble(asm);
+        asm.emit(tail ? Opcode.TAIL_APPLY : Opcode.APPLY);
+    }
+
     @Override
     public void displaySubtree(int indentAmt)
     {
@@ -16,31 +16,43 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.BoolType;
-import ast.typesystem.types.IntType;
-import ast.typesystem.types.ListType;
-import ast.typesystem.types.RealType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import lexer.Token;
 import lexer.TokenType;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
- * This node represents a binary operation.
+ * This node represents a binary operation. The first time the node is
+ * evaluated it replaces itself with a node specialized to the types of the
+ * operands it saw, the specialized node goes back to this node if it ever
+ * sees operands of another type.
  * 
  * @author Zach Kissel
  */
-public final class BinOpNode extends SyntaxNode
+public class BinOpNode extends SyntaxNode
 {
-    private TokenType op;
-    private SyntaxNode leftTerm;
-    private SyntaxNode rightTerm;
+    protected TokenType op;
+    protected SyntaxNode leftTerm;
+    protected SyntaxNode rightTerm;
+    private boolean specialize;   // True if the node has not been run yet.
 
     /**
      * Constructs a new binary operation syntax node.
@@ -52,11 +64,28 @@ public final class BinOpNode extends SyntaxNode
      */
     public BinOpNode(SyntaxNode lterm, TokenType op, SyntaxNode rterm,
             long line)
+    {
+        this(lterm, op, rterm, line, true);
+    }
+
+    /**
+     * Constructs a new binary operation syntax node.
+     * 
+     * @param lterm      the left operand.
+     * @param op         the binary operation to perform.
+     * @param rterm      the right operand.
+     * @param line       the line of code the node is associated with.
+     * @param specialize true if the node should specialize itself when it is
+     *                   first evaluated.
+     */
+    protected BinOpNode(SyntaxNode lterm, TokenType op, SyntaxNode rterm,
+            long line, boolean specialize)
     {
         super(line);
         this.op = op;
-        this.leftTerm = lterm;
-        this.rightTerm = rterm;
+        this.leftTerm = adopt(lterm);
+        this.rightTerm = adopt(rterm);
+        this.specialize = specialize;
     }
 
     /**
@@ -68,12 +97,109 @@ public final class BinOpNode extends SyntaxNode
      */
     public Object evaluate(Environment env) throws EvaluationException
     {
-        Object lval;
-        Object rval;
-        boolean useDouble = false;
+        Object lval = leftTerm.evaluate(env);
+        Object rval = rightTerm.evaluate(env);
 
-        lval = leftTerm.evaluate(env);
-        rval = rightTerm.evaluate(env);
+        if (specialize)
+        {
+            specialize = false;
+            BinOpNode node = specializeFor(lval, rval);
+            if (node != null)
+                replace(node);
+        }
+        return compute(lval, rval);
+    }
+
+    /**
+     * Evaluate an integer operation without boxing the operands.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        switch (op)
+        {
+        case ADD:
+            return leftTerm.evaluateInt(env) + rightTerm.evaluateInt(env);
+        case SUB:
+            return leftTerm.evaluateInt(env) - rightTerm.evaluateInt(env);
+        case MULT:
+            return leftTerm.evaluateInt(env) * rightTerm.evaluateInt(env);
+        case DIV:
+            return leftTerm.evaluateInt(env) / rightTerm.evaluateInt(env);
+        case MOD:
+            return leftTerm.evaluateInt(env) % rightTerm.evaluateInt(env);
+        default:
+            return super.evaluateInt(env);
+        }
+    }
+
+    /**
+     * Evaluate a real operation without boxing the operands.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        switch (op)
+        {
+        case ADD:
+            return leftTerm.evaluateDouble(env)
+                    + rightTerm.evaluateDouble(env);
+        case SUB:
+            return leftTerm.evaluateDouble(env)
+                    - rightTerm.evaluateDouble(env);
+        case MULT:
+            return leftTerm.evaluateDouble(env)
+                    * rightTerm.evaluateDouble(env);
+        case DIV:
+            return leftTerm.evaluateDouble(env)
+                    / rightTerm.evaluateDouble(env);
+        default:
+            return super.evaluateDouble(env);
+        }
+    }
+
+    /**
+     * Evaluate a logical operation without boxing the operands. Both
+     * operands are always evaluated.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (op != TokenType.AND && op != TokenType.OR)
+            return super.evaluateBoolean(env);
+
+        boolean left = leftTerm.evaluateBoolean(env);
+        boolean right = rightTerm.evaluateBoolean(env);
+        if (op == TokenType.AND)
+            return left && right;
+        return left || right;
+    }
+
+    /**
+     * Applies the operation to the values of the operands without making
+     * any assumption about their types.
+     * 
+     * @param lval the value of the left operand.
+     * @param rval the value of the right operand.
+     * @return the result of the operation.
+     * @throws EvaluationException if the operation fails.
+     */
+    protected Object compute(Object lval, Object rval)
+            throws EvaluationException
+    {
+        boolean useDouble = false;
 
         if (op == TokenType.CONCAT)
             return handleConcat(lval, rval);
@@ -129,6 +255,153 @@ public final class BinOpNode extends SyntaxNode
 
     }
 
+    /**
+     * Replaces a specialized node by a generic node once its assumption
+     * about the types of the operands no longer holds.
+     * 
+     * @param lval the value of the left operand.
+     * @param rval the value of the right operand.
+     * @return the result of the operation.
+     * @throws EvaluationException if the operation fails.
+     */
+    protected Object generalize(Object lval, Object rval)
+            throws EvaluationException
+    {
+        BinOpNode generic = new BinOpNode(leftTerm, op, rightTerm,
+                getLineNumber(), false);
+        replace(generic);
+        return generic.compute(lval, rval);
+    }
+
+    /**
+     * Determine if the node knows the types of its operands from the type
+     * checker.
+     *
+     * @return true if the operand types were proven.
+     */
+    protected boolean isProven()
+    {
+        return false;
+    }
+
+    /**
+     * Determine if the node applies an associative operation to the
+     * identifiers {@code first} and {@code second}, in either order. The
+     * operations are associative whatever the type of the operands, except
+     * for the rounding of real arithmetic.
+     *
+     * @param first  the name of one operand.
+     * @param second the name of the other operand.
+     * @return true if the node is an associative operation on the two.
+     */
+    boolean combines(String first, String second)
+    {
+        if (op != TokenType.ADD && op != TokenType.MULT
+                && op != TokenType.AND && op != TokenType.OR
+                && op != TokenType.CONCAT || first.equals(second))
+            return false;
+
+        String lname = identifier(leftTerm);
+        String rname = identifier(rightTerm);
+        return first.equals(lname) && second.equals(rname)
+                || first.equals(rname) && second.equals(lname);
+    }
+
+    /**
+     * Get the name of an operand that is an identifier.
+     *
+     * @return the name or null if the operand is not an identifier.
+     */
+    private static String identifier(SyntaxNode term)
+    {
+        if (!(term instanceof TokenNode))
+            return null;
+
+        Token token = ((TokenNode) term).getToken();
+        return token.getType() == TokenType.ID ? token.getValue() : null;
+    }
+
+    /**
+     * Builds the node specialized to the types of {@code lval} and
+     * {@code rval}.
+     * 
+     * @return the specialized node or null if there is none for the types.
+     */
+    private BinOpNode specializeFor(Object lval, Object rval)
+    {
+        if (lval == null || rval == null || lval.getClass() != rval.getClass())
+            return null;
+        return specialized(lval.getClass(), false);
+    }
+
+    /**
+     * Builds the node specialized to operands of class {@code operand}.
+     * 
+     * @param operand the class of the values of both operands.
+     * @param proven  true if the type checker proved the operand type.
+     * @return the specialized node or null if there is none for the class.
+     */
+    private BinOpNode specialized(Class<?> operand, boolean proven)
+    {
+        switch (op)
+        {
+        case ADD:
+        case SUB:
+        case MULT:
+        case DIV:
+        case MOD:
+            if (operand == Integer.class)
+                return new IntArithNode(leftTerm, op, rightTerm,
+                        getLineNumber(), proven);
+            if (op != TokenType.MOD && operand == Double.class)
+                return new RealArithNode(leftTerm, op, rightTerm,
+                        getLineNumber(), proven);
+            return null;
+        case AND:
+        case OR:
+            if (operand == Boolean.class)
+                return new BoolOpNode(leftTerm, op, rightTerm,
+                        getLineNumber(), proven);
+            return null;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Determine if the operation can be done on the constants {@code lval}
+     * and {@code rval} before the program runs. Operations that would report
+     * an error are left for the program to report.
+     *
+     * @param lval the value of the left operand or null if it is unknown.
+     * @param rval the value of the right operand or null if it is unknown.
+     * @return true if the operation can be folded.
+     */
+    private boolean canFold(Object lval, Object rval)
+    {
+        if (lval == null || rval == null)
+            return false;
+
+        if (op == TokenType.CONCAT)
+        {
+            if (!(lval instanceof ListValue) || !(rval instanceof ListValue))
+                return false;
+            ListValue leftList = (ListValue) lval;
+            ListValue rightList = (ListValue) rval;
+            return leftList.isEmpty() || rightList.isEmpty()
+                    || leftList.head().getClass() == rightList.head()
+                            .getClass();
+        }
+
+        if (lval.getClass() != rval.getClass()
+                || specialized(lval.getClass(), false) == null)
+            return false;
+
+        // Division by zero is reported when the program runs.
+        return !(rval.equals(0)
+                && (op == TokenType.DIV || op == TokenType.MOD));
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -138,7 +411,7 @@ public final class BinOpNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type left = leftTerm.typeOf(tenv, inferencer);
@@ -156,26 +429,26 @@ public final class BinOpNode extends SyntaxNode
         switch (op)
         {
         case CONCAT:
-            inferencer.unify(left, new ListType(tenv.getTypeVariable()),
+            inferencer.unify(left, TypeFactory.listType(tenv.getTypeVariable()),
                      buildErrorMessage("List expected."));
             return left;
         case ADD:
         case SUB:
         case MULT:
         case DIV:
-            if (left.equals(new IntType()))
-                return new IntType();
-            else if (left.equals(new RealType()))
-                return new RealType();
+            if (left.equals(TypeFactory.intType()))
+                return TypeFactory.intType();
+            else if (left.equals(TypeFactory.realType()))
+                return TypeFactory.realType();
             throw new TypeException("Type Error: integer or real expected.");
         case MOD:
-            if (left.equals(new IntType()))
-                return new IntType();
+            if (left.equals(TypeFactory.intType()))
+                return TypeFactory.intType();
              throw new TypeException("Type Error: integer expected.");
         case AND:
         case OR:
-            if (left.equals(new BoolType()))
-                return new BoolType();
+            if (left.equals(TypeFactory.boolType()))
+                return TypeFactory.boolType();
             throw new TypeException("Type Error: integer or real expected.");
         default:
             logError("Unknown binary operation.");
@@ -183,6 +456,271 @@ public final class BinOpNode extends SyntaxNode
         }
     }
 
+    /**
+     * Determine if the node is the concatenation of two lists nothing else
+     * can reach.
+     *
+     * @return true if the node owns its list.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return op == TokenType.CONCAT && leftTerm.isFresh()
+                && rightTerm.isFresh();
+    }
+
+    /**
+     * Pass the claim on to the operands.
+     *
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return leftTerm.claim(name) || rightTerm.claim(name);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        leftTerm.resolve(scope);
+        rightTerm.resolve(scope);
+    }
+
+    /**
+     * Replace the node by a node that evaluates its operands unboxed if the
+     * type checker proved their type.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        leftTerm.lower(subst);
+        rightTerm.lower(subst);
+        // The operands were unified, the left one has their type.
+        Type type = leftTerm.getType();
+        if (type == null || isProven())
+            return;
+
+        BinOpNode node = null;
+        if (type.equals(TypeFactory.intType()))
+            node = specialized(Integer.class, true);
+        else if (type.equals(TypeFactory.realType()))
+            node = specialized(Double.class, true);
+        else if (type.equals(TypeFactory.boolType()))
+            node = specialized(Boolean.class, true);
+
+        if (node != null)
+            replace(node);
+    }
+
+    /**
+     * Fold the operands and, if both are constants, the operation itself.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the constant value of the operation or the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        leftTerm = adopt(leftTerm.foldConstants(pool));
+        rightTerm = adopt(rightTerm.foldConstants(pool));
+
+        Object lval = leftTerm.constantValue();
+        Object rval = rightTerm.constantValue();
+        if (!canFold(lval, rval))
+            return this;
+
+        try
+        {
+            return new ConstNode(pool.intern(compute(lval, rval)),
+                    getLineNumber());
+        }
+        catch (EvaluationException ex)
+        {
+            return this;
+        }
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        leftTerm = adopt(leftTerm.inline(inliner));
+        rightTerm = adopt(rightTerm.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        leftTerm = adopt(leftTerm.fuse());
+        rightTerm = adopt(rightTerm.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new BinOpNode(leftTerm.copy(bindings), op,
+                rightTerm.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + leftTerm.measure(names) + rightTerm.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), op.ordinal());
+        hash = mix(hash, leftTerm.fingerprint(nodes));
+        return mix(hash, rightTerm.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (leftTerm == oldChild)
+            leftTerm = newChild;
+        if (rightTerm == oldChild)
+            rightTerm = newChild;
+    }
+
+    /**
+     * Compile the operands and call the runtime operation for the
+     * operator.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        String operation;
+        switch (op)
+        {
+        case ADD:
+            operation = "add";
+            break;
+        case SUB:
+            operation = "sub";
+            break;
+        case MULT:
+            operation = "mul";
+            break;
+        case DIV:
+            operation = "div";
+            break;
+        case MOD:
+            operation = "mod";
+            break;
+        case AND:
+            operation = "and";
+            break;
+        case OR:
+            operation = "or";
+            break;
+        case CONCAT:
+            operation = "concat";
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        leftTerm.compile(gen);
+        rightTerm.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime(operation, CodeGenerator.BINARY);
+    }
+
+    /**
+     * Assemble the operands followed by the instruction for the operator.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        int opcode;
+        switch (op)
+        {
+        case ADD:
+            opcode = Opcode.ADD;
+            break;
+        case SUB:
+            opcode = Opcode.SUB;
+            break;
+        case MULT:
+            opcode = Opcode.MUL;
+            break;
+        case DIV:
+            opcode = Opcode.DIV;
+            break;
+        case MOD:
+            opcode = Opcode.MOD;
+            break;
+        case AND:
+            opcode = Opcode.AND;
+            break;
+        case OR:
+            opcode = Opcode.OR;
+            break;
+        case CONCAT:
+            opcode = Opcode.CONCAT;
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        leftTerm.assemble(asm);
+        rightTerm.assemble(asm);
+        asm.emit(opcode, getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -203,33 +741,34 @@ public final class BinOpNode extends SyntaxNode
      * @return the concatenation of the two lists.
      * @throws EvaluationException if the evaluation fails.
      */
-    @SuppressWarnings("unchecked")
     private Object handleConcat(Object lval, Object rval)
             throws EvaluationException
     {
-        if (!(lval instanceof LinkedList) || !(rval instanceof LinkedList))
+        if (!(lval instanceof ListValue) || !(rval instanceof ListValue))
             return null;
         else
         {
-            LinkedList<Object> leftList = (LinkedList<Object>) lval;
-            LinkedList<Object> rightList = (LinkedList<Object>) rval;
+            ListValue leftList = (ListValue) lval;
+            ListValue rightList = (ListValue) rval;
 
-            if (leftList.size() == 0)
+            if (leftList.isEmpty())
                 return rightList;
-            else if (rightList.size() == 0)
+            else if (rightList.isEmpty())
                 return leftList;
             else
             {
-                if (leftList.getFirst().getClass() != rightList.getFirst()
+                if (leftList.head().getClass() != rightList.head()
                         .getClass())
                 {
                     logError("mixed type list not supported.");
                     throw new EvaluationException();
                 }
 
-                leftList.addAll(rightList);
-
-                return leftList;
+                // The result shares the cells of the right list, a left
+                // list nothing else can reach takes the right one in place.
+                if (leftTerm.isFresh())
+                    return leftList.appendOwned(rightList);
+                return leftList.append(rightList);
             }
         }
     }
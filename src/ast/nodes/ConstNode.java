@@ -0,0 +1,285 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
+import environment.Environment;
+import environment.Scope;
+import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
+
+/**
+ * This node represents a value computed before the program runs, either a
+ * folded constant expression or a constant list. The value is shared by
+ * every evaluation of the node.
+ *
+ * @author Zach Kissel
+ */
+public final class ConstNode extends SyntaxNode
+{
+    private final Object value; // The value of the constant.
+
+    /**
+     * Constructs a new constant node.
+     *
+     * @param value the value of the constant.
+     * @param line  the line of code the node is associated with.
+     */
+    public ConstNode(Object value, long line)
+    {
+        super(line);
+        this.value = value;
+    }
+
+    /**
+     * Evaluate the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the constant.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException
+    {
+        return value;
+    }
+
+    /**
+     * Evaluate an int constant without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the constant.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        if (value instanceof Integer)
+            return (Integer) value;
+        return super.evaluateInt(env);
+    }
+
+    /**
+     * Evaluate a real constant without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the constant.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        if (value instanceof Double)
+            return (Double) value;
+        return super.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluate a bool constant without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the constant.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (value instanceof Boolean)
+            return (Boolean) value;
+        return super.evaluateBoolean(env);
+    }
+
+    /**
+     * Get the value of the constant.
+     *
+     * @return the value of the constant.
+     */
+    @Override
+    protected Object constantValue()
+    {
+        return value;
+    }
+
+    /**
+     * Determine the type of the constant from its value.
+     *
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer
+     * @return The type of the syntax node.
+     * @throws TypeException if there is a type error.
+     */
+    @Override
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException
+    {
+        return typeOfValue(value, tenv);
+    }
+
+    /**
+     * A constant has no identifiers to resolve.
+     *
+     * @param scope the scope the node occurs in.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+    }
+
+    /**
+     * A constant has nothing to lower.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        return mix(startFingerprint(nodes), Objects.hashCode(value));
+    }
+
+    /**
+     * Makes a copy of the node, the value is shared.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new ConstNode(value, getLineNumber());
+    }
+
+    /**
+     * Push the value of the constant. A constant list is built from its
+     * elements.
+     *
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        if (!(value instanceof ListValue))
+        {
+            compileScalar(gen, value);
+            return;
+        }
+
+        ListValue lst = (ListValue) value;
+        if (lst.isEmpty())
+        {
+            gen.callRuntime("emptyList", "()Ljava/lang/Object;");
+            return;
+        }
+
+        boolean first = true;
+        for (Object elem : lst)
+        {
+            compileScalar(gen, elem);
+            gen.pushInt(getLineNumber());
+            gen.callRuntime(first ? "listFirst" : "listAdd",
+                    first ? CodeGenerator.UNARY : CodeGenerator.BINARY);
+            first = false;
+        }
+        gen.callRuntime("listEnd", "(Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Push the constant from the constant pool of the program.
+     *
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        asm.emit(Opcode.CONST, asm.constant(value));
+    }
+
+    /**
+     * Display a AST inferencertree with the indentation specified.
+     *
+     * @param indentAmt the amout of indentation to perform.
+     */
+    @Override
+    public void displaySubtree(int indentAmt)
+    {
+        printIndented("Const(" + value + ")", indentAmt);
+    }
+
+    /**
+     * Push an int, real, or bool value.
+     */
+    private void compileScalar(CodeGenerator gen, Object val)
+            throws CompileException
+    {
+        if (val instanceof Integer)
+            gen.pushInteger((Integer) val);
+        else if (val instanceof Double)
+            gen.pushDouble((Double) val);
+        else if (val instanceof Boolean)
+            gen.pushBoolean((Boolean) val);
+        else
+            throw new CompileException(buildErrorMessage("bad constant "
+                    + val + "."));
+    }
+
+    /**
+     * Determine the type of a constant value.
+     */
+    private Type typeOfValue(Object val, TypeEnvironment tenv)
+            throws TypeException
+    {
+        if (val instanceof Integer)
+            return TypeFactory.intType();
+        if (val instanceof Double)
+            return TypeFactory.realType();
+        if (val instanceof Boolean)
+            return TypeFactory.boolType();
+        if (val instanceof ListValue)
+        {
+            ListValue lst = (ListValue) val;
+            if (lst.isEmpty())
+                return TypeFactory.listType(tenv.getTypeVariable());
+            return TypeFactory.listType(typeOfValue(lst.head(), tenv));
+        }
+        throw new TypeException(buildErrorMessage("unknown constant."));
+    }
+}
@@ -16,41 +16,81 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.Applicable;
+import ast.BoolList;
+import ast.ConstantPool;
 import ast.EvaluationException;
-import ast.nodes.LambdaNode.Closure;
+import ast.IntList;
+import ast.ListValue;
+import ast.ParallelMap;
+import ast.RealList;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.FunType;
 import ast.typesystem.types.ListType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
+import compiler.CodeGenerator;
+import compiler.CompileException;
+import compiler.RuntimeSupport;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import lexer.TokenType;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This is the FoldNode for Phase 3.
- * This is: foldl / foldr f init xs
+ * This is: foldl / foldr / pfold f init xs
  *
  * If rightFold is true, we do a right fold (foldr).
  * If rightFold is false, we do a left fold (foldl).
+ * If associative is true, the user asserted with pfold that f is associative.
+ *
+ * A fold whose function is associative, asserted or an operation like
+ * fn a -> fn b -> a + b, reduces long lists in parallel.
  */
 public class FoldNode extends SyntaxNode
 {
-    private final SyntaxNode func;
-    private final SyntaxNode init;
-    private final SyntaxNode listExpr;
-    private final boolean    rightFold;
+    private SyntaxNode func;
+    private SyntaxNode init;
+    private SyntaxNode listExpr;
+    private final boolean rightFold;
+    private final boolean associative;
 
     public FoldNode(SyntaxNode func, SyntaxNode init, SyntaxNode listExpr,
                     boolean rightFold, long lineNumber)
+    {
+        this(func, init, listExpr, rightFold, false, lineNumber);
+    }
+
+    public FoldNode(SyntaxNode func, SyntaxNode init, SyntaxNode listExpr,
+                    boolean rightFold, boolean associative, long lineNumber)
     {
         super(lineNumber);
-        this.func      = func;
-        this.init      = init;
-        this.listExpr  = listExpr;
-        this.rightFold = rightFold;
+        this.func        = adopt(func);
+        this.init        = adopt(init);
+        this.listExpr    = adopt(listExpr);
+        this.rightFold   = rightFold;
+        this.associative = associative;
+    }
+
+    /**
+     * This is true if the function is known to be associative, either
+     * asserted by pfold or an associative operation on its parameters.
+     */
+    private boolean isReducible()
+    {
+        return associative || func instanceof LambdaNode
+                && ((LambdaNode) func).isAssociative();
     }
 
     /**
@@ -71,33 +111,51 @@ public class FoldNode extends SyntaxNode
     {
         // This is where we evaluate the function expression
         Object fVal = func.evaluate(env);
-        if (!(fVal instanceof Closure))
+        if (!(fVal instanceof Applicable))
         {
             logError("fold: first argument must be a function.");
             throw new EvaluationException();
         }
-        Closure fClosure = (Closure) fVal;
+        Applicable fClosure = (Applicable) fVal;
 
         // This is where we evaluate the initial accumulator
         Object acc = init.evaluate(env);
 
         // This is where we evaluate the list expression
         Object listVal = listExpr.evaluate(env);
-        if (!(listVal instanceof LinkedList<?>))
+        if (!(listVal instanceof ListValue))
         {
             logError("fold: third argument must be a list.");
             throw new EvaluationException();
         }
 
-        LinkedList<?> xs = (LinkedList<?>) listVal;
+        ListValue xs = (ListValue) listVal;
+
+        // This is the packed case, a list of ints, reals or bools folded with
+        // an operation the node knows is done over the primitive values
+        Object packed = foldPacked(acc, xs);
+        if (packed != null)
+            return packed;
+
+        // This is the parallel case, the list is reduced as a tree. Reals are
+        // left to pfold since the grouping changes how their sums round.
+        if (isReducible() && ParallelMap.isParallel(xs.size())
+                && (associative || !(acc instanceof Double)))
+        {
+            Object all = ParallelMap.reduce(
+                    (left, right) -> applyTwoArgs(fClosure, left, right), xs);
+            return rightFold ? applyTwoArgs(fClosure, all, acc)
+                    : applyTwoArgs(fClosure, acc, all);
+        }
 
         if (rightFold)
         {
-            // This is the right fold case (foldr)
-            for (int i = xs.size() - 1; i >= 0; i--)
+            // This is the right fold case (foldr), the elements are walked
+            // from the last to the first
+            Iterator<Object> elems = xs.reverseIterator();
+            while (elems.hasNext())
             {
-                Object elem = xs.get(i);
-                acc = applyTwoArgs(fClosure, elem, acc);
+                acc = applyTwoArgs(fClosure, elems.next(), acc);
             }
         }
         else
@@ -112,24 +170,77 @@ public class FoldNode extends SyntaxNode
         return acc;
     }
 
+    /**
+     * This is a helper that folds a packed list when the function is a
+     * known operation on the primitive values, fn a -> fn b -> a + b and
+     * the like. The reals are added in the order of the fold so the sum
+     * rounds the same way.
+     *
+     * @return the result or null if the fold must apply the function.
+     */
+    private Object foldPacked(Object acc, ListValue xs)
+    {
+        if (!(func instanceof LambdaNode))
+            return null;
+        TokenType op = ((LambdaNode) func).associativeOp();
+
+        if ((op == TokenType.ADD || op == TokenType.MULT)
+                && xs instanceof IntList && acc instanceof Integer)
+        {
+            IntList ints = (IntList) xs;
+            int res = (Integer) acc;
+            for (int i = 0; i < ints.size(); i++)
+                res = op == TokenType.ADD ? res + ints.getInt(i)
+                        : res * ints.getInt(i);
+            return res;
+        }
+
+        if ((op == TokenType.ADD || op == TokenType.MULT)
+                && xs instanceof RealList && acc instanceof Double)
+        {
+            RealList reals = (RealList) xs;
+            double res = (Double) acc;
+            int n = reals.size();
+            for (int i = 0; i < n; i++)
+            {
+                double x = reals.getDouble(rightFold ? n - 1 - i : i);
+                res = op == TokenType.ADD ? res + x : res * x;
+            }
+            return res;
+        }
+
+        if ((op == TokenType.AND || op == TokenType.OR)
+                && xs instanceof BoolList && acc instanceof Boolean)
+        {
+            BoolList bools = (BoolList) xs;
+            boolean res = (Boolean) acc;
+            for (int i = 0; i < bools.size(); i++)
+                res = op == TokenType.AND ? res && bools.getBoolean(i)
+                        : res || bools.getBoolean(i);
+            return res;
+        }
+
+        return null;
+    }
+
     /**
      * This is a helper that applies a curried function to two arguments:
      *
      *   ((f arg1) arg2)
      */
-    private Object applyTwoArgs(Closure fClosure, Object arg1, Object arg2)
+    private Object applyTwoArgs(Applicable fClosure, Object arg1, Object arg2)
             throws EvaluationException
     {
         // This is: first application f arg1
         Object first = applyClosure(fClosure, arg1);
 
-        if (!(first instanceof Closure))
+        if (!(first instanceof Applicable))
         {
             logError("fold: function must take two arguments (curried).");
             throw new EvaluationException();
         }
 
-        Closure secondClosure = (Closure) first;
+        Applicable secondClosure = (Applicable) first;
 
         // This is: second application (f arg1) arg2
         return applyClosure(secondClosure, arg2);
@@ -138,12 +249,10 @@ public class FoldNode extends SyntaxNode
     /**
      * This is a helper that applies a single closure to one argument.
      */
-    private Object applyClosure(Closure clo, Object arg)
+    private Object applyClosure(Applicable clo, Object arg)
             throws EvaluationException
     {
-        Environment newEnv = clo.getEnvironment().copy();
-        newEnv.updateEnvironment(clo.getParameter(), arg);
-        return clo.getBody().evaluate(newEnv);
+        return clo.apply(arg);
     }
 
     /**
@@ -154,9 +263,11 @@ public class FoldNode extends SyntaxNode
      *   xs  : list[a]
      *   ----------------
      *   fold f init xs : b
+     *
+     * For pfold the function combines values of one type, so a = b.
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         // This is where we get the types of the subexpressions
@@ -166,10 +277,10 @@ public class FoldNode extends SyntaxNode
 
         // This is where we create fresh type variables a, b
         VarType a = tenv.getTypeVariable();
-        VarType b = tenv.getTypeVariable();
+        VarType b = associative ? a : tenv.getTypeVariable();
 
         // This is enforcing xs : list[a]
-        ListType expectedList = new ListType(a);
+        ListType expectedList = TypeFactory.listType(a);
         inferencer.unify(xsType, expectedList,
                 buildErrorMessage("fold: third argument must be a list."));
 
@@ -178,7 +289,7 @@ public class FoldNode extends SyntaxNode
                 buildErrorMessage("fold: initial value has wrong type."));
 
         // This is enforcing f : a -> b -> b  (curried)
-        FunType expectedFun = new FunType(a, new FunType(b, b));
+        FunType expectedFun = TypeFactory.funType(a, TypeFactory.funType(b, b));
         inferencer.unify(fType, expectedFun,
                 buildErrorMessage("fold: function must have type a -> b -> b."));
 
@@ -187,10 +298,215 @@ public class FoldNode extends SyntaxNode
         return finalB;
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+        func.resolve(scope);
+        init.resolve(scope);
+        listExpr.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        func.lower(subst);
+        init.lower(subst);
+        listExpr.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        func = adopt(func.foldConstants(pool));
+        init = adopt(init.foldConstants(pool));
+        listExpr = adopt(listExpr.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        func = adopt(func.inline(inliner));
+        init = adopt(init.inline(inliner));
+        listExpr = adopt(listExpr.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children. A fold of a map folds the
+     * mapped list directly, with the function of the map composed into the
+     * function of the fold. The composed function is not associative, so
+     * when maps and folds run in parallel an associative fold keeps its map.
+     *
+     * @return the fused node.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        func = adopt(func.fuse());
+        init = adopt(init.fuse());
+        listExpr = adopt(listExpr.fuse());
+        if (!(listExpr instanceof MapNode)
+                || isReducible() && ParallelMap.getParallelism() > 1)
+            return this;
+
+        MapNode map = (MapNode) listExpr;
+        SyntaxNode fused = rightFold
+                ? Fusion.compose(func, map.getFunction(), getLineNumber())
+                : Fusion.composeLeft(func, map.getFunction(),
+                        getLineNumber());
+        return new FoldNode(fused, init, map.getList(), rightFold,
+                getLineNumber());
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new FoldNode(func.copy(bindings), init.copy(bindings),
+                listExpr.copy(bindings), rightFold, associative,
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + func.measure(names) + init.measure(names)
+                + listExpr.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, (rightFold ? 1 : 0) + (associative ? 2 : 0));
+        hash = mix(hash, func.fingerprint(nodes));
+        hash = mix(hash, init.fingerprint(nodes));
+        return mix(hash, listExpr.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (func == oldChild)
+            func = newChild;
+        if (init == oldChild)
+            init = newChild;
+        if (listExpr == oldChild)
+            listExpr = newChild;
+    }
+
+    /**
+     * Compile the function, the initial value, and the list and call the
+     * runtime fold for the direction of the fold, or the runtime reduction
+     * if the function is associative.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        func.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("foldFunction", CodeGenerator.UNARY);
+        init.compile(gen);
+        listExpr.compile(gen);
+        if (isReducible())
+        {
+            gen.pushInt(mode());
+            gen.pushInt(getLineNumber());
+            gen.callRuntime("reduce", "(Ljava/lang/Object;Ljava/lang/Object;"
+                    + "Ljava/lang/Object;II)Ljava/lang/Object;");
+            return;
+        }
+        gen.pushInt(getLineNumber());
+        gen.callRuntime(rightFold ? "foldr" : "foldl", "(Ljava/lang/Object;"
+                + "Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;");
+    }
+
+    /**
+     * Assemble the function, the initial value, and the list followed by the
+     * fold instruction for the direction of the fold, or the reduction if
+     * the function is associative.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        func.assemble(asm);
+        asm.emit(Opcode.FOLD_FUNCTION, getLineNumber());
+        init.assemble(asm);
+        listExpr.assemble(asm);
+        if (isReducible())
+            asm.emit(Opcode.REDUCE, mode(), getLineNumber());
+        else
+            asm.emit(rightFold ? Opcode.FOLDR : Opcode.FOLDL,
+                    getLineNumber());
+    }
+
+    /**
+     * This is the mode of the runtime reduction, the direction of the fold
+     * and whether its associativity was asserted.
+     */
+    private int mode()
+    {
+        return (rightFold ? RuntimeSupport.FOLD_RIGHT : 0)
+                | (associative ? RuntimeSupport.FOLD_ASSERTED : 0);
+    }
+
     @Override
     public void displaySubtree(int indentAmt)
     {
-        printIndented("FoldNode(" + (rightFold ? "foldr" : "foldl") + ",", indentAmt);
+        printIndented("FoldNode(" + (associative ? "pfold"
+                : rightFold ? "foldr" : "foldl") + ",", indentAmt);
         func.displaySubtree(indentAmt + 2);
         init.displaySubtree(indentAmt + 2);
         listExpr.displaySubtree(indentAmt + 2);
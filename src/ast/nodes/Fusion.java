@@ -0,0 +1,140 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Builds the functions that let a list operation consume the result of a
+ * map without the mapped list ever being built. The function of the map is
+ * composed with the function of the consumer, so the fused operation makes
+ * a single pass over the original list. A function that is neither a name
+ * nor a lambda is bound by a let first, so it is still evaluated once and
+ * in the original order.
+ *
+ * @author Zach Kissel
+ */
+final class Fusion
+{
+    private Fusion()
+    {
+    }
+
+    /**
+     * Builds {@code fn x -> outer(inner(x))}, the function of
+     * {@code map outer (map inner xs)} over {@code xs}. It is also the
+     * function of {@code foldr outer z (map inner xs)}.
+     *
+     * @param outer the function applied last.
+     * @param inner the function of the map being fused.
+     * @param line  the line of the fused operation.
+     * @return the composed function.
+     */
+    static SyntaxNode compose(SyntaxNode outer, SyntaxNode inner, long line)
+    {
+        return build(outer, inner, false, line);
+    }
+
+    /**
+     * Builds {@code fn a -> fn x -> (outer(a))(inner(x))}, the function of
+     * {@code foldl outer z (map inner xs)} over {@code xs}.
+     *
+     * @param outer the function of the fold.
+     * @param inner the function of the map being fused.
+     * @param line  the line of the fused operation.
+     * @return the composed function.
+     */
+    static SyntaxNode composeLeft(SyntaxNode outer, SyntaxNode inner,
+            long line)
+    {
+        return build(outer, inner, true, line);
+    }
+
+    /**
+     * Builds the composed function, the names it binds are fresh so they
+     * can not capture a name either function uses.
+     */
+    private static SyntaxNode build(SyntaxNode outer, SyntaxNode inner,
+            boolean left, long line)
+    {
+        HashSet<String> used = new HashSet<>();
+        outer.measure(used);
+        inner.measure(used);
+
+        Token outerVar = isSimple(outer) ? null : fresh("f", used);
+        Token innerVar = isSimple(inner) ? null : fresh("g", used);
+        Token x = fresh("x", used);
+
+        SyntaxNode mapped = new ApplyNode(
+                innerVar == null ? inner : name(innerVar, line),
+                name(x, line), line);
+        SyntaxNode func = outerVar == null ? outer : name(outerVar, line);
+
+        SyntaxNode result;
+        if (left)
+        {
+            Token acc = fresh("a", used);
+            result = new LambdaNode(acc, new LambdaNode(x, new ApplyNode(
+                    new ApplyNode(func, name(acc, line), line), mapped,
+                    line), line), line);
+        }
+        else
+            result = new LambdaNode(x, new ApplyNode(func, mapped, line),
+                    line);
+
+        if (innerVar != null)
+            result = new LetNode(innerVar, inner, result, line);
+        if (outerVar != null)
+            result = new LetNode(outerVar, outer, result, line);
+        return result;
+    }
+
+    /**
+     * Determine if a function can be moved into the composed function; a
+     * name or a lambda costs nothing to evaluate again.
+     */
+    private static boolean isSimple(SyntaxNode func)
+    {
+        return func instanceof LambdaNode || func instanceof TokenNode;
+    }
+
+    /**
+     * Makes a name that is not in {@code used} and adds it to the set.
+     * Primes are not part of identifiers, so the name can not clash with
+     * one the program wrote.
+     */
+    private static Token fresh(String base, Set<String> used)
+    {
+        String name = base + "'";
+        while (used.contains(name))
+            name += "'";
+        used.add(name);
+        return new Token(TokenType.ID, name);
+    }
+
+    /**
+     * Makes a reference to the variable {@code var}.
+     */
+    private static SyntaxNode name(Token var, long line)
+    {
+        return new TokenNode(var, line);
+    }
+}
@@ -16,15 +16,29 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.BoolList;
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.IntList;
+import ast.ListValue;
+import ast.RealList;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.ListType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the head node structure.
@@ -44,7 +58,7 @@ public final class HeadNode extends SyntaxNode
     public HeadNode(SyntaxNode list, long line)
     {
         super(line);
-        this.list = list;
+        this.list = adopt(list);
     }
 
     /**
@@ -54,22 +68,21 @@ public final class HeadNode extends SyntaxNode
      * @return the object representing the result of the evaluation.
      * @throws EvaluationException if the evaluation fails.
      */
-    @SuppressWarnings("unchecked")
     public Object evaluate(Environment env) throws EvaluationException
     {
         Object res = null;
 
         res = list.evaluate(env);
 
-        if (res instanceof LinkedList)
+        if (res instanceof ListValue)
         {
-            LinkedList<Object> lst = (LinkedList<Object>) res;
-            if (lst.size() == 0)
+            ListValue lst = (ListValue) res;
+            if (lst.isEmpty())
             {
                 logError("empty list.");
                 throw new EvaluationException();
             }
-            res = lst.getFirst();
+            res = lst.head();
         }
         else
         {
@@ -80,6 +93,86 @@ public final class HeadNode extends SyntaxNode
         return res;
     }
 
+    /**
+     * Evaluate the node when it is an int. The head of a packed list is
+     * read without boxing it.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        Object res = list.evaluate(env);
+
+        // A packed list is never empty.
+        if (res instanceof IntList)
+            return ((IntList) res).getInt(0);
+        return expect(res, Integer.class, "integer expected.");
+    }
+
+    /**
+     * Evaluate the node when it is a real. The head of a packed list is
+     * read without boxing it.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        Object res = list.evaluate(env);
+        if (res instanceof RealList)
+            return ((RealList) res).getDouble(0);
+        return expect(res, Double.class, "real expected.");
+    }
+
+    /**
+     * Evaluate the node when it is a bool. The head of a packed list is
+     * read without boxing it.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        Object res = list.evaluate(env);
+        if (res instanceof BoolList)
+            return ((BoolList) res).getBoolean(0);
+        return expect(res, Boolean.class, "boolean expected.");
+    }
+
+    /**
+     * Get the head of a list that is not packed and check its class.
+     */
+    private <T> T expect(Object res, Class<T> type, String msg)
+            throws EvaluationException
+    {
+        if (!(res instanceof ListValue))
+        {
+            logError("list expected.");
+            throw new EvaluationException();
+        }
+
+        ListValue lst = (ListValue) res;
+        if (lst.isEmpty())
+        {
+            logError("empty list.");
+            throw new EvaluationException();
+        }
+
+        if (!type.isInstance(lst.head()))
+        {
+            logError(msg);
+            throw new EvaluationException();
+        }
+        return type.cast(lst.head());
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -89,17 +182,146 @@ public final class HeadNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type lstType = list.typeOf(tenv, inferencer);
-        inferencer.unify(new ListType(tenv.getTypeVariable()), lstType,
+        inferencer.unify(TypeFactory.listType(tenv.getTypeVariable()), lstType,
                 buildErrorMessage("List type expected."));
 
         return ((ListType) inferencer.getSubstitutions().apply(lstType)).getElementType();
 
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        list.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        list.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        list = adopt(list.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        list = adopt(list.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        list = adopt(list.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new HeadNode(list.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + list.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, list.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (list == oldChild)
+            list = newChild;
+    }
+
+    /**
+     * Compile the list and call the runtime {@code head}.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        list.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("head", CodeGenerator.UNARY);
+    }
+
+    /**
+     * Assemble the list followed by {@code HEAD}.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        list.assemble(asm);
+        asm.emit(Opcode.HEAD, getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -1,21 +1,33 @@
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.BoolType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
+import compiler.Label;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents an if-then-else expression.
  */
 public final class IfNode extends SyntaxNode
 {
-    private final SyntaxNode cond;
-    private final SyntaxNode thenBranch;
-    private final SyntaxNode elseBranch;
+    private SyntaxNode cond;
+    private SyntaxNode thenBranch;
+    private SyntaxNode elseBranch;
 
     /**
      * Constructs a new if node.
@@ -29,9 +41,9 @@ public final class IfNode extends SyntaxNode
                   SyntaxNode elseBranch, long line)
     {
         super(line);
-        this.cond       = cond;
-        this.thenBranch = thenBranch;
-        this.elseBranch = elseBranch;
+        this.cond       = adopt(cond);
+        this.thenBranch = adopt(thenBranch);
+        this.elseBranch = adopt(elseBranch);
     }
 
     /**
@@ -43,6 +55,72 @@ public final class IfNode extends SyntaxNode
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException
+    {
+        if (test(env))
+            return thenBranch.evaluate(env);
+        else
+            return elseBranch.evaluate(env);
+    }
+
+    /**
+     * Evaluate the branch taken without boxing its value when the node is
+     * an int.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        if (test(env))
+            return thenBranch.evaluateInt(env);
+        else
+            return elseBranch.evaluateInt(env);
+    }
+
+    /**
+     * Evaluate the branch taken without boxing its value when the node is
+     * a real.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        if (test(env))
+            return thenBranch.evaluateDouble(env);
+        else
+            return elseBranch.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluate the branch taken without boxing its value when the node is
+     * a bool.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (test(env))
+            return thenBranch.evaluateBoolean(env);
+        else
+            return elseBranch.evaluateBoolean(env);
+    }
+
+    /**
+     * Evaluate the condition of the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the condition.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    private boolean test(Environment env) throws EvaluationException
     {
         Object cval = cond.evaluate(env);
         if (!(cval instanceof Boolean))
@@ -50,11 +128,7 @@ public final class IfNode extends SyntaxNode
             logError("if condition must be boolean.");
             throw new EvaluationException();
         }
-
-        if ((Boolean) cval)
-            return thenBranch.evaluate(env);
-        else
-            return elseBranch.evaluate(env);
+        return (Boolean) cval;
     }
 
     /**
@@ -66,7 +140,7 @@ public final class IfNode extends SyntaxNode
      * @throws TypeException if there is a type error.
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         // Get the type of the condition.
@@ -74,7 +148,7 @@ public final class IfNode extends SyntaxNode
         condTy = inferencer.getSubstitutions().apply(condTy);
 
         // Condition must be bool.
-        if (!condTy.equals(new BoolType()))
+        if (!condTy.equals(TypeFactory.boolType()))
         {
             throw new TypeException(
                     buildErrorMessage("if condition must be bool."));
@@ -92,6 +166,218 @@ public final class IfNode extends SyntaxNode
         return inferencer.getSubstitutions().apply(thenTy);
     }
 
+    /**
+     * Determine if both branches evaluate to lists nothing else can reach.
+     *
+     * @return true if the node owns its list.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return thenBranch.isFresh() && elseBranch.isFresh();
+    }
+
+    /**
+     * Pass the claim on to the children.
+     *
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return cond.claim(name) || thenBranch.claim(name)
+                || elseBranch.claim(name);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+        cond.resolve(scope);
+        thenBranch.resolve(scope);
+        elseBranch.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        cond.lower(subst);
+        thenBranch.lower(subst);
+        elseBranch.lower(subst);
+    }
+
+    /**
+     * Fold the condition and the branches. An if whose condition is a
+     * constant is replaced by the branch it takes.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the branch taken or the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        cond = adopt(cond.foldConstants(pool));
+        thenBranch = adopt(thenBranch.foldConstants(pool));
+        elseBranch = adopt(elseBranch.foldConstants(pool));
+
+        Object cval = cond.constantValue();
+        if (cval instanceof Boolean)
+            return (Boolean) cval ? thenBranch : elseBranch;
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        cond = adopt(cond.inline(inliner));
+        thenBranch = adopt(thenBranch.inline(inliner));
+        elseBranch = adopt(elseBranch.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        cond = adopt(cond.fuse());
+        thenBranch = adopt(thenBranch.fuse());
+        elseBranch = adopt(elseBranch.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new IfNode(cond.copy(bindings), thenBranch.copy(bindings),
+                elseBranch.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + cond.measure(names) + thenBranch.measure(names)
+                + elseBranch.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, cond.fingerprint(nodes));
+        hash = mix(hash, thenBranch.fingerprint(nodes));
+        hash = mix(hash, elseBranch.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (cond == oldChild)
+            cond = newChild;
+        if (thenBranch == oldChild)
+            thenBranch = newChild;
+        if (elseBranch == oldChild)
+            elseBranch = newChild;
+    }
+
+    /**
+     * Both branches of an if in tail position are in tail position.
+     */
+    @Override
+    protected void markTail()
+    {
+        thenBranch.markTail();
+        elseBranch.markTail();
+    }
+
+    /**
+     * Compile the condition followed by a branch around each arm.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        Label elseLabel = gen.newLabel();
+        Label endLabel = gen.newLabel();
+
+        cond.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("truth", "(Ljava/lang/Object;I)Z");
+        gen.branchIfFalse(elseLabel);
+        thenBranch.compile(gen);
+        gen.jump(endLabel);
+        gen.placeLabel(elseLabel);
+        elseBranch.compile(gen);
+        gen.placeLabel(endLabel);
+    }
+
+    /**
+     * Assemble the condition followed by a jump around each arm.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        int elseLabel = asm.newLabel();
+        int endLabel = asm.newLabel();
+
+        cond.assemble(asm);
+        asm.emitJump(Opcode.JUMP_IF_FALSE, elseLabel, getLineNumber());
+        thenBranch.assemble(asm);
+        asm.emitJump(Opcode.JUMP, endLabel);
+        asm.placeLabel(elseLabel);
+        elseBranch.assemble(asm);
+        asm.placeLabel(endLabel);
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      *
@@ -0,0 +1,222 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeScheme;
+import environment.TypeEnvironment;
+
+/**
+ * Type checks programs again and again, inferring only the definitions that
+ * changed since the last check. The checker remembers each top-level
+ * {@code val} it inferred: the fingerprint of its tree, what each of its
+ * free names referred to, its scheme and the types of its nodes. A
+ * definition written alike whose names still refer to the same definitions,
+ * or to the same schemes of the environment, gets its types from the
+ * checker instead of being inferred. An edited definition is inferred again
+ * and is a new definition, so the definitions using it are inferred again
+ * as well.
+ *
+ * <p>
+ * The definitions inferred by a check are remembered once the types of the
+ * tree are resolved, a check that fails remembers nothing.
+ *
+ * @author Zach Kissel
+ */
+public final class IncrementalChecker
+{
+    /**
+     * A definition inferred by the checker.
+     */
+    private static final class Entry
+    {
+        private final String name;          // The name defined.
+        private final long fingerprint;     // The fingerprint of its tree.
+        private final Object[] sources;     // What each free name refers to.
+        private final TypeScheme scheme;    // The scheme of the name.
+        private List<SyntaxNode> nodes;     // The nodes, until remembered.
+        private Type[] types;               // The types of the nodes.
+
+        /**
+         * Constructs the entry of a definition just inferred.
+         */
+        private Entry(String name, long fingerprint, Object[] sources,
+                TypeScheme scheme, List<SyntaxNode> nodes)
+        {
+            this.name = name;
+            this.fingerprint = fingerprint;
+            this.sources = sources;
+            this.scheme = scheme;
+            this.nodes = nodes;
+            this.types = null;
+        }
+    }
+
+    private final HashMap<String, Entry> known;  // The definitions by name.
+    private final ArrayList<Entry> pending;      // Inferred by the last check.
+    private int inferred;                        // Inferred by the last check.
+    private int reused;                          // Reused by the last check.
+
+    /**
+     * Constructs a checker that knows no definitions.
+     */
+    public IncrementalChecker()
+    {
+        known = new HashMap<>();
+        pending = new ArrayList<>();
+        inferred = 0;
+        reused = 0;
+    }
+
+    /**
+     * Get the number of definitions the last check inferred.
+     *
+     * @return the number of definitions inferred.
+     */
+    public int getInferred()
+    {
+        return inferred;
+    }
+
+    /**
+     * Get the number of definitions the last check took from the checker.
+     *
+     * @return the number of definitions reused.
+     */
+    public int getReused()
+    {
+        return reused;
+    }
+
+    /**
+     * Remembers the definitions inferred by the last check. Call this once
+     * the types recorded on the nodes are resolved.
+     */
+    public void commit()
+    {
+        for (Entry entry : pending)
+        {
+            entry.types = new Type[entry.nodes.size()];
+            for (int i = 0; i < entry.types.length; i++)
+                entry.types[i] = entry.nodes.get(i).getType();
+            entry.nodes = null;
+            known.put(entry.name, entry);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Type check the top-level expressions {@code exprs}.
+     *
+     * @param exprs      the top-level expressions, in program order.
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer.
+     * @return the type of the last expression.
+     * @throws TypeException if an expression does not check.
+     */
+    Type check(List<SyntaxNode> exprs, TypeEnvironment tenv,
+            Inferencer inferencer) throws TypeException
+    {
+        HashMap<String, Entry> defined = new HashMap<>();
+        pending.clear();
+        inferred = 0;
+        reused = 0;
+
+        Type last = null;
+        for (SyntaxNode expr : exprs)
+        {
+            if (!(expr instanceof ValNode))
+            {
+                last = expr.typeOf(tenv, inferencer);
+                continue;
+            }
+
+            ValNode val = (ValNode) expr;
+            String name = val.getName().getValue();
+            ArrayList<SyntaxNode> nodes = new ArrayList<>();
+            long fingerprint = val.fingerprint(nodes);
+            Object[] sources = findSources(val, defined, tenv);
+
+            Entry entry = known.get(name);
+            if (entry != null && entry.fingerprint == fingerprint
+                    && entry.types.length == nodes.size()
+                    && sameSources(entry.sources, sources))
+            {
+                for (int i = 0; i < entry.types.length; i++)
+                    nodes.get(i).setType(entry.types[i]);
+                tenv.updateEnvironment(name, entry.scheme);
+                last = entry.types[0];
+                reused++;
+            }
+            else
+            {
+                last = val.typeOf(tenv, inferencer);
+                entry = new Entry(name, fingerprint, sources,
+                        tenv.lookupScheme(name), nodes);
+                pending.add(entry);
+                inferred++;
+            }
+            defined.put(name, entry);
+        }
+        return inferencer.getSubstitutions().apply(last);
+    }
+
+    /**
+     * Finds what each free name of {@code val} refers to, in the order of
+     * the names: a definition of the program or a scheme of the
+     * environment. A function refers to itself by its own name.
+     */
+    private static Object[] findSources(ValNode val,
+            HashMap<String, Entry> defined, TypeEnvironment tenv)
+    {
+        TreeSet<String> names = new TreeSet<>();
+        val.measure(names);
+        if (val.getExpression() instanceof LambdaNode)
+            names.remove(val.getName().getValue());
+
+        Object[] sources = new Object[2 * names.size()];
+        int i = 0;
+        for (String name : names)
+        {
+            Entry entry = defined.get(name);
+            sources[i++] = name;
+            sources[i++] = entry != null ? entry : tenv.lookupScheme(name);
+        }
+        return sources;
+    }
+
+    /**
+     * Determine if the free names of two definitions refer to the same
+     * definitions and schemes.
+     */
+    private static boolean sameSources(Object[] was, Object[] now)
+    {
+        if (was.length != now.length)
+            return false;
+        for (int i = 0; i < was.length; i += 2)
+            if (!was[i].equals(now[i]) || was[i + 1] != now[i + 1])
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Inlines calls to small functions. A function is known if it is bound by a
+ * top-level {@code val} to a lambda exactly once; calls to a known function
+ * that follow its definition are replaced by the body of the function with
+ * the argument substituted for the parameter. A function is only inlined if
+ * its body is no larger than the budget and does not refer to the function
+ * itself, so recursive functions are never expanded. A lambda applied
+ * directly is always expanded.
+ *
+ * @author Zach Kissel
+ */
+public final class Inliner
+{
+    private static final int BUDGET = 32; // The largest body inlined, in nodes.
+
+    private final HashMap<String, LambdaNode> known;   // The known functions.
+    private final HashMap<String, HashSet<String>> uses; // Their free names.
+    private final HashSet<String> defined;            // Every top-level name.
+    private final HashMap<String, Integer> bound;     // Local names in scope.
+
+    /**
+     * Constructs an inliner that knows no functions.
+     */
+    public Inliner()
+    {
+        known = new HashMap<>();
+        uses = new HashMap<>();
+        defined = new HashSet<>();
+        bound = new HashMap<>();
+    }
+
+    /**
+     * Records the top-level definition of {@code name}. A name that is
+     * defined more than once is not known.
+     *
+     * @param name the name being defined.
+     * @param expr the value of the name, already inlined, or null if the
+     *             value may not be inlined.
+     */
+    void define(Token name, SyntaxNode expr)
+    {
+        String id = name.getValue();
+        if (!defined.add(id))
+        {
+            known.remove(id);
+            uses.remove(id);
+            return;
+        }
+
+        if (!(expr instanceof LambdaNode))
+            return;
+
+        LambdaNode lambda = (LambdaNode) expr;
+        HashSet<String> names = new HashSet<>();
+        if (lambda.getBody().measure(names) > BUDGET || names.contains(id))
+            return;
+
+        known.put(id, lambda);
+        uses.put(id, names);
+    }
+
+    /**
+     * Brings the local variable {@code var} into scope.
+     *
+     * @param var the variable.
+     */
+    void bind(Token var)
+    {
+        bound.merge(var.getValue(), 1, Integer::sum);
+    }
+
+    /**
+     * Takes the local variable {@code var} out of scope.
+     *
+     * @param var the variable.
+     */
+    void release(Token var)
+    {
+        bound.computeIfPresent(var.getValue(), (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    /**
+     * Expands the call of {@code function} on {@code argument} if the
+     * function is a lambda or a known function.
+     *
+     * @param call     the call.
+     * @param function the function called, already inlined.
+     * @param argument the argument, already inlined.
+     * @return the expanded body or the call itself.
+     */
+    SyntaxNode inlineCall(ApplyNode call, SyntaxNode function,
+            SyntaxNode argument)
+    {
+        if (function instanceof LambdaNode)
+            return ((LambdaNode) function).expand(argument,
+                    call.getLineNumber());
+
+        if (!(function instanceof TokenNode))
+            return call;
+
+        Token tok = ((TokenNode) function).getToken();
+        LambdaNode lambda = known.get(tok.getValue());
+        if (tok.getType() != TokenType.ID || lambda == null
+                || bound.containsKey(tok.getValue()))
+            return call;
+
+        // The body refers to top-level names, a local of the call site with
+        // the same name would capture them.
+        String param = lambda.getVariable().getValue();
+        for (String name : uses.get(tok.getValue()))
+            if (!name.equals(param) && bound.containsKey(name))
+                return call;
+
+        return lambda.expand(argument, call.getLineNumber());
+    }
+
+    /**
+     * Renames the binder {@code var} of {@code scope} when a value
+     * substituted in the scope refers to a name equal to it, so the binder
+     * can not capture the value.
+     *
+     * @param var      the binder.
+     * @param scope    the expression the binder is in scope in.
+     * @param bindings the substitution outside the binder.
+     * @param inner    receives the substitution in the scope.
+     * @param line     the line of the binder.
+     * @return the binder to use in the copy.
+     */
+    static Token rename(Token var, SyntaxNode scope,
+            Map<String, SyntaxNode> bindings, Map<String, SyntaxNode> inner,
+            long line)
+    {
+        inner.putAll(bindings);
+        inner.remove(var.getValue());
+
+        HashSet<String> free = new HashSet<>();
+        for (SyntaxNode value : inner.values())
+            value.measure(free);
+        if (!free.contains(var.getValue()))
+            return var;
+
+        // Primes are not part of identifiers, so the new name can only
+        // clash with another renamed binder.
+        scope.measure(free);
+        String name = var.getValue() + "'";
+        while (free.contains(name))
+            name += "'";
+
+        Token renamed = new Token(TokenType.ID, name);
+        inner.put(var.getValue(), new TokenNode(renamed, line));
+        return renamed;
+    }
+}
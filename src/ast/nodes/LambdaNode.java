@@ -16,15 +16,32 @@
  */
 package ast.nodes;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.Applicable;
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.MemoChain;
+import ast.MemoFunction;
+import ast.TailCall;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.FunType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
+import lexer.TokenType;
+import vm.Assembler;
 
 /**
  * This node represents a lambda (fn) expression.
@@ -32,7 +49,10 @@ import lexer.Token;
 public final class LambdaNode extends SyntaxNode
 {
     private final Token      variable; // parameter
-    private final SyntaxNode body;     // function body
+    private SyntaxNode       body;     // function body
+    private Token[]          frame;    // layout of the activation frame
+    private Scope.Address[]  captures; // where the free variables live
+    private boolean          resolved; // true once captures are known
 
     /**
      * Constructs a new lambda node.
@@ -45,24 +65,93 @@ public final class LambdaNode extends SyntaxNode
     {
         super(line);
         this.variable = variable;
-        this.body = body;
+        this.body = adopt(body);
+        this.frame = new Token[] { variable };
+        this.captures = new Scope.Address[0];
+        this.resolved = false;
+    }
+
+    /**
+     * Get the parameter of the lambda.
+     *
+     * @return the parameter.
+     */
+    Token getVariable()
+    {
+        return variable;
+    }
+
+    /**
+     * Get the body of the lambda.
+     *
+     * @return the body.
+     */
+    SyntaxNode getBody()
+    {
+        return body;
+    }
+
+    /**
+     * Determine if the lambda is a curried associative operation on its two
+     * parameters, {@code fn a -> fn b -> a op b} where op is +, *, and, or,
+     * or list concatenation. A fold with such a function can combine the
+     * parts of the list in any grouping.
+     *
+     * @return true if the lambda is an associative operation.
+     */
+    boolean isAssociative()
+    {
+        return associativeOp() != null;
     }
 
     /**
-     * Evaluate the node: produce a closure that remembers the current env.
+     * Get the operation of a lambda that is a curried associative operation
+     * on its two parameters.
+     *
+     * @return the operation or null if the lambda is not associative.
+     */
+    TokenType associativeOp()
+    {
+        if (!(body instanceof LambdaNode))
+            return null;
+
+        LambdaNode inner = (LambdaNode) body;
+        if (!(inner.body instanceof BinOpNode))
+            return null;
+
+        BinOpNode op = (BinOpNode) inner.body;
+        return op.combines(variable.getValue(), inner.variable.getValue())
+                ? op.op : null;
+    }
+
+    /**
+     * Evaluate the node: produce a flat closure. The closure copies the values
+     * of the free variables of the body and nothing else; top-level values
+     * are reached through the root environment.
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException
     {
-        Environment capturedEnv = env.copy();
-        return new Closure(variable, body, capturedEnv);
+        // Without the free variable information keep the whole frame chain.
+        if (!resolved)
+            return new Closure(this, env, new Object[0]);
+
+        Object[] captured = new Object[captures.length];
+        for (int i = 0; i < captures.length; i++)
+        {
+            if (captures[i].getKind() == Scope.LOCAL)
+                captured[i] = env.lookupLocal(captures[i].getIndex());
+            else
+                captured[i] = env.lookupCaptured(captures[i].getIndex());
+        }
+        return new Closure(this, env.getRoot(), captured);
     }
 
     /**
      * Type of a lambda: (paramType -> bodyType).
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         // Fresh type variable for the parameter
@@ -75,12 +164,189 @@ public final class LambdaNode extends SyntaxNode
         // Type of the body under the extended environment
         Type bodyType = body.typeOf(newTenv, inferencer);
 
-        // Apply accumulated substitutions
-        Type finalParamType = inferencer.getSubstitutions().apply(paramType);
-        Type finalBodyType  = inferencer.getSubstitutions().apply(bodyType);
+        // Return function type paramType -> bodyType. The variables are
+        // bound in place, so the substitutions need not be applied here;
+        // applying them at every level would make nested lambdas quadratic.
+        return TypeFactory.funType(paramType, bodyType);
+    }
+
+    /**
+     * Resolve the body in a new function scope whose first slot is the
+     * parameter. The names the body uses from enclosing functions are its
+     * free variables, they are captured when the closure is built. The calls
+     * the body makes in tail position are marked as tail calls.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+        Scope bodyScope = new Scope(scope);
+        bodyScope.declare(variable);
+        body.resolve(bodyScope);
+        body.markTail();
+        frame = bodyScope.getSlotNames();
+        captures = bodyScope.getCaptureSources();
+        resolved = true;
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        body.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        body = adopt(body.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the body, the parameter is in scope in the body.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        inliner.bind(variable);
+        body = adopt(body.inline(inliner));
+        inliner.release(variable);
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        body = adopt(body.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree. The parameter is renamed if it
+     * would capture a substituted value.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        HashMap<String, SyntaxNode> inner = new HashMap<>();
+        Token name = Inliner.rename(variable, body, bindings, inner,
+                getLineNumber());
+        return new LambdaNode(name, body.copy(inner), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        HashSet<String> used = new HashSet<>();
+        int size = 1 + body.measure(used);
+        used.remove(variable.getValue());
+        names.addAll(used);
+        return size;
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes),
+                variable.getValue().hashCode());
+        return mix(hash, body.fingerprint(nodes));
+    }
+
+    /**
+     * Expands an application of the lambda to {@code argument} into a copy of
+     * its body. A variable or constant argument is substituted for the
+     * parameter; any other argument is bound to the parameter by a let so it
+     * is still evaluated exactly once.
+     *
+     * @param argument the argument of the application.
+     * @param line     the line of the application.
+     * @return the expanded body.
+     */
+    SyntaxNode expand(SyntaxNode argument, long line)
+    {
+        HashMap<String, SyntaxNode> bindings = new HashMap<>();
+        if (argument instanceof TokenNode || argument instanceof ConstNode)
+        {
+            bindings.put(variable.getValue(), argument);
+            return body.copy(bindings);
+        }
+        return new LetNode(variable, argument, body.copy(bindings), line);
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (body == oldChild)
+            body = newChild;
+    }
+
+    /**
+     * Compile the body into a method of its own and build a closure
+     * capturing the free variables.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        if (!resolved)
+            throw new CompileException(buildErrorMessage("unresolved lambda."));
+        gen.makeClosure(variable, body, captures);
+    }
 
-        // Return function type paramType -> bodyType
-        return new FunType(finalParamType, finalBodyType);
+    /**
+     * Assemble the body as a function of its own and build a closure
+     * capturing the free variables.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        if (!resolved)
+            throw new CompileException(buildErrorMessage("unresolved lambda."));
+        asm.emitClosure(variable, body, captures);
     }
 
     @Override
@@ -94,29 +360,31 @@ public final class LambdaNode extends SyntaxNode
     }
 
     /**
-     * Runtime closure value for a lambda.
+     * Runtime closure value for a lambda. A closure holds only the values of
+     * the free variables of its body. The body is read through the lambda
+     * node so a closure always runs the current (possibly rewritten) body.
      */
-    public static final class Closure
+    public static final class Closure implements Applicable
     {
-        private final Token       parameter;
-        private final SyntaxNode  body;
+        private final LambdaNode  lambda;
         private final Environment env;
+        private final Object[]    captured;
 
-        public Closure(Token parameter, SyntaxNode body, Environment env)
+        public Closure(LambdaNode lambda, Environment env, Object[] captured)
         {
-            this.parameter = parameter;
-            this.body = body;
+            this.lambda = lambda;
             this.env = env;
+            this.captured = captured;
         }
 
         public Token getParameter()
         {
-            return parameter;
+            return lambda.variable;
         }
 
         public SyntaxNode getBody()
         {
-            return body;
+            return lambda.body;
         }
 
         public Environment getEnvironment()
@@ -124,10 +392,72 @@ public final class LambdaNode extends SyntaxNode
             return env;
         }
 
+        /**
+         * Get the values captured by the closure.
+         *
+         * @return the captured values.
+         */
+        public Object[] getCaptured()
+        {
+            return captured;
+        }
+
+        /**
+         * Applies the closure to {@code arg}. The argument is bound in a
+         * small activation frame next to the captured values. Calls the body
+         * makes in tail position come back as a {@link TailCall} and are made
+         * here in a loop, memoized functions included; a call of the closure
+         * itself reuses the frame.
+         *
+         * @param arg the argument value.
+         * @return the value of the body.
+         * @throws EvaluationException if the evaluation of the body fails.
+         */
+        @Override
+        public Object apply(Object arg) throws EvaluationException
+        {
+            Closure closure = this;
+            Environment newEnv = new Environment(env, lambda.frame, captured);
+            MemoChain chain = null;
+            for (;;)
+            {
+                newEnv.updateEnvironment(0, arg);
+                Object result = closure.lambda.body.evaluate(newEnv);
+                if (!(result instanceof TailCall))
+                    return MemoChain.finish(chain, result);
+
+                TailCall call = (TailCall) result;
+                Applicable function = call.getFunction();
+                arg = call.getArgument();
+
+                // A memoized function called in tail position runs here too.
+                if (function instanceof MemoFunction)
+                {
+                    if (chain == null)
+                        chain = new MemoChain();
+                    function = chain.enter((MemoFunction) function, arg);
+                    if (function == null)
+                        return MemoChain.finish(chain, chain.getCached());
+                }
+                if (!(function instanceof Closure))
+                    return MemoChain.finish(chain, function.apply(arg));
+
+                // An unresolved body may have captured the frame itself.
+                if (function == closure && closure.lambda.resolved)
+                    newEnv.reset();
+                else
+                {
+                    closure = (Closure) function;
+                    newEnv = new Environment(closure.env,
+                            closure.lambda.frame, closure.captured);
+                }
+            }
+        }
+
         @Override
         public String toString()
         {
-            return "<closure " + parameter.getValue() + " -> ... >";
+            return "<closure " + lambda.variable.getValue() + " -> ... >";
         }
     }
 }
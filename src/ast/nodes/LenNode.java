@@ -16,16 +16,25 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.IntType;
-import ast.typesystem.types.ListType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * Represents the lentght built in function.
@@ -45,7 +54,7 @@ public class LenNode extends SyntaxNode
     public LenNode(SyntaxNode lst, long line)
     {
         super(line);
-        this.lst = lst;
+        this.lst = adopt(lst);
     }
 
     /**
@@ -55,19 +64,38 @@ public class LenNode extends SyntaxNode
      * @return the object representing the result of the evaluation.
      * @throws EvaluationException if the evaluation fails.
      */
-    @SuppressWarnings("unchecked")
     public Object evaluate(Environment env) throws EvaluationException
     {
         Object res = lst.evaluate(env);
 
-        if (!(res instanceof LinkedList))
+        if (!(res instanceof ListValue))
         {
             logError("Linked list expected.");
             throw new EvaluationException();
         }
 
-        LinkedList<Object> theList = (LinkedList<Object>) res;
-        return theList.size();
+        // Every cell knows the length of its list.
+        return ((ListValue) res).size();
+    }
+
+    /**
+     * Evaluate the node without boxing the length.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the length of the list.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        Object res = lst.evaluate(env);
+
+        if (!(res instanceof ListValue))
+        {
+            logError("Linked list expected.");
+            throw new EvaluationException();
+        }
+        return ((ListValue) res).size();
     }
 
     /**
@@ -79,13 +107,145 @@ public class LenNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type lType = lst.typeOf(tenv, inferencer);
         
-        inferencer.unify(lType, new ListType(tenv.getTypeVariable()), buildErrorMessage("List type expected."));
-        return new IntType();
+        inferencer.unify(lType, TypeFactory.listType(tenv.getTypeVariable()), buildErrorMessage("List type expected."));
+        return TypeFactory.intType();
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        lst.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        lst.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        lst = adopt(lst.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        lst = adopt(lst.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the list. Mapping a list does not change
+     * its length, so the length of a map is the length of the list mapped.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        lst = adopt(lst.fuse());
+        if (lst instanceof MapNode)
+            lst = adopt(((MapNode) lst).getList());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new LenNode(lst.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + lst.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, lst.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (lst == oldChild)
+            lst = newChild;
+    }
+
+    /**
+     * Compile the list and call the runtime {@code len}.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        lst.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("len", CodeGenerator.UNARY);
+    }
+
+    /**
+     * Assemble the list followed by {@code LEN}.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        lst.assemble(asm);
+        asm.emit(Opcode.LEN, getLineNumber());
     }
 
     /**
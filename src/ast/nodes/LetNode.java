@@ -16,15 +16,28 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.Applicable;
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents a let expression.
@@ -36,6 +49,7 @@ public final class LetNode extends SyntaxNode
     private Token var;
     private SyntaxNode varExpr;
     private SyntaxNode expr;
+    private int slot;           // The frame slot holding the variable.
 
     /**
      * Constructs a new binary operation syntax node.
@@ -49,8 +63,9 @@ public final class LetNode extends SyntaxNode
     {
         super(line);
         this.var = var;
-        this.varExpr = varExpr;
-        this.expr = expr;
+        this.varExpr = adopt(varExpr);
+        this.expr = adopt(expr);
+        this.slot = -1;
     }
 
     /**
@@ -62,21 +77,29 @@ public final class LetNode extends SyntaxNode
      */
     public Object evaluate(Environment env) throws EvaluationException
     {
-
         Object varVal = null;
-        Environment envCopy = env.copy(); // Copy the environment to create a
-                                          // new scope.
 
         varVal = varExpr.evaluate(env);
 
         if (varVal instanceof Integer || varVal instanceof Double
-                || varVal instanceof Boolean || varVal instanceof LinkedList)
-            envCopy.updateEnvironment(var, varVal);
+                || varVal instanceof Boolean || varVal instanceof ListValue
+                || varVal instanceof Applicable)
+        {
+            // The variable lives in a slot of the current frame, no new
+            // scope needs to be built.
+            if (slot >= 0)
+                env.updateEnvironment(slot, varVal);
+            else
+            {
+                env = new Environment(env, new Token[] { var });
+                env.updateEnvironment(0, varVal);
+            }
+        }
         else
             logError("[Internal] Failed to add " + var + " with  value "
                     + varVal.getClass());
 
-        Object value = expr.evaluate(envCopy);
+        Object value = expr.evaluate(env);
         return value;
     }
 
@@ -89,17 +112,229 @@ public final class LetNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
-        Type valType = varExpr.typeOf(tenv, inferencer);
+        Type valType;
+        tenv.enterLevel();
+        try
+        {
+            valType = varExpr.typeOf(tenv, inferencer);
+        }
+        finally
+        {
+            tenv.leaveLevel();
+        }
 
+        // The variable may be used at a different type in each use.
         TypeEnvironment cpy = tenv.copy();
-        cpy.updateEnvironment(var, valType);
+        cpy.generalize(var, valType);
 
         return expr.typeOf(cpy, inferencer);
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        varExpr.resolve(scope);
+
+        int mark = scope.mark();
+        slot = scope.declare(var);
+        expr.resolve(scope);
+        scope.release(mark);
+
+        // A new list used once, and not from a function, belongs to its use.
+        if (scope.uses(slot) == 1 && varExpr.isFresh())
+            expr.claim(var.getValue());
+    }
+
+    /**
+     * Determine if the let evaluates to a list nothing else can reach.
+     *
+     * @return true if the body owns its list.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return expr.isFresh();
+    }
+
+    /**
+     * Pass the claim on to the value and, unless the let hides the name, to
+     * the body.
+     *
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return varExpr.claim(name)
+                || !var.getValue().equals(name) && expr.claim(name);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        varExpr.lower(subst);
+        expr.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        varExpr = adopt(varExpr.foldConstants(pool));
+        expr = adopt(expr.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children, the variable is in scope in the
+     * body.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        varExpr = adopt(varExpr.inline(inliner));
+        inliner.bind(var);
+        expr = adopt(expr.inline(inliner));
+        inliner.release(var);
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        varExpr = adopt(varExpr.fuse());
+        expr = adopt(expr.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree. The variable is renamed if it
+     * would capture a substituted value.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        HashMap<String, SyntaxNode> inner = new HashMap<>();
+        Token name = Inliner.rename(var, expr, bindings, inner,
+                getLineNumber());
+        return new LetNode(name, varExpr.copy(bindings), expr.copy(inner),
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        HashSet<String> used = new HashSet<>();
+        int size = 1 + varExpr.measure(names) + expr.measure(used);
+        used.remove(var.getValue());
+        names.addAll(used);
+        return size;
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), var.getValue().hashCode());
+        hash = mix(hash, varExpr.fingerprint(nodes));
+        return mix(hash, expr.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (varExpr == oldChild)
+            varExpr = newChild;
+        if (expr == oldChild)
+            expr = newChild;
+    }
+
+    /**
+     * The body of a let in tail position is in tail position.
+     */
+    @Override
+    protected void markTail()
+    {
+        expr.markTail();
+    }
+
+    /**
+     * Compile the value into the slot of the variable, then the body.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        if (slot < 0)
+            throw new CompileException(buildErrorMessage("unresolved let."));
+
+        varExpr.compile(gen);
+        gen.pushString(String.valueOf(var));
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("letValue",
+                "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;");
+        gen.storeLocal(slot);
+        expr.compile(gen);
+    }
+
+    /**
+     * Assemble the value into the slot of the variable, then the body.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        if (slot < 0)
+            throw new CompileException(buildErrorMessage("unresolved let."));
+
+        varExpr.assemble(asm);
+        asm.emit(Opcode.LET, slot, asm.constant(String.valueOf(var)),
+                getLineNumber());
+        expr.assemble(asm);
+    }
+
     /**
      * Display a AST subtree with the indentation specified.
      * 
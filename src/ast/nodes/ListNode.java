@@ -17,14 +17,27 @@
 package ast.nodes;
 
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.ListType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the list structure.
@@ -45,6 +58,8 @@ public final class ListNode extends SyntaxNode
     {
         super(line);
         this.entries = entries;
+        for (SyntaxNode node : entries)
+            adopt(node);
     }
 
     /**
@@ -58,11 +73,11 @@ public final class ListNode extends SyntaxNode
     {
         Object currVal;
         Object firstVal;
-        LinkedList<Object> lst = new LinkedList<>();
+        ListValue.Builder lst = new ListValue.Builder();
 
         // Handle the empty list.
         if (entries.size() == 0)
-            return lst;
+            return ListValue.EMPTY;
 
         // The type of the list is the type of the first element
         // of the list.
@@ -76,7 +91,7 @@ public final class ListNode extends SyntaxNode
         }
         else if (firstVal instanceof Integer || firstVal instanceof Double || firstVal instanceof Boolean)
             lst.add(firstVal);
-        else if (firstVal instanceof LinkedList)
+        else if (firstVal instanceof ListValue)
         {
             logError("nested lists not supported.");
             throw new EvaluationException();
@@ -94,7 +109,7 @@ public final class ListNode extends SyntaxNode
             currVal = entries.get(i).evaluate(env);
 
             if (!(currVal instanceof Integer) && !(currVal instanceof Double)
-                    && !(currVal instanceof LinkedList)
+                    && !(currVal instanceof ListValue)
                     && !(currVal instanceof Boolean))
             {
                 logError("unknown element type.");
@@ -109,7 +124,7 @@ public final class ListNode extends SyntaxNode
 
             lst.add(currVal);
         }
-        return lst;
+        return lst.build();
     }
 
     /**
@@ -121,11 +136,11 @@ public final class ListNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         if (entries.isEmpty())
-            return new ListType(tenv.getTypeVariable());
+            return TypeFactory.listType(tenv.getTypeVariable());
         else
         {
             // Ensure that all elements are of the same type t, and then return
@@ -135,8 +150,205 @@ public final class ListNode extends SyntaxNode
                 inferencer.unify(lstType, entry.typeOf(tenv, inferencer),
                         buildErrorMessage("All elements must be of the same type."));
 
-            return new ListType(lstType);
+            return TypeFactory.listType(lstType);
+        }
+    }
+
+    /**
+     * A list expression builds a new list each time it is evaluated, the
+     * lists known before the program runs are folded into shared constants.
+     * 
+     * @return true.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return true;
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        for (SyntaxNode node : entries)
+            node.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        for (SyntaxNode node : entries)
+            node.lower(subst);
+    }
+
+    /**
+     * Fold the entries. A list whose entries are all constants of the same
+     * type becomes a constant list shared through the pool.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the constant list or the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        ListIterator<SyntaxNode> it = entries.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().foldConstants(pool)));
+
+        ListValue.Builder values = new ListValue.Builder();
+        for (SyntaxNode node : entries)
+        {
+            Object val = node.constantValue();
+            if (!(val instanceof Integer) && !(val instanceof Double)
+                    && !(val instanceof Boolean))
+                return this;
+            if (values.first() != null && values.first().getClass() != val
+                    .getClass())
+                return this;
+            values.add(val);
+        }
+        return new ConstNode(pool.intern(values.build()), getLineNumber());
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        ListIterator<SyntaxNode> it = entries.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().inline(inliner)));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        ListIterator<SyntaxNode> it = entries.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().fuse()));
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        LinkedList<SyntaxNode> copies = new LinkedList<>();
+        for (SyntaxNode entry : entries)
+            copies.add(entry.copy(bindings));
+        return new ListNode(copies, getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        int size = 1;
+        for (SyntaxNode entry : entries)
+            size += entry.measure(names);
+        return size;
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), entries.size());
+        for (SyntaxNode entry : entries)
+            hash = mix(hash, entry.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        ListIterator<SyntaxNode> it = entries.listIterator();
+        while (it.hasNext())
+            if (it.next() == oldChild)
+                it.set(newChild);
+    }
+
+    /**
+     * Compile the entries, adding each to the list as it is computed.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        if (entries.size() == 0)
+        {
+            gen.callRuntime("emptyList", "()Ljava/lang/Object;");
+            return;
+        }
+
+        entries.getFirst().compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("listFirst", CodeGenerator.UNARY);
+        for (int i = 1; i < entries.size(); i++)
+        {
+            entries.get(i).compile(gen);
+            gen.pushInt(getLineNumber());
+            gen.callRuntime("listAdd", CodeGenerator.BINARY);
+        }
+        gen.callRuntime("listEnd", "(Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Assemble the entries, adding each to the list as it is computed.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        if (entries.size() == 0)
+        {
+            asm.emit(Opcode.NIL);
+            return;
+        }
+
+        entries.getFirst().assemble(asm);
+        asm.emit(Opcode.LIST_FIRST, getLineNumber());
+        for (int i = 1; i < entries.size(); i++)
+        {
+            entries.get(i).assemble(asm);
+            asm.emit(Opcode.LIST_ADD, getLineNumber());
         }
+        asm.emit(Opcode.LIST_END);
     }
 
     /**
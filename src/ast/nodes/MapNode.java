@@ -16,17 +16,30 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.Applicable;
+import ast.ConstantPool;
 import ast.EvaluationException;
-import ast.nodes.LambdaNode.Closure;
+import ast.ListValue;
+import ast.ParallelMap;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.FunType;
 import ast.typesystem.types.ListType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * this is MapNode for Phase 3.
@@ -40,8 +53,28 @@ public class MapNode extends SyntaxNode
     public MapNode(SyntaxNode func, SyntaxNode listExpr, long lineNumber)
     {
         super(lineNumber);
-        this.func = func;
-        this.listExpr = listExpr;
+        this.func = adopt(func);
+        this.listExpr = adopt(listExpr);
+    }
+
+    /**
+     * Get the function that is mapped over the list.
+     *
+     * @return the function expression.
+     */
+    SyntaxNode getFunction()
+    {
+        return func;
+    }
+
+    /**
+     * Get the list that is mapped.
+     *
+     * @return the list expression.
+     */
+    SyntaxNode getList()
+    {
+        return listExpr;
     }
 
     /**
@@ -53,35 +86,56 @@ public class MapNode extends SyntaxNode
     {
         // this is where we evaluate the function expression
         Object fVal = func.evaluate(env);
-        if (!(fVal instanceof Closure))
+        if (!(fVal instanceof Applicable))
         {
             logError("map: first argument must be a function.");
             throw new EvaluationException();
         }
 
-        Closure clo = (Closure) fVal;
+        Applicable clo = (Applicable) fVal;
 
         // this is where we evaluate the list expression
         Object listVal = listExpr.evaluate(env);
-        if (!(listVal instanceof LinkedList<?>))
+        if (!(listVal instanceof ListValue))
         {
             logError("map: second argument must be a list.");
             throw new EvaluationException();
         }
 
-        LinkedList<?> inputList = (LinkedList<?>) listVal;
-        LinkedList<Object> result = new LinkedList<>();
+        // this is where for each element x in the list we evaluate f x, long
+        // lists are split between the workers of a parallel map
+        // A list nothing else can reach takes the results in its place.
+        ListValue lst = (ListValue) listVal;
+        if (listExpr.isFresh() && !ParallelMap.isParallel(lst.size()))
+            return mapOwned(clo, lst);
+        return ParallelMap.map(clo, lst);
+    }
 
-        // this is where for each element x in the list we evaluate f x using the closure env
-        for (Object elem : inputList)
+    /**
+     * this is the map of a list the node owns, the results are stored over
+     * the elements as long as the storage of the list can hold them.
+     */
+    private ListValue mapOwned(Applicable clo, ListValue lst)
+            throws EvaluationException
+    {
+        Iterator<Object> elems = lst.iterator();
+        for (int i = 0; elems.hasNext(); i++)
         {
-            Environment newEnv = clo.getEnvironment().copy();
-            newEnv.updateEnvironment(clo.getParameter(), elem);
-            Object mapped = clo.getBody().evaluate(newEnv);
-            result.add(mapped);
+            Object value = clo.apply(elems.next());
+            if (!lst.setOwned(i, value))
+            {
+                // this is where the results stop fitting, the list is built
+                ListValue.Builder result = new ListValue.Builder();
+                Iterator<Object> done = lst.iterator();
+                for (int j = 0; j < i; j++)
+                    result.add(done.next());
+                result.add(value);
+                while (elems.hasNext())
+                    result.add(clo.apply(elems.next()));
+                return result.build();
+            }
         }
-
-        return result;
+        return lst;
     }
 
     /**
@@ -93,7 +147,7 @@ public class MapNode extends SyntaxNode
      * this is   map f xs : list[b]
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         // this is where we get the types of the subexpressions
@@ -125,7 +179,188 @@ public class MapNode extends SyntaxNode
 
         // this is where we return the result type list[b] with substitutions applied
         Type finalResultTy = inferencer.getSubstitutions().apply(resultTy);
-        return new ListType(finalResultTy);
+        return TypeFactory.listType(finalResultTy);
+    }
+
+    /**
+     * A map builds a new list, or reuses one nothing else can reach.
+     * 
+     * @return true.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return true;
+    }
+
+    /**
+     * Pass the claim on to the children.
+     * 
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return func.claim(name) || listExpr.claim(name);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    @Override
+    public void resolve(Scope scope)
+    {
+        func.resolve(scope);
+        listExpr.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        func.lower(subst);
+        listExpr.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        func = adopt(func.foldConstants(pool));
+        listExpr = adopt(listExpr.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        func = adopt(func.inline(inliner));
+        listExpr = adopt(listExpr.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children. A map of a map becomes a
+     * single map of the composed functions.
+     *
+     * @return the fused node.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        func = adopt(func.fuse());
+        listExpr = adopt(listExpr.fuse());
+        if (!(listExpr instanceof MapNode))
+            return this;
+
+        MapNode inner = (MapNode) listExpr;
+        return new MapNode(Fusion.compose(func, inner.getFunction(),
+                getLineNumber()), inner.getList(), getLineNumber());
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new MapNode(func.copy(bindings), listExpr.copy(bindings),
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + func.measure(names) + listExpr.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, func.fingerprint(nodes));
+        hash = mix(hash, listExpr.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (func == oldChild)
+            func = newChild;
+        if (listExpr == oldChild)
+            listExpr = newChild;
+    }
+
+    /**
+     * Compile the function and the list and call the runtime {@code map}.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        func.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("mapFunction", CodeGenerator.UNARY);
+        listExpr.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("map", CodeGenerator.BINARY);
+    }
+
+    /**
+     * Assemble the function and the list followed by {@code MAP}.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        func.assemble(asm);
+        asm.emit(Opcode.MAP_FUNCTION, getLineNumber());
+        listExpr.assemble(asm);
+        asm.emit(Opcode.MAP, getLineNumber());
     }
 
     @Override
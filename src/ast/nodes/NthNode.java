@@ -0,0 +1,276 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
+import environment.Environment;
+import environment.Scope;
+import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
+
+/**
+ * Represents the nth built in function, the element of a list at an index
+ * counting from zero.
+ *
+ * @author Zach Kissel
+ */
+public final class NthNode extends SyntaxNode
+{
+    private SyntaxNode index;
+    private SyntaxNode lst;
+
+    /**
+     * Constructs a new nth syntax node.
+     *
+     * @param index the position of the element.
+     * @param lst   the list to index.
+     * @param line  the line of code the node is associated with.
+     */
+    public NthNode(SyntaxNode index, SyntaxNode lst, long line)
+    {
+        super(line);
+        this.index = adopt(index);
+        this.lst = adopt(lst);
+    }
+
+    /**
+     * Evaluate the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the object representing the result of the evaluation.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public Object evaluate(Environment env) throws EvaluationException
+    {
+        Object idx = index.evaluate(env);
+        Object res = lst.evaluate(env);
+
+        if (!(res instanceof ListValue))
+        {
+            logError("list expected.");
+            throw new EvaluationException();
+        }
+        if (!(idx instanceof Integer))
+        {
+            logError("integer index expected.");
+            throw new EvaluationException();
+        }
+
+        ListValue list = (ListValue) res;
+        int i = (Integer) idx;
+        if (i < 0 || i >= list.size())
+        {
+            logError("index " + i + " out of range.");
+            throw new EvaluationException();
+        }
+
+        // Packed lists and vectors find the element without a walk.
+        return list.get(i);
+    }
+
+    /**
+     * Determine the type of the syntax node. The index is an int and the
+     * node has the type of the elements of the list.
+     *
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer.
+     * @return The type of the syntax node.
+     * @throws TypeException if there is a type error.
+     */
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException
+    {
+        Type idxType = index.typeOf(tenv, inferencer);
+        inferencer.unify(idxType, TypeFactory.intType(),
+                buildErrorMessage("nth: index must be an integer."));
+
+        Type lstType = lst.typeOf(tenv, inferencer);
+        inferencer.unify(TypeFactory.listType(tenv.getTypeVariable()), lstType,
+                buildErrorMessage("List type expected."));
+
+        return ((ListType) inferencer.getSubstitutions().apply(lstType))
+                .getElementType();
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     *
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        index.resolve(scope);
+        lst.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        index.lower(subst);
+        lst.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        index = adopt(index.foldConstants(pool));
+        lst = adopt(lst.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        index = adopt(index.inline(inliner));
+        lst = adopt(lst.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        index = adopt(index.fuse());
+        lst = adopt(lst.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new NthNode(index.copy(bindings), lst.copy(bindings),
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + index.measure(names) + lst.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, index.fingerprint(nodes));
+        hash = mix(hash, lst.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     *
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (index == oldChild)
+            index = newChild;
+        if (lst == oldChild)
+            lst = newChild;
+    }
+
+    /**
+     * Compile the index and the list and call the runtime {@code nth}.
+     *
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        index.compile(gen);
+        lst.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("nth", CodeGenerator.BINARY);
+    }
+
+    /**
+     * Assemble the index and the list followed by {@code NTH}.
+     *
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        index.assemble(asm);
+        lst.assemble(asm);
+        asm.emit(Opcode.NTH, getLineNumber());
+    }
+
+    /**
+     * Display a AST inferencertree with the indentation specified.
+     *
+     * @param indentAmt the amout of indentation to perform.
+     */
+    public void displaySubtree(int indentAmt)
+    {
+        printIndented("nth(", indentAmt);
+        index.displaySubtree(indentAmt + 2);
+        lst.displaySubtree(indentAmt + 2);
+        printIndented(")", indentAmt);
+    }
+}
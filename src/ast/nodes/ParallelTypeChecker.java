@@ -0,0 +1,183 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import ast.ParallelMap;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeScheme;
+import environment.TypeEnvironment;
+
+/**
+ * Type checks the top-level expressions of a program on the workers of the
+ * parallel map. An expression depends on the {@code val} definitions whose
+ * names are free in it. Since a definition can only refer to the
+ * definitions before it and to itself, the dependencies form a dag and
+ * every definition is a component of its own; each expression is checked
+ * as soon as the definitions it uses are, against an environment holding
+ * just their types and with an inferencer of its own. The work of the
+ * inferencers is merged, in program order, once all are done.
+ *
+ * @author Zach Kissel
+ */
+final class ParallelTypeChecker
+{
+    private final SyntaxNode[] exprs;       // The top-level expressions.
+    private final int[][] deps;             // The definitions each uses.
+    private final Inferencer[] inferencers; // The inferencer of each.
+    private final Type[] types;             // The type of each.
+    private final TypeScheme[] schemes;     // The scheme of each definition.
+    private final TypeException[] errors;   // The error of each.
+
+    /**
+     * Constructs a checker for the expressions {@code exprs}.
+     *
+     * @param exprs the top-level expressions, in program order.
+     */
+    ParallelTypeChecker(List<SyntaxNode> exprs)
+    {
+        int n = exprs.size();
+        this.exprs = exprs.toArray(new SyntaxNode[n]);
+        this.deps = new int[n][];
+        this.inferencers = new Inferencer[n];
+        this.types = new Type[n];
+        this.schemes = new TypeScheme[n];
+        this.errors = new TypeException[n];
+        findDependencies();
+    }
+
+    /**
+     * Type check the expressions. The names defined are added to
+     * {@code tenv}, up to the first expression that does not check, and the
+     * solutions found are merged into {@code inferencer}.
+     *
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer.
+     * @return the type of the last expression.
+     * @throws TypeException if an expression does not check; the error is
+     *         the one of the first such expression.
+     */
+    Type check(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException
+    {
+        ForkJoinPool pool = ParallelMap.getPool();
+        try
+        {
+            CompletableFuture<?>[] done =
+                    new CompletableFuture<?>[exprs.length];
+            for (int i = 0; i < exprs.length; i++)
+            {
+                final int idx = i;
+                CompletableFuture<?>[] before =
+                        new CompletableFuture<?>[deps[i].length];
+                for (int j = 0; j < before.length; j++)
+                    before[j] = done[deps[i][j]];
+                done[i] = CompletableFuture.allOf(before)
+                        .thenRunAsync(() -> check(idx, tenv), pool);
+            }
+            CompletableFuture.allOf(done).join();
+        }
+        catch (CompletionException ex)
+        {
+            // Anything but a type error is a fault of the checker itself.
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw ex;
+        }
+
+        for (Inferencer part : inferencers)
+            if (part != null)
+                inferencer.merge(part);
+
+        // The program stops at its first error.
+        for (int i = 0; i < exprs.length; i++)
+        {
+            if (errors[i] != null)
+                throw errors[i];
+            if (schemes[i] != null)
+                tenv.updateEnvironment(
+                        ((ValNode) exprs[i]).getName().getValue(), schemes[i]);
+        }
+        return inferencer.getSubstitutions().apply(types[exprs.length - 1]);
+    }
+
+    /**
+     * Type check the expression {@code i}, once the definitions it uses are
+     * checked. An expression using a definition that does not check is
+     * skipped, the program fails at that definition.
+     */
+    private void check(int i, TypeEnvironment base)
+    {
+        TypeEnvironment tenv = base.fork();
+        for (int d : deps[i])
+        {
+            if (schemes[d] == null)
+                return;
+            tenv.updateEnvironment(
+                    ((ValNode) exprs[d]).getName().getValue(), schemes[d]);
+        }
+
+        inferencers[i] = new Inferencer();
+        try
+        {
+            types[i] = exprs[i].typeOf(tenv, inferencers[i]);
+            if (exprs[i] instanceof ValNode)
+                schemes[i] = tenv.lookupScheme(
+                        ((ValNode) exprs[i]).getName().getValue());
+        }
+        catch (TypeException ex)
+        {
+            errors[i] = ex;
+        }
+    }
+
+    /**
+     * Finds the definitions each expression uses, the last definition before
+     * it of each of its free names.
+     */
+    private void findDependencies()
+    {
+        HashMap<String, Integer> lastDef = new HashMap<>();
+        for (int i = 0; i < exprs.length; i++)
+        {
+            HashSet<String> names = new HashSet<>();
+            exprs[i].measure(names);
+
+            HashSet<Integer> used = new HashSet<>();
+            for (String name : names)
+            {
+                Integer d = lastDef.get(name);
+                if (d != null)
+                    used.add(d);
+            }
+            deps[i] = used.stream().mapToInt(Integer::intValue).toArray();
+
+            if (exprs[i] instanceof ValNode)
+                lastDef.put(((ValNode) exprs[i]).getName().getValue(), i);
+        }
+    }
+}
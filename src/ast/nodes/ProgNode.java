@@ -16,14 +16,28 @@
  */
 package ast.nodes;
 
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ParallelMap;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import lexer.Token;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the program.
@@ -33,6 +47,8 @@ import environment.TypeEnvironment;
 public final class ProgNode extends SyntaxNode
 {
     private LinkedList<SyntaxNode> exprs;
+    private Token[] frame;          // The layout of the top-level frame.
+    private IncrementalChecker checker; // Checks the definitions, if set.
 
     /**
      * Constructs a new program node which represents a list of expressions.
@@ -44,8 +60,33 @@ public final class ProgNode extends SyntaxNode
     {
         super(line);
         this.exprs = exprs;
+        for (SyntaxNode node : exprs)
+            adopt(node);
+        this.frame = new Token[0];
+        this.checker = null;
     }
-    
+
+    /**
+     * Sets the checker that infers the definitions of the program, reusing
+     * the types of the definitions it checked before.
+     * 
+     * @param checker the incremental checker.
+     */
+    public void setChecker(IncrementalChecker checker)
+    {
+        this.checker = checker;
+    }
+
+    /**
+     * Returns the top-level expressions of the program.
+     *
+     * @return the expressions, in program order.
+     */
+    public List<SyntaxNode> getExpressions()
+    {
+        return Collections.unmodifiableList(exprs);
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -68,7 +109,11 @@ public final class ProgNode extends SyntaxNode
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-         Object res = null;
+        Object res = null;
+
+        // The let expressions at the top level keep their values in a
+        // frame of their own.
+        env = new Environment(env, frame);
 
         // Loop over the expressions evaluating every node.
         for (SyntaxNode expr : exprs)
@@ -76,6 +121,185 @@ public final class ProgNode extends SyntaxNode
         return res;
     }
 
+    /**
+     * Resolve the identifiers of the program. The top-level expressions share
+     * a single frame.
+     * 
+     * @param scope the global scope.
+     */
+    @Override
+    public void resolve(Scope scope) {
+        Scope topScope = new Scope(scope);
+
+        for (SyntaxNode expr : exprs)
+            expr.resolve(topScope);
+        frame = topScope.getSlotNames();
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        for (SyntaxNode expr : exprs)
+            expr.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        ListIterator<SyntaxNode> it = exprs.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().foldConstants(pool)));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        ListIterator<SyntaxNode> it = exprs.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().inline(inliner)));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        ListIterator<SyntaxNode> it = exprs.listIterator();
+        while (it.hasNext())
+            it.set(adopt(it.next().fuse()));
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        LinkedList<SyntaxNode> copies = new LinkedList<>();
+        for (SyntaxNode expr : exprs)
+            copies.add(expr.copy(bindings));
+        return new ProgNode(copies, getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        int size = 1;
+        for (SyntaxNode expr : exprs)
+            size += expr.measure(names);
+        return size;
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), exprs.size());
+        for (SyntaxNode expr : exprs)
+            hash = mix(hash, expr.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        ListIterator<SyntaxNode> it = exprs.listIterator();
+        while (it.hasNext())
+            if (it.next() == oldChild)
+                it.set(newChild);
+    }
+
+    /**
+     * Compile each expression into a method of its own, the value of the
+     * program is the value of the last one.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        if (exprs.isEmpty())
+        {
+            gen.pushNull();
+            return;
+        }
+
+        for (int i = 0; i < exprs.size(); i++)
+        {
+            if (i > 0)
+                gen.pop();
+            gen.compileTopLevel(exprs.get(i));
+        }
+    }
+
+    /**
+     * Assemble the expressions in order, the value of the program is the
+     * value of the last one.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    @Override
+    public void assemble(Assembler asm) throws CompileException
+    {
+        if (exprs.isEmpty())
+        {
+            asm.emit(Opcode.NULL);
+            return;
+        }
+
+        for (int i = 0; i < exprs.size(); i++)
+        {
+            if (i > 0)
+                asm.emit(Opcode.POP);
+            exprs.get(i).assemble(asm);
+        }
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -86,16 +310,23 @@ public final class ProgNode extends SyntaxNode
      * @throws TypeException if there is a type error.
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
-        for (SyntaxNode ex : exprs)
-            ex.typeOf(tenv, inferencer);
-
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
         if (exprs.size() == 0)
             throw new TypeException("Inavalid expression.");
 
-        Type rv = inferencer.getSubstitutions().apply(
-                exprs.get(exprs.size() - 1).typeOf(tenv, inferencer));
-        return rv;
+        if (checker != null)
+            return checker.check(exprs, tenv, inferencer);
+
+        // Long programs are checked a definition at a time on the workers.
+        if (ParallelMap.isParallelCheck(exprs.size()))
+            return new ParallelTypeChecker(exprs).check(tenv, inferencer);
+
+        // The type of the program is the type of its last expression.
+        Type last = null;
+        for (SyntaxNode ex : exprs)
+            last = ex.typeOf(tenv, inferencer);
+
+        return inferencer.getSubstitutions().apply(last);
     }
 
     /**
@@ -107,10 +338,8 @@ public final class ProgNode extends SyntaxNode
      */
     public boolean typeCheck(TypeEnvironment tenv, Inferencer inferencer) {
         try {
-            for (SyntaxNode expr : exprs) {
-                expr.typeOf(tenv, inferencer);
-            }
-
+            if (!exprs.isEmpty())
+                typeOf(tenv, inferencer);
         } catch (TypeException ex) {
             System.out.println("Type Error: " + ex.getMessage());
             return false;
@@ -0,0 +1,111 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.Map;
+
+import ast.EvaluationException;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * An arithmetic operation specialized to real operands. The node stays in the
+ * tree as long as both operands evaluate to reals. Once the type checker proves
+ * the operand types the guard is dropped and the operands are evaluated without
+ * boxing them.
+ *
+ * @author Zach Kissel
+ */
+final class RealArithNode extends BinOpNode
+{
+    private final boolean proven; // True if the operand types are proven.
+
+    /**
+     * Constructs a node specialized to real operands.
+     *
+     * @param lterm  the left operand.
+     * @param op     the operation to perform.
+     * @param rterm  the right operand.
+     * @param line   the line of code the node is associated with.
+     * @param proven true if the type checker proved the operand types.
+     */
+    RealArithNode(SyntaxNode lterm, TokenType op, SyntaxNode rterm, long line,
+            boolean proven)
+    {
+        super(lterm, op, rterm, line, false);
+        this.proven = proven;
+    }
+
+    /**
+     * Determine if the node knows the types of its operands from the type
+     * checker.
+     *
+     * @return true if the operand types were proven.
+     */
+    @Override
+    protected boolean isProven()
+    {
+        return proven;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree that keeps the specialization.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new RealArithNode(leftTerm.copy(bindings), op,
+                rightTerm.copy(bindings), getLineNumber(), proven);
+    }
+
+    /**
+     * Evaluate the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the object representing the result of the evaluation.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException
+    {
+        if (proven)
+            return evaluateDouble(env);
+
+        Object lval = leftTerm.evaluate(env);
+        Object rval = rightTerm.evaluate(env);
+
+        if (!(lval instanceof Double) || !(rval instanceof Double))
+            return generalize(lval, rval);
+
+        double left = (Double) lval;
+        double right = (Double) rval;
+        switch (op)
+        {
+        case ADD:
+            return left + right;
+        case SUB:
+            return left - right;
+        case MULT:
+            return left * right;
+        default:
+            return left / right;
+        }
+    }
+}
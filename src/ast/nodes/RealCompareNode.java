@@ -0,0 +1,151 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.Map;
+
+import ast.EvaluationException;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * A relational operation specialized to real operands. Equality compares the
+ * values the same way {@link Double#equals(Object)} does in the generic node.
+ * Once the type checker proves the operand types the guard is dropped and the
+ * operands are evaluated without boxing them.
+ *
+ * @author Zach Kissel
+ */
+final class RealCompareNode extends RelOpNode
+{
+    private final boolean proven; // True if the operand types are proven.
+
+    /**
+     * Constructs a node specialized to real operands.
+     *
+     * @param lexpr  the left operand.
+     * @param op     the operation to perform.
+     * @param rexpr  the right operand.
+     * @param line   the line of code the node is associated with.
+     * @param proven true if the type checker proved the operand types.
+     */
+    RealCompareNode(SyntaxNode lexpr, TokenType op, SyntaxNode rexpr, long line,
+            boolean proven)
+    {
+        super(lexpr, op, rexpr, line, false);
+        this.proven = proven;
+    }
+
+    /**
+     * Determine if the node knows the types of its operands from the type
+     * checker.
+     *
+     * @return true if the operand types were proven.
+     */
+    @Override
+    protected boolean isProven()
+    {
+        return proven;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree that keeps the specialization.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new RealCompareNode(leftExpr.copy(bindings), op,
+                rightExpr.copy(bindings), getLineNumber(), proven);
+    }
+
+    /**
+     * Evaluate the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the object representing the result of the evaluation.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException
+    {
+        if (proven)
+            return evaluateBoolean(env);
+
+        Object lval = leftExpr.evaluate(env);
+        Object rval = rightExpr.evaluate(env);
+
+        if (!(lval instanceof Double) || !(rval instanceof Double))
+            return generalize(lval, rval);
+
+        double left = (Double) lval;
+        double right = (Double) rval;
+        switch (op)
+        {
+        case LT:
+            return left < right;
+        case LTE:
+            return left <= right;
+        case GT:
+            return left > right;
+        case GTE:
+            return left >= right;
+        case EQ:
+            return Double.compare(left, right) == 0;
+        case NEQ:
+            return Double.compare(left, right) != 0;
+        default:
+            throw new EvaluationException();
+        }
+    }
+
+    /**
+     * Compare the operands without boxing them once their types are proven.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the result of the comparison.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (!proven)
+            return super.evaluateBoolean(env);
+
+        double left = leftExpr.evaluateDouble(env);
+        double right = rightExpr.evaluateDouble(env);
+        switch (op)
+        {
+        case LT:
+            return left < right;
+        case LTE:
+            return left <= right;
+        case GT:
+            return left > right;
+        case GTE:
+            return left >= right;
+        case EQ:
+            return Double.compare(left, right) == 0;
+        case NEQ:
+            return Double.compare(left, right) != 0;
+        default:
+            throw new EvaluationException();
+        }
+    }
+}
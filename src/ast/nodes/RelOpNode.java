@@ -16,27 +16,38 @@
  */
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.BoolType;
-import ast.typesystem.types.IntType;
-import ast.typesystem.types.RealType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.TokenType;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
- * This node represents relational operations.
+ * This node represents relational operations. Like a binary operation the
+ * node specializes itself to the types of the operands it first sees.
  * 
  * @author Zach Kissel
  */
-public final class RelOpNode extends SyntaxNode
+public class RelOpNode extends SyntaxNode
 {
-    private TokenType op;
-    private SyntaxNode leftExpr;
-    private SyntaxNode rightExpr;
+    protected TokenType op;
+    protected SyntaxNode leftExpr;
+    protected SyntaxNode rightExpr;
+    private boolean specialize;   // True if the node has not been run yet.
 
     /**
      * Constructs a new binary operation syntax node.
@@ -48,11 +59,28 @@ public final class RelOpNode extends SyntaxNode
      */
     public RelOpNode(SyntaxNode lexpr, TokenType op, SyntaxNode rexpr,
             long line)
+    {
+        this(lexpr, op, rexpr, line, true);
+    }
+
+    /**
+     * Constructs a new relational operation syntax node.
+     * 
+     * @param lexpr      the left operand.
+     * @param op         the relational operation to perform.
+     * @param rexpr      the right operand.
+     * @param line       the line of code the node is associated with.
+     * @param specialize true if the node should specialize itself when it is
+     *                   first evaluated.
+     */
+    protected RelOpNode(SyntaxNode lexpr, TokenType op, SyntaxNode rexpr,
+            long line, boolean specialize)
     {
         super(line);
         this.op = op;
-        this.leftExpr = lexpr;
-        this.rightExpr = rexpr;
+        this.leftExpr = adopt(lexpr);
+        this.rightExpr = adopt(rexpr);
+        this.specialize = specialize;
     }
 
     /**
@@ -64,12 +92,32 @@ public final class RelOpNode extends SyntaxNode
      */
     public Object evaluate(Environment env) throws EvaluationException
     {
-        Object lval;
-        Object rval;
-        boolean useDouble = false;
+        Object lval = leftExpr.evaluate(env);
+        Object rval = rightExpr.evaluate(env);
 
-        lval = leftExpr.evaluate(env);
-        rval = rightExpr.evaluate(env);
+        if (specialize)
+        {
+            specialize = false;
+            RelOpNode node = specializeFor(lval, rval);
+            if (node != null)
+                replace(node);
+        }
+        return compute(lval, rval);
+    }
+
+    /**
+     * Compares the values of the operands without making any assumption
+     * about their types.
+     * 
+     * @param lval the value of the left operand.
+     * @param rval the value of the right operand.
+     * @return the result of the comparison.
+     * @throws EvaluationException if the comparison fails.
+     */
+    protected Object compute(Object lval, Object rval)
+            throws EvaluationException
+    {
+        boolean useDouble = false;
 
         // Make sure the type is sound.
         if (!(lval instanceof Integer || lval instanceof Double)
@@ -113,6 +161,66 @@ public final class RelOpNode extends SyntaxNode
         }
     }
 
+    /**
+     * Replaces a specialized node by a generic node once its assumption
+     * about the types of the operands no longer holds.
+     * 
+     * @param lval the value of the left operand.
+     * @param rval the value of the right operand.
+     * @return the result of the comparison.
+     * @throws EvaluationException if the comparison fails.
+     */
+    protected Object generalize(Object lval, Object rval)
+            throws EvaluationException
+    {
+        RelOpNode generic = new RelOpNode(leftExpr, op, rightExpr,
+                getLineNumber(), false);
+        replace(generic);
+        return generic.compute(lval, rval);
+    }
+
+    /**
+     * Determine if the node knows the types of its operands from the type
+     * checker.
+     *
+     * @return true if the operand types were proven.
+     */
+    protected boolean isProven()
+    {
+        return false;
+    }
+
+    /**
+     * Builds the node specialized to the types of {@code lval} and
+     * {@code rval}.
+     * 
+     * @return the specialized node or null if there is none for the types.
+     */
+    private RelOpNode specializeFor(Object lval, Object rval)
+    {
+        if (lval == null || rval == null || lval.getClass() != rval.getClass())
+            return null;
+        return specialized(lval.getClass(), false);
+    }
+
+    /**
+     * Builds the node specialized to operands of class {@code operand}.
+     * 
+     * @param operand the class of the values of both operands.
+     * @param proven  true if the type checker proved the operand type.
+     * @return the specialized node or null if there is none for the class.
+     */
+    private RelOpNode specialized(Class<?> operand, boolean proven)
+    {
+        if (operand == Integer.class)
+            return new IntCompareNode(leftExpr, op, rightExpr,
+                    getLineNumber(), proven);
+        if (operand == Double.class)
+            return new RealCompareNode(leftExpr, op, rightExpr,
+                    getLineNumber(), proven);
+        return null;
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -122,7 +230,7 @@ public final class RelOpNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type leftType = leftExpr.typeOf(tenv, inferencer);
@@ -134,11 +242,238 @@ public final class RelOpNode extends SyntaxNode
         leftType = inferencer.getSubstitutions().apply(leftType);
         rightType = inferencer.getSubstitutions().apply(rightType);
         
-        if (leftType.equals(new IntType()) || leftType.equals(new RealType()))
-            return new BoolType();
+        if (leftType.equals(TypeFactory.intType()) || leftType.equals(TypeFactory.realType()))
+            return TypeFactory.boolType();
         throw new TypeException("Type Error: integer or real expected.");
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        leftExpr.resolve(scope);
+        rightExpr.resolve(scope);
+    }
+
+    /**
+     * Replace the node by a node that evaluates its operands unboxed if the
+     * type checker proved their type.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    @Override
+    public void lower(Substitutions subst)
+    {
+        leftExpr.lower(subst);
+        rightExpr.lower(subst);
+        // The operands were unified, the left one has their type.
+        Type type = leftExpr.getType();
+        if (type == null || isProven())
+            return;
+
+        RelOpNode node = null;
+        if (type.equals(TypeFactory.intType()))
+            node = specialized(Integer.class, true);
+        else if (type.equals(TypeFactory.realType()))
+            node = specialized(Double.class, true);
+
+        if (node != null)
+            replace(node);
+    }
+
+    /**
+     * Fold the operands and, if both are constants of the same type, the
+     * comparison itself.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the constant value of the comparison or the node itself.
+     */
+    @Override
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        leftExpr = adopt(leftExpr.foldConstants(pool));
+        rightExpr = adopt(rightExpr.foldConstants(pool));
+
+        Object lval = leftExpr.constantValue();
+        Object rval = rightExpr.constantValue();
+        if (lval == null || rval == null || lval.getClass() != rval.getClass()
+                || specialized(lval.getClass(), false) == null)
+            return this;
+
+        try
+        {
+            return new ConstNode(compute(lval, rval), getLineNumber());
+        }
+        catch (EvaluationException ex)
+        {
+            return this;
+        }
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode inline(Inliner inliner)
+    {
+        leftExpr = adopt(leftExpr.inline(inliner));
+        rightExpr = adopt(rightExpr.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    @Override
+    public SyntaxNode fuse()
+    {
+        leftExpr = adopt(leftExpr.fuse());
+        rightExpr = adopt(rightExpr.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    @Override
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new RelOpNode(leftExpr.copy(bindings), op,
+                rightExpr.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        return 1 + leftExpr.measure(names) + rightExpr.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), op.ordinal());
+        hash = mix(hash, leftExpr.fingerprint(nodes));
+        return mix(hash, rightExpr.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (leftExpr == oldChild)
+            leftExpr = newChild;
+        if (rightExpr == oldChild)
+            rightExpr = newChild;
+    }
+
+    /**
+     * Compile the operands and call the runtime comparison for the
+     * operator.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        String operation;
+        switch (op)
+        {
+        case LT:
+            operation = "lt";
+            break;
+        case LTE:
+            operation = "lte";
+            break;
+        case GT:
+            operation = "gt";
+            break;
+        case GTE:
+            operation = "gte";
+            break;
+        case EQ:
+            operation = "eq";
+            break;
+        case NEQ:
+            operation = "neq";
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        leftExpr.compile(gen);
+        rightExpr.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime(operation, CodeGenerator.BINARY);
+    }
+
+    /**
+     * Assemble the operands followed by the instruction for the operator.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        int opcode;
+        switch (op)
+        {
+        case LT:
+            opcode = Opcode.LT;
+            break;
+        case LTE:
+            opcode = Opcode.LTE;
+            break;
+        case GT:
+            opcode = Opcode.GT;
+            break;
+        case GTE:
+            opcode = Opcode.GTE;
+            break;
+        case EQ:
+            opcode = Opcode.EQ;
+            break;
+        case NEQ:
+            opcode = Opcode.NEQ;
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        leftExpr.assemble(asm);
+        rightExpr.assemble(asm);
+        asm.emit(opcode, getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -0,0 +1,307 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
+import environment.Environment;
+import environment.Scope;
+import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
+
+/**
+ * Represents the take and drop built in functions. If take is true the node
+ * is the first {@code count} elements of the list, otherwise it is the list
+ * without them. A count past either end of the list is clamped to it.
+ *
+ * @author Zach Kissel
+ */
+public final class SliceNode extends SyntaxNode
+{
+    private SyntaxNode count;
+    private SyntaxNode lst;
+    private final boolean take;
+
+    /**
+     * Constructs a new take or drop syntax node.
+     *
+     * @param count the number of elements to take or drop.
+     * @param lst   the list to slice.
+     * @param take  true for take, false for drop.
+     * @param line  the line of code the node is associated with.
+     */
+    public SliceNode(SyntaxNode count, SyntaxNode lst, boolean take,
+            long line)
+    {
+        super(line);
+        this.count = adopt(count);
+        this.lst = adopt(lst);
+        this.take = take;
+    }
+
+    /**
+     * Evaluate the node.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the object representing the result of the evaluation.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public Object evaluate(Environment env) throws EvaluationException
+    {
+        Object n = count.evaluate(env);
+        Object res = lst.evaluate(env);
+
+        if (!(res instanceof ListValue))
+        {
+            logError("list expected.");
+            throw new EvaluationException();
+        }
+        if (!(n instanceof Integer))
+        {
+            logError("integer count expected.");
+            throw new EvaluationException();
+        }
+
+        // Packed lists and vectors slice without copying.
+        ListValue list = (ListValue) res;
+        if (take)
+            return list.take((Integer) n);
+        return lst.isFresh() ? list.dropOwned((Integer) n)
+                : list.drop((Integer) n);
+    }
+
+    /**
+     * Determine the type of the syntax node. The count is an int and the
+     * node has the type of the list.
+     *
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer.
+     * @return The type of the syntax node.
+     * @throws TypeException if there is a type error.
+     */
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException
+    {
+        Type countType = count.typeOf(tenv, inferencer);
+        inferencer.unify(countType, TypeFactory.intType(),
+                buildErrorMessage(name() + ": count must be an integer."));
+
+        Type lstType = lst.typeOf(tenv, inferencer);
+        inferencer.unify(TypeFactory.listType(tenv.getTypeVariable()), lstType,
+                buildErrorMessage("List type expected."));
+
+        return inferencer.getSubstitutions().apply(lstType);
+    }
+
+    /**
+     * Determine if the slice is of a list nothing else can reach.
+     *
+     * @return true if the node owns its list.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return lst.isFresh();
+    }
+
+    /**
+     * Pass the claim on to the children.
+     *
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return count.claim(name) || lst.claim(name);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     *
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        count.resolve(scope);
+        lst.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        count.lower(subst);
+        lst.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        count = adopt(count.foldConstants(pool));
+        lst = adopt(lst.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        count = adopt(count.inline(inliner));
+        lst = adopt(lst.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        count = adopt(count.fuse());
+        lst = adopt(lst.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new SliceNode(count.copy(bindings), lst.copy(bindings), take,
+                getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + count.measure(names) + lst.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), take ? 1 : 0);
+        hash = mix(hash, count.fingerprint(nodes));
+        return mix(hash, lst.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     *
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (count == oldChild)
+            count = newChild;
+        if (lst == oldChild)
+            lst = newChild;
+    }
+
+    /**
+     * Compile the count and the list and call the runtime {@code take} or
+     * {@code drop}.
+     *
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        count.compile(gen);
+        lst.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime(name(), CodeGenerator.BINARY);
+    }
+
+    /**
+     * Assemble the count and the list followed by {@code TAKE} or
+     * {@code DROP}.
+     *
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        count.assemble(asm);
+        lst.assemble(asm);
+        asm.emit(take ? Opcode.TAKE : Opcode.DROP, getLineNumber());
+    }
+
+    /**
+     * Display a AST inferencertree with the indentation specified.
+     *
+     * @param indentAmt the amout of indentation to perform.
+     */
+    public void displaySubtree(int indentAmt)
+    {
+        printIndented(name() + "(", indentAmt);
+        count.displaySubtree(indentAmt + 2);
+        lst.displaySubtree(indentAmt + 2);
+        printIndented(")", indentAmt);
+    }
+
+    /**
+     * Get the name of the built in function.
+     */
+    private String name()
+    {
+        return take ? "take" : "drop";
+    }
+}
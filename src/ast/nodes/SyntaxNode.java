@@ -16,12 +16,23 @@
  */
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ParallelMap;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
 
 /**
  * Represents the node of a syntax tree. Each node is slightly different
@@ -34,6 +45,8 @@ public abstract class SyntaxNode
 {
     private long lineNumber; // The line numbe the syntax node is associated
                              // with.
+    private SyntaxNode parent; // The node this node is a child of.
+    private Type type;         // The type inferred for the node.
 
     /**
      * Constructs a new syntax node with the given line number.
@@ -45,6 +58,205 @@ public abstract class SyntaxNode
         this.lineNumber = lineNumber;
     }
 
+    /**
+     * Makes {@code child} a child of this node so it can later replace
+     * itself.
+     * 
+     * @param <T>   the type of the child.
+     * @param child the child node.
+     * @return the child.
+     */
+    protected <T extends SyntaxNode> T adopt(T child)
+    {
+        if (child != null)
+            ((SyntaxNode) child).parent = this;
+        return child;
+    }
+
+    /**
+     * Replaces this node in its parent by {@code replacement}. The workers of
+     * a parallel map share the tree, so a node running on one of them is
+     * left in place.
+     *
+     * @param replacement the node to take the place of this node.
+     * @return true if the node was replaced; false if it has no parent or
+     *         runs on a worker.
+     */
+    protected boolean replace(SyntaxNode replacement)
+    {
+        if (parent == null || ParallelMap.isWorker())
+            return false;
+
+        parent.replaceChild(this, replacement);
+        replacement.parent = parent;
+        if (replacement.type == null)
+            replacement.type = type;
+        return true;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * Nodes with children override this, a leaf has nothing to replace.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+    }
+
+    /**
+     * Folds the constant subexpressions of the subtree into constants. The
+     * node returns the node that should take its place, which is the node
+     * itself unless its value is known before the program runs.
+     * 
+     * @param pool the pool holding the constants of the tree.
+     * @return the folded node.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        return this;
+    }
+
+    /**
+     * Fuses the list operations of the subtree that consume the result of
+     * a map, so the mapped list is never built. The node returns the node
+     * that should take its place, which is the node itself unless it was
+     * fused.
+     * 
+     * @return the fused node.
+     */
+    public SyntaxNode fuse()
+    {
+        return this;
+    }
+
+    /**
+     * Inlines the calls of the subtree to small functions. The node returns
+     * the node that should take its place, which is the node itself unless
+     * it is a call that was expanded.
+     * 
+     * @param inliner the inliner holding the functions known so far.
+     * @return the inlined node.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree in which the identifiers bound
+     * in {@code bindings} are replaced by copies of their values. Binders of
+     * the subtree are renamed when they would capture a value.
+     * 
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected abstract SyntaxNode copy(Map<String, SyntaxNode> bindings);
+
+    /**
+     * Counts the nodes of the subtree and adds the identifiers that are free
+     * in it to {@code names}.
+     * 
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1;
+    }
+
+    /**
+     * Computes a fingerprint of the subtree and adds its nodes to
+     * {@code nodes} in preorder. Two subtrees written alike have the same
+     * fingerprint, whatever lines they are on.
+     * 
+     * @param nodes receives the nodes of the subtree.
+     * @return the fingerprint.
+     */
+    protected abstract long fingerprint(List<SyntaxNode> nodes);
+
+    /**
+     * Starts the fingerprint of the node, adding the node to {@code nodes}.
+     * 
+     * @param nodes receives the nodes of the subtree.
+     * @return the fingerprint of the kind of node.
+     */
+    protected long startFingerprint(List<SyntaxNode> nodes)
+    {
+        nodes.add(this);
+        return getClass().getName().hashCode();
+    }
+
+    /**
+     * Combines {@code value} into the fingerprint {@code hash}.
+     * 
+     * @param hash  the fingerprint so far.
+     * @param value the value to combine.
+     * @return the combined fingerprint.
+     */
+    protected static long mix(long hash, long value)
+    {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Get the value of the node if it is a constant.
+     * 
+     * @return the value of the node or null if it is not a constant.
+     */
+    protected Object constantValue()
+    {
+        return null;
+    }
+
+    /**
+     * Marks the node as being in tail position of a function body, its value
+     * is the value of the function. Nodes that pass the position on to a
+     * child, or that make a call, override this.
+     */
+    protected void markTail()
+    {
+    }
+
+    /**
+     * Determine if the value of the node is a list nothing else in the
+     * program can reach, a list just built or one held by its only use. The
+     * operation consuming such a list may reuse its storage. Nodes that
+     * build lists override this.
+     * 
+     * @return true if the node owns the list it evaluates to.
+     */
+    protected boolean isFresh()
+    {
+        return false;
+    }
+
+    /**
+     * Marks the use of {@code name} in the subtree as the only reference to
+     * the value of the name. The let binding the name calls this once the
+     * resolver found a single use outside any function; the nodes that can
+     * reuse a list pass the claim on to their operands.
+     * 
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    protected boolean claim(String name)
+    {
+        return false;
+    }
+
+    /**
+     * Get the line number the node is associated with.
+     *
+     * @return the line number.
+     */
+    protected int getLineNumber()
+    {
+        return (int) lineNumber;
+    }
+
     /**
      * Logs an error to the screen
      * 
@@ -88,17 +300,163 @@ public abstract class SyntaxNode
      */
     public abstract Object evaluate(Environment env) throws EvaluationException;
 
+    /**
+     * Evaluate a node the type checker proved to be an int. Nodes that can
+     * compute the value without boxing it override this.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        Object val = evaluate(env);
+        if (!(val instanceof Integer))
+        {
+            logError("integer expected.");
+            throw new EvaluationException();
+        }
+        return (Integer) val;
+    }
+
+    /**
+     * Evaluate a node the type checker proved to be a real. Nodes that can
+     * compute the value without boxing it override this.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        Object val = evaluate(env);
+        if (!(val instanceof Double))
+        {
+            logError("real expected.");
+            throw new EvaluationException();
+        }
+        return (Double) val;
+    }
+
+    /**
+     * Evaluate a node the type checker proved to be a bool. Nodes that can
+     * compute the value without boxing it override this.
+     * 
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        Object val = evaluate(env);
+        if (!(val instanceof Boolean))
+        {
+            logError("boolean expected.");
+            throw new EvaluationException();
+        }
+        return (Boolean) val;
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
-     * generic, or function.
+     * generic, or function. The type is recorded on the node, once the whole
+     * tree is checked the inferencer resolves it so later passes can read it
+     * through {@code getType} instead of inferring it again.
+     * 
+     * @param tenv       the type environment.
+     * @param inferencer the type inferencer
+     * @return The type of the syntax node.
+     * @throws TypeException if there is a type error.
+     */
+    public final Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException
+    {
+        type = inferType(tenv, inferencer);
+
+        // A type without variables is resolved already.
+        if (type != null && !type.isGround())
+            inferencer.record(this);
+        return type;
+    }
+
+    /**
+     * Infer the type of the syntax node. Each node implements the typing
+     * rule of its construct here, calling {@code typeOf} on its children.
      * 
      * @param tenv       the type environment.
      * @param inferencer the type inferencer
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public abstract Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
-            throws TypeException;
+    protected abstract Type inferType(TypeEnvironment tenv,
+            Inferencer inferencer) throws TypeException;
+
+    /**
+     * Get the type recorded for the node by the type checker.
+     * 
+     * @return the type of the node or null if it was not type checked.
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Records the type {@code type} for the node without inferring it, the
+     * type found by an earlier check of a node written alike.
+     * 
+     * @param type the resolved type of the node.
+     */
+    void setType(Type type)
+    {
+        this.type = type;
+    }
+
+    /**
+     * Replaces the type recorded for the node by the type with the
+     * substitutions found by the type checker applied.
+     * 
+     * @param subst the substitutions found by the type checker.
+     */
+    public void resolveType(Substitutions subst)
+    {
+        if (type != null)
+            type = subst.apply(type);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public abstract void resolve(Scope scope);
+
+    /**
+     * Lower the subtree once it has been type checked. Operations whose
+     * operand types were proven to be int, real or bool are replaced by nodes
+     * that evaluate their operands without boxing them.
+     * 
+     * @param subst the substitutions found by the type checker.
+     */
+    public abstract void lower(Substitutions subst);
+
+    /**
+     * Emit the JVM code that evaluates the node. The code leaves the value of
+     * the node on the operand stack.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public abstract void compile(CodeGenerator gen) throws CompileException;
+
+    /**
+     * Emit the MFL bytecode that evaluates the node. The code leaves the
+     * value of the node on the operand stack of the virtual machine.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be assembled.
+     */
+    public abstract void assemble(Assembler asm) throws CompileException;
 
     /**
      * Display a AST inferencertree with the indentation specified.
@@ -16,15 +16,25 @@
  */
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.ListType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the tail node structure.
@@ -44,7 +54,7 @@ public final class TailNode extends SyntaxNode
     public TailNode(SyntaxNode list, long line)
     {
         super(line);
-        this.list = list;
+        this.list = adopt(list);
     }
 
     /**
@@ -54,23 +64,23 @@ public final class TailNode extends SyntaxNode
      * @return the object representing the result of the evaluation.
      * @throws EvaluationException if the evaluation fails.
      */
-    @SuppressWarnings("unchecked")
     public Object evaluate(Environment env) throws EvaluationException
     {
         Object res;
 
         res = list.evaluate(env);
-        if (res instanceof LinkedList)
+        if (res instanceof ListValue)
         {
-            LinkedList<Object> lst = (LinkedList<Object>) res;
-            if (lst.size() < 1)
+            ListValue lst = (ListValue) res;
+            if (lst.isEmpty())
             {
                 logError("can't find tail of list.");
                 throw new EvaluationException();
             }
-          
-            res = lst.clone();
-            ((LinkedList<Object>)res).remove();
+
+            // The tail shares the cells of the list, a list nothing else
+            // can reach is moved along in place.
+            res = list.isFresh() ? lst.dropOwned(1) : lst.tail();
         }
         else
         {
@@ -90,14 +100,166 @@ public final class TailNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type lstType = list.typeOf(tenv, inferencer);
-        inferencer.unify(lstType, new ListType(tenv.getTypeVariable()), buildErrorMessage("List expected."));
+        inferencer.unify(lstType, TypeFactory.listType(tenv.getTypeVariable()), buildErrorMessage("List expected."));
         return lstType;
     }
 
+    /**
+     * Determine if the tail is of a list nothing else can reach.
+     * 
+     * @return true if the node owns its list.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return list.isFresh();
+    }
+
+    /**
+     * Pass the claim on to the list.
+     * 
+     * @param name the name whose value is owned by its use.
+     * @return true if the use was found.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        return list.claim(name);
+    }
+
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        list.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        list.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        list = adopt(list.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        list = adopt(list.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        list = adopt(list.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new TailNode(list.copy(bindings), getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + list.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = startFingerprint(nodes);
+        hash = mix(hash, list.fingerprint(nodes));
+        return hash;
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (list == oldChild)
+            list = newChild;
+    }
+
+    /**
+     * Compile the list and call the runtime {@code tail}.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        list.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime("tail", CodeGenerator.UNARY);
+    }
+
+    /**
+     * Assemble the list followed by {@code TAIL}.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        list.assemble(asm);
+        asm.emit(Opcode.TAIL, getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -16,16 +16,26 @@
  */
 package ast.nodes;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.BoolType;
-import ast.typesystem.types.IntType;
-import ast.typesystem.types.RealType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
+import lexer.TokenType;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the a token in the grammar.
@@ -34,7 +44,14 @@ import lexer.Token;
  */
 public final class TokenNode extends SyntaxNode
 {
-    private Token token; // The token type.
+    // The address kind of an identifier the resolver has not seen.
+    private static final int UNRESOLVED = -3;
+
+    private Token token;    // The token type.
+    private Object literal; // The decoded value of a literal.
+    private int kind;       // The address kind of an identifier.
+    private int index;      // The slot or capture index of an identifier.
+    private boolean owned;  // True if the use holds the only reference.
 
     /**
      * Constructs a new token node.
@@ -46,6 +63,9 @@ public final class TokenNode extends SyntaxNode
     {
         super(line);
         this.token = token;
+        this.literal = decode(token);
+        this.kind = UNRESOLVED;
+        this.index = -1;
     }
 
     /**
@@ -66,6 +86,9 @@ public final class TokenNode extends SyntaxNode
      */
     public Object evaluate(Environment env) throws EvaluationException
     {
+        if (literal != null)
+            return literal;
+
         switch (token.getType())
         {
         case INT:
@@ -77,7 +100,18 @@ public final class TokenNode extends SyntaxNode
         case FALSE:
             return Boolean.valueOf(false);
         case ID:
-            Object val = env.lookup(token);
+            Object val;
+            if (kind == Scope.LOCAL)
+                val = env.lookupLocal(index);
+            else if (kind == Scope.CAPTURED)
+                val = env.lookupCaptured(index);
+            else if (kind == Scope.GLOBAL)
+                val = env.lookupGlobal(token);
+            else if (kind == UNRESOLVED)
+                val = env.lookup(token);
+            else
+                val = null;
+
             if (val == null)
             {
                 logError("undefined value " + token.getValue() + ".");
@@ -90,6 +124,62 @@ public final class TokenNode extends SyntaxNode
         }
     }
 
+    /**
+     * Get the value of a literal.
+     * 
+     * @return the value of the literal or null if the token is not one.
+     */
+    @Override
+    protected Object constantValue()
+    {
+        return literal;
+    }
+
+    /**
+     * Evaluate a literal int without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        if (literal instanceof Integer)
+            return (Integer) literal;
+        return super.evaluateInt(env);
+    }
+
+    /**
+     * Evaluate a literal real without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        if (literal instanceof Double)
+            return (Double) literal;
+        return super.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluate a literal bool without boxing it.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (literal instanceof Boolean)
+            return (Boolean) literal;
+        return super.evaluateBoolean(env);
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -99,19 +189,19 @@ public final class TokenNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         switch (token.getType())
         {
         case INT:
-            return new IntType();
+            return TypeFactory.intType();
         case REAL:
-            return new RealType();
+            return TypeFactory.realType();
         case TRUE:
-            return new BoolType();
+            return TypeFactory.boolType();
         case FALSE:
-            return new BoolType();
+            return TypeFactory.boolType();
         case ID:
             Type tval = (Type) tenv.lookup(token);
 
@@ -129,6 +219,215 @@ public final class TokenNode extends SyntaxNode
         }
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        if (token.getType() != TokenType.ID)
+            return;
+
+        Scope.Address addr = scope.resolve(token);
+        kind = addr.getKind();
+        index = addr.getIndex();
+        owned = false;
+    }
+
+    /**
+     * Determine if the identifier holds the only reference to its value.
+     *
+     * @return true if the let binding the identifier gave it its value.
+     */
+    @Override
+    protected boolean isFresh()
+    {
+        return owned;
+    }
+
+    /**
+     * Claims the value of the identifier if it is {@code name}.
+     *
+     * @param name the name whose value is owned by its use.
+     * @return true if this is the use of the name.
+     */
+    @Override
+    protected boolean claim(String name)
+    {
+        if (token.getType() != TokenType.ID || kind != Scope.LOCAL
+                || !token.getValue().equals(name))
+            return false;
+        owned = true;
+        return true;
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        // A token has nothing to lower.
+    }
+
+    /**
+     * Makes an unresolved copy of the node. An identifier bound in
+     * {@code bindings} is replaced by a copy of its value.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        SyntaxNode value = null;
+        if (token.getType() == TokenType.ID)
+            value = bindings.get(token.getValue());
+
+        if (value != null)
+            return value.copy(new HashMap<>());
+        return new TokenNode(token, getLineNumber());
+    }
+
+    /**
+     * Counts the node and collects the identifier it refers to.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    @Override
+    protected int measure(Set<String> names)
+    {
+        if (token.getType() == TokenType.ID)
+            names.add(token.getValue());
+        return 1;
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), token.getType().ordinal());
+        return mix(hash, token.getValue().hashCode());
+    }
+
+    /**
+     * Push the value of a literal or load the value of an identifier from
+     * its address.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        switch (token.getType())
+        {
+        case INT:
+            try
+            {
+                gen.pushInteger(Integer.parseInt(token.getValue()));
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new CompileException(buildErrorMessage("bad integer "
+                        + token.getValue() + "."));
+            }
+            break;
+        case REAL:
+            gen.pushDouble(Double.parseDouble(token.getValue()));
+            break;
+        case TRUE:
+            gen.pushBoolean(true);
+            break;
+        case FALSE:
+            gen.pushBoolean(false);
+            break;
+        case ID:
+            if (kind == Scope.LOCAL)
+            {
+                gen.loadLocal(index);
+                gen.checkDefined(token.getValue(), getLineNumber());
+            }
+            else if (kind == Scope.CAPTURED)
+            {
+                gen.loadCaptured(index);
+                gen.checkDefined(token.getValue(), getLineNumber());
+            }
+            else if (kind == Scope.GLOBAL)
+                gen.loadGlobal(token.getValue(), getLineNumber());
+            else if (kind == UNRESOLVED)
+                throw new CompileException(buildErrorMessage(
+                        "unresolved identifier " + token.getValue() + "."));
+            else
+                gen.undefined(token.getValue(), getLineNumber());
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("can not compile "
+                    + token.getValue() + "."));
+        }
+    }
+
+    /**
+     * Push the value of a literal or load the value of an identifier from
+     * its address.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        String name = token.getValue();
+        switch (token.getType())
+        {
+        case INT:
+            try
+            {
+                asm.emit(Opcode.CONST, asm.constant(Integer.valueOf(name)));
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new CompileException(buildErrorMessage("bad integer "
+                        + name + "."));
+            }
+            break;
+        case REAL:
+            asm.emit(Opcode.CONST, asm.constant(Double.valueOf(name)));
+            break;
+        case TRUE:
+            asm.emit(Opcode.CONST, asm.constant(Boolean.TRUE));
+            break;
+        case FALSE:
+            asm.emit(Opcode.CONST, asm.constant(Boolean.FALSE));
+            break;
+        case ID:
+            if (kind == Scope.LOCAL)
+                asm.emit(Opcode.LOAD, index, asm.constant(name),
+                        getLineNumber());
+            else if (kind == Scope.CAPTURED)
+                asm.emit(Opcode.LOAD_CAPTURED, index, asm.constant(name),
+                        getLineNumber());
+            else if (kind == Scope.GLOBAL)
+                asm.emit(Opcode.LOAD_GLOBAL, asm.global(name),
+                        asm.constant(name), getLineNumber());
+            else if (kind == UNRESOLVED)
+                throw new CompileException(buildErrorMessage(
+                        "unresolved identifier " + name + "."));
+            else
+                asm.emit(Opcode.UNDEFINED, asm.constant(name),
+                        getLineNumber());
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("can not assemble "
+                    + name + "."));
+        }
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -138,4 +437,36 @@ public final class TokenNode extends SyntaxNode
     {
         printIndented("Token(" + token + ")", indentAmt);
     }
+
+    /**
+     * Decodes the value of a literal once, when the node is built.
+     * 
+     * @param token the token.
+     * @return the value of the literal or null if the token is not a literal
+     *         that can be decoded.
+     */
+    private static Object decode(Token token)
+    {
+        try
+        {
+            switch (token.getType())
+            {
+            case INT:
+                return Integer.valueOf(token.getValue());
+            case REAL:
+                return Double.valueOf(token.getValue());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            // Reported when the literal is evaluated.
+            return null;
+        }
+    }
 }
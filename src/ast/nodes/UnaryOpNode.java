@@ -16,16 +16,25 @@
  */
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.BoolType;
-import ast.typesystem.types.IntType;
-import ast.typesystem.types.RealType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.TokenType;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents the unary op node.
@@ -48,7 +57,7 @@ public final class UnaryOpNode extends SyntaxNode
     {
         super(line);
         this.op = op;
-        this.expr = expr;
+        this.expr = adopt(expr);
     }
 
     /**
@@ -92,6 +101,51 @@ public final class UnaryOpNode extends SyntaxNode
         }
     }
 
+    /**
+     * Evaluate the node without boxing its value when it is an int.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException
+    {
+        if (op == TokenType.SUB)
+            return -expr.evaluateInt(env);
+        return super.evaluateInt(env);
+    }
+
+    /**
+     * Evaluate the node without boxing its value when it is a real.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException
+    {
+        if (op == TokenType.SUB)
+            return -expr.evaluateDouble(env);
+        return super.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluate the node without boxing its value when it is a bool.
+     *
+     * @param env the executional environment we should evaluate the node under.
+     * @return the value of the node.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException
+    {
+        if (op == TokenType.NOT)
+            return !expr.evaluateBoolean(env);
+        return super.evaluateBoolean(env);
+    }
+
     /**
      * Determine the type of the syntax node. In particluar bool, int, real,
      * generic, or function.
@@ -101,20 +155,20 @@ public final class UnaryOpNode extends SyntaxNode
      * @return The type of the syntax node.
      * @throws TypeException if there is a type error.
      */
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
         Type argType = expr.typeOf(tenv, inferencer);
 
         if (op == TokenType.NOT)
         {
-            inferencer.unify(argType, new BoolType(),
+            inferencer.unify(argType, TypeFactory.boolType(),
                     buildErrorMessage("Boolean type expected."));
-            return new BoolType();
+            return TypeFactory.boolType();
         }
         else if (op == TokenType.SUB)
         {
-            if (argType.equals(new IntType()) || argType.equals(new RealType()))
+            if (argType.equals(TypeFactory.intType()) || argType.equals(TypeFactory.realType()))
                 return argType;
             logError("Integer or real type expected.");
             throw new TypeException();
@@ -124,6 +178,172 @@ public final class UnaryOpNode extends SyntaxNode
         throw new TypeException();
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        expr.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        expr.lower(subst);
+    }
+
+    /**
+     * Fold the operand and, if it is a constant of the right type, the
+     * operation itself.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the constant value of the operation or the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        expr = adopt(expr.foldConstants(pool));
+
+        Object val = expr.constantValue();
+        if (op == TokenType.NOT && val instanceof Boolean)
+            return new ConstNode(!((Boolean) val), getLineNumber());
+        if (op == TokenType.SUB && val instanceof Integer)
+            return new ConstNode(-1 * (Integer) val, getLineNumber());
+        if (op == TokenType.SUB && val instanceof Double)
+            return new ConstNode(-1 * (Double) val, getLineNumber());
+        return this;
+    }
+
+    /**
+     * Inline the calls of the children.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        expr = adopt(expr.inline(inliner));
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        expr = adopt(expr.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new UnaryOpNode(expr.copy(bindings), op, getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + expr.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), op.ordinal());
+        return mix(hash, expr.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (expr == oldChild)
+            expr = newChild;
+    }
+
+    /**
+     * Compile the operand and call the runtime operation for the
+     * operator.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        String operation;
+        switch (op)
+        {
+        case NOT:
+            operation = "not";
+            break;
+        case SUB:
+            operation = "neg";
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        expr.compile(gen);
+        gen.pushInt(getLineNumber());
+        gen.callRuntime(operation, CodeGenerator.UNARY);
+    }
+
+    /**
+     * Assemble the operand followed by the instruction for the operator.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        int opcode;
+        switch (op)
+        {
+        case NOT:
+            opcode = Opcode.NOT;
+            break;
+        case SUB:
+            opcode = Opcode.NEG;
+            break;
+        default:
+            throw new CompileException(buildErrorMessage("unknown operator "
+                    + op + "."));
+        }
+
+        expr.assemble(asm);
+        asm.emit(opcode, getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -16,15 +16,27 @@
  */
 package ast.nodes;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ast.ConstantPool;
 import ast.EvaluationException;
+import ast.Memoizer;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
-import ast.typesystem.types.FunType;
+import ast.typesystem.inferencer.Substitutions;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
+import compiler.CodeGenerator;
+import compiler.CompileException;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
+import vm.Assembler;
+import vm.Opcode;
 
 /**
  * This node represents a global value.
@@ -35,6 +47,7 @@ public final class ValNode extends SyntaxNode
 {
     private Token name;
     private SyntaxNode expr;
+    private boolean memo;   // True if the function bound is memoized.
 
     /**
      * Constructs a new value node that represents a global value.
@@ -44,10 +57,24 @@ public final class ValNode extends SyntaxNode
      * @param line the line of code the node is associated with.
      */
     public ValNode(Token name, SyntaxNode expr, long line)
+    {
+        this(name, expr, false, line);
+    }
+
+    /**
+     * Constructs a new value node that represents a global value.
+     * 
+     * @param name the name of the value.
+     * @param expr the value of the name.
+     * @param memo true if a function bound to the name is memoized.
+     * @param line the line of code the node is associated with.
+     */
+    public ValNode(Token name, SyntaxNode expr, boolean memo, long line)
     {
         super(line);
         this.name = name;
-        this.expr = expr;
+        this.expr = adopt(expr);
+        this.memo = memo;
     }
 
     /**
@@ -71,6 +98,18 @@ public final class ValNode extends SyntaxNode
         return expr;
     }
 
+    /**
+     * Determine if a function bound by the node is memoized, either because
+     * it was defined by {@code memo val} or because every top-level function
+     * is memoized.
+     * 
+     * @return true if the function is memoized.
+     */
+    public boolean isMemoized()
+    {
+        return memo || Memoizer.isMemoizeAll();
+    }
+
     /**
      * Evaluate the node.
      * 
@@ -81,17 +120,13 @@ public final class ValNode extends SyntaxNode
     public Object evaluate(Environment env) throws EvaluationException
     {
         Object val = expr.evaluate(env);
+        if (isMemoized())
+            val = Memoizer.memoize(name.getValue(), val);
 
-        // If this value is a function (closure), ensure its captured environment
-        // also knows its own name so recursion works (fib, foo, revLst, etc.).
-        if (val instanceof LambdaNode.Closure)
-        {
-            LambdaNode.Closure clo = (LambdaNode.Closure) val;
-            clo.getEnvironment().updateEnvironment(name, clo);
-        }
-
-        if (env.lookup(name) == null)
-            env.updateEnvironment(name, val);
+        // Closures see the top-level values through their frame chain, so
+        // once the name is bound recursion works (fib, foo, revLst, etc.).
+        if (env.lookupGlobal(name) == null)
+            env.updateGlobal(name, val);
         else 
         {
             logError(name.getValue() + " already defined.");
@@ -110,31 +145,188 @@ public final class ValNode extends SyntaxNode
      * @throws TypeException if there is a type error.
      */
     @Override
-    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+    protected Type inferType(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException
     {
-        // If the expression is a lambda, we need to set up a placeholder
-        if (expr instanceof LambdaNode) {
-            // Create fresh α and β
-            VarType t1 = tenv.getTypeVariable();
-            VarType t2 = tenv.getTypeVariable();
+        // The variables of the value are made one level in, whatever was
+        // not unified with the enclosing environment is generic.
+        Type valType;
+        tenv.enterLevel();
+        try
+        {
+            // If the expression is a lambda, we need to set up a placeholder
+            if (expr instanceof LambdaNode) {
+                // Create fresh α and β
+                VarType t1 = tenv.getTypeVariable();
+                VarType t2 = tenv.getTypeVariable();
 
-            // Add name : t1 -> t2 to the environment BEFORE checking the body
-            tenv.updateEnvironment(name, new FunType(t1, t2));
-        }
+                // Add name : t1 -> t2 to the environment BEFORE checking the
+                // body, recursive calls use the name at a single type.
+                tenv.updateEnvironment(name, TypeFactory.funType(t1, t2));
+            }
 
-        //  Now type-check the expression normally
-        Type valType = expr.typeOf(tenv, inferencer);
+            //  Now type-check the expression normally
+            valType = expr.typeOf(tenv, inferencer);
+        }
+        finally
+        {
+            tenv.leaveLevel();
+        }
 
         //  Apply substitutions (finalize)
         valType = inferencer.getSubstitutions().apply(valType);
 
-        // Update environment with the final type (overwrites placeholder)
-        tenv.updateEnvironment(name, valType);
+        // Update environment with the generalized type (overwrites
+        // placeholder)
+        tenv.generalize(name, valType);
 
         return valType;
     }
 
+    /**
+     * Resolve the identifiers of the node to their addresses.
+     * The name is declared first so the expression may refer to it
+     * recursively.
+     * 
+     * @param scope the scope the node occurs in.
+     */
+    public void resolve(Scope scope)
+    {
+        scope.declareGlobal(name);
+        expr.resolve(scope);
+    }
+
+    /**
+     * Lower the subtree once it has been type checked.
+     *
+     * @param subst the substitutions found by the type checker.
+     */
+    public void lower(Substitutions subst)
+    {
+        expr.lower(subst);
+    }
+
+    /**
+     * Fold the constant subexpressions of the children.
+     *
+     * @param pool the pool holding the constants of the tree.
+     * @return the node itself.
+     */
+    public SyntaxNode foldConstants(ConstantPool pool)
+    {
+        expr = adopt(expr.foldConstants(pool));
+        return this;
+    }
+
+    /**
+     * Inline the calls of the expression, then make the value known to the
+     * inliner.
+     *
+     * @param inliner the inliner holding the functions known so far.
+     * @return the node itself.
+     */
+    public SyntaxNode inline(Inliner inliner)
+    {
+        expr = adopt(expr.inline(inliner));
+
+        // The calls of a memoized function must go through its cache.
+        inliner.define(name, isMemoized() ? null : expr);
+        return this;
+    }
+
+    /**
+     * Fuse the list operations of the children.
+     *
+     * @return the node itself.
+     */
+    public SyntaxNode fuse()
+    {
+        expr = adopt(expr.fuse());
+        return this;
+    }
+
+    /**
+     * Makes an unresolved copy of the subtree.
+     *
+     * @param bindings the values of the identifiers to replace.
+     * @return the copy.
+     */
+    protected SyntaxNode copy(Map<String, SyntaxNode> bindings)
+    {
+        return new ValNode(name, expr.copy(bindings), memo, getLineNumber());
+    }
+
+    /**
+     * Counts the nodes of the subtree and collects its free identifiers.
+     *
+     * @param names receives the identifiers.
+     * @return the number of nodes.
+     */
+    protected int measure(Set<String> names)
+    {
+        return 1 + expr.measure(names);
+    }
+
+    /**
+     * Computes the fingerprint of the subtree and lists its nodes.
+     *
+     * @param nodes receives the nodes of the subtree, in preorder.
+     * @return the fingerprint.
+     */
+    @Override
+    protected long fingerprint(List<SyntaxNode> nodes)
+    {
+        long hash = mix(startFingerprint(nodes), name.getValue().hashCode());
+        hash = mix(hash, memo ? 1 : 0);
+        return mix(hash, expr.fingerprint(nodes));
+    }
+
+    /**
+     * Replaces the child {@code oldChild} of this node by {@code newChild}.
+     * 
+     * @param oldChild the current child.
+     * @param newChild the node to take its place.
+     */
+    @Override
+    protected void replaceChild(SyntaxNode oldChild, SyntaxNode newChild)
+    {
+        if (expr == oldChild)
+            expr = newChild;
+    }
+
+    /**
+     * Compile the value and bind it to the name.
+     * 
+     * @param gen the code generator for the method being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void compile(CodeGenerator gen) throws CompileException
+    {
+        expr.compile(gen);
+        if (isMemoized())
+        {
+            gen.pushString(name.getValue());
+            gen.callRuntime("memoize",
+                    "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;");
+        }
+        gen.defineGlobal(name.getValue(), getLineNumber());
+    }
+
+    /**
+     * Assemble the value and bind it to the name.
+     * 
+     * @param asm the assembler for the function being built.
+     * @throws CompileException if the node can not be compiled.
+     */
+    public void assemble(Assembler asm) throws CompileException
+    {
+        expr.assemble(asm);
+        if (isMemoized())
+            asm.emit(Opcode.MEMO, asm.constant(name.getValue()));
+        asm.emit(Opcode.DEFINE, asm.global(name.getValue()),
+                asm.constant(name.getValue()), getLineNumber());
+    }
+
     /**
      * Display a AST inferencertree with the indentation specified.
      * 
@@ -142,7 +334,8 @@ public final class ValNode extends SyntaxNode
      */
     public void displaySubtree(int indentAmt)
     {
-        printIndented("Val[" + name.getValue() + "](", indentAmt);
+        printIndented((memo ? "MemoVal[" : "Val[") + name.getValue() + "](",
+                indentAmt);
         expr.displaySubtree(indentAmt + 2);
         printIndented(")", indentAmt);
     }
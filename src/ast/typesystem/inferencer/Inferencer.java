@@ -15,6 +15,9 @@
  */
 package ast.typesystem.inferencer;
 
+import java.util.ArrayList;
+
+import ast.nodes.SyntaxNode;
 import ast.typesystem.TypeException;
 import ast.typesystem.types.BoolType;
 import ast.typesystem.types.FunType;
@@ -26,9 +29,10 @@ import ast.typesystem.types.VarType;
 
 /**
  * Represents the core type infrencer. It amasses a set of type equations and
- * solves them through unification. The solutions can then be applied to type
- * variables by calling {@code applySubstitution}. To add new constraints the
- * consumer must call {@code unify}.
+ * solves them through unification, binding type variables in place. The
+ * solutions can then be applied to a type through the {@code apply} method
+ * of the substitutions. To add new constraints the consumer must call
+ * {@code unify}.
  *
  * @author Zach Kissel
  */
@@ -37,12 +41,52 @@ public class Inferencer
     // The current type equation solutions.
     private Substitutions subst;
 
+    // The nodes whose type was inferred since the types were last resolved.
+    private ArrayList<SyntaxNode> typed;
+
     /**
      * The default constructor builds a new type substitution map.
      */
     public Inferencer()
     {
         subst = new Substitutions();
+        typed = new ArrayList<>();
+    }
+
+    /**
+     * Records that the type of {@code node} was inferred. The type the node
+     * recorded is resolved by {@code resolveTypes}.
+     *
+     * @param node the node that was typed.
+     */
+    public void record(SyntaxNode node)
+    {
+        typed.add(node);
+    }
+
+    /**
+     * Applies the substitutions to the types recorded on the nodes typed
+     * since the last call. This must be done before the substitutions are
+     * undone.
+     */
+    public void resolveTypes()
+    {
+        for (SyntaxNode node : typed)
+            node.resolveType(subst);
+        typed.clear();
+    }
+
+    /**
+     * Takes over the solutions found and the nodes typed by {@code other},
+     * an inferencer used to check part of the program on its own.
+     *
+     * @param other the inferencer to take the work of.
+     */
+    public void merge(Inferencer other)
+    {
+        subst.merge(other.subst);
+        typed.addAll(other.typed);
+        other.typed.clear();
     }
 
     /**
@@ -79,9 +123,9 @@ public class Inferencer
      */
     public void unify(Type type1, Type type2, String msg) throws TypeException
     {
-        // Apply the known substitutions first.
-        type1 = subst.apply(type1);
-        type2 = subst.apply(type2);
+        // Only the representatives matter, the bindings are followed lazily.
+        type1 = subst.prune(type1);
+        type2 = subst.prune(type2);
 
         if (type1 == null || type2 == null)
         {
@@ -89,37 +133,22 @@ public class Inferencer
         }
 
         // If they are already equal, nothing to do.
-        if (type1.equals(type2))
+        if (type1 == type2 || (!(type1 instanceof ListType)
+                && !(type1 instanceof FunType) && type1.equals(type2)))
             return;
 
         // Try to bind type1 to type2 if it is a type variable.
         if (type1 instanceof VarType)
         {
-            VarType tv = (VarType) type1;
-            if (tv.checkConstraint(type2) && noOccurrence(tv, type2))
-            {
-                subst.updateSubstitutions(tv, type2);
-                return;
-            }
-            else
-            {
-                throw new TypeException("Unification error: " + msg);
-            }
+            bind((VarType) type1, type2, msg);
+            return;
         }
 
         // Try to bind type2 to type1 if it is a type variable.
         if (type2 instanceof VarType)
         {
-            VarType tv = (VarType) type2;
-            if (tv.checkConstraint(type1) && noOccurrence(tv, type1))
-            {
-                subst.updateSubstitutions(tv, type1);
-                return;
-            }
-            else
-            {
-                throw new TypeException("Unification error: " + msg);
-            }
+            bind((VarType) type2, type1, msg);
+            return;
         }
 
         // Handle list types: element types must unify.
@@ -146,10 +175,28 @@ public class Inferencer
         throw new TypeException("Unification error: " + msg);
     }
 
+    /**
+     * Binds the free type variable {@code tv} to {@code ty}.
+     *
+     * @param tv  the type variable.
+     * @param ty  the type we want it bound to.
+     * @param msg the text to include in the error message, in case of error.
+     * @throws TypeException if the binding would make the type infinite.
+     */
+    private void bind(VarType tv, Type ty, String msg) throws TypeException
+    {
+        if (!noOccurrence(tv, ty))
+            throw new TypeException("Unification error: " + msg);
+
+        subst.updateSubstitutions(tv, ty);
+    }
+
     /**
      * Makes sure that tv does not appear in ty. This is used by unification to
      * ensure that a type variable on the left hand side of an equation does not
-     * appear on the right hand side of the equation.
+     * appear on the right hand side of the equation. The free variables of ty
+     * are lowered to the level of tv on the way, as binding tv makes them
+     * visible wherever tv is.
      *
      * @param tv the type variable.
      * @param ty the type we want it bound to.
@@ -157,6 +204,7 @@ public class Inferencer
      */
     private boolean noOccurrence(VarType tv, Type ty)
     {
+        ty = subst.prune(ty);
         if (ty instanceof IntType || ty instanceof RealType
                 || ty instanceof BoolType)
         {
@@ -164,7 +212,12 @@ public class Inferencer
         }
         else if (ty instanceof VarType)
         {
-            return !tv.equals((VarType) ty);
+            VarType v = (VarType) ty;
+            if (tv.equals(v))
+                return false;
+            if (v.getLevel() > tv.getLevel())
+                v.setLevel(tv.getLevel());
+            return true;
         }
         else if (ty instanceof ListType)
         {
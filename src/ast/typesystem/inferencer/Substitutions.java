@@ -16,30 +16,35 @@
  */
 package ast.typesystem.inferencer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import ast.typesystem.types.BoolType;
+import ast.typesystem.types.FunType;
 import ast.typesystem.types.IntType;
 import ast.typesystem.types.ListType;
 import ast.typesystem.types.RealType;
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
 import ast.typesystem.types.VarType;
-import ast.typesystem.types.FunType;
 import environment.TypeEnvironment;
 
 /**
- * This data structure tracks the substitution map created by the unification algorithm.
+ * This data structure tracks the substitutions created by the unification
+ * algorithm. A substitution binds a type variable in place, the variables
+ * form a union-find forest whose roots are free variables or other types.
+ * The bound variables are remembered so the bindings can be undone.
  */
 public class Substitutions {
     
-    private HashMap<VarType, Type> subst;           // The substituion map.
+    private ArrayList<VarType> trail;       // The bound variables, in order.
 
     /**
      * Construct a new substitution.
      */
     public Substitutions()
     {
-        this.subst = new HashMap<>();
+        this.trail = new ArrayList<>();
     }
 
     /**
@@ -56,25 +61,55 @@ public class Substitutions {
         return externalizeHelper(extSubst, new TypeEnvironment(), type);
     }
 
+    /**
+     * Finds the representative of a type, following the bindings of type
+     * variables. The variables passed on the way are bound directly to the
+     * representative so the next search is shorter.
+     * 
+     * @param type the type to find the representative of.
+     * @return a free type variable or a type that is not a variable.
+     */
+    public Type prune(Type type)
+    {
+        Type root = type;
+        while (root instanceof VarType && ((VarType) root).getInstance() != null)
+            root = ((VarType) root).getInstance();
+
+        // Compress the path.
+        while (type != root)
+        {
+            VarType tv = (VarType) type;
+            type = tv.getInstance();
+            tv.bind(root);
+        }
+        return root;
+    }
+
     /**
      * This method takes and applies the known substitutions to the given type
-     * returning a potentially new type.
+     * returning a potentially new type. The type itself is returned if none
+     * of its variables are bound.
      * 
      * @param type the type to apply the substitution to.
      * @return a new type.
      */
     public Type apply(Type type)
     {
+        if (type == null || type.isGround())
+            return type;
+        type = prune(type);
+
         // No substitution is needed in this case.
         if (type instanceof BoolType || type instanceof IntType
-                || type instanceof RealType)
+                || type instanceof RealType || type instanceof VarType)
             return type;
 
         // Handle the list type.
         else if (type instanceof ListType)
         {
-            return new ListType(
-                    apply(((ListType) type).getElementType()));
+            Type elem = ((ListType) type).getElementType();
+            Type newElem = apply(elem);
+            return newElem == elem ? type : TypeFactory.listType(newElem);
         }
 
         // Handle the function type.
@@ -83,94 +118,69 @@ public class Substitutions {
             FunType f = (FunType) type;
             Type newParam  = apply(f.getParamType());
             Type newReturn = apply(f.getReturnType());
-            return new FunType(newParam, newReturn);
-        }
-
-        // Handle the var type.
-        else if (type instanceof VarType)
-        {
-            Type res = subst.get((VarType) type);
-            if (res != null)
-                return res;
-            return type;
+            if (newParam == f.getParamType()
+                    && newReturn == f.getReturnType())
+                return type;
+            return TypeFactory.funType(newParam, newReturn);
         }
         else
             return null;
     }
 
     /**
-     * Add the substition to the map of known substitutions and cascade the new
-     * information.
+     * Binds the free type variable {@code tv} to {@code newType}. The
+     * binding is seen through every occurrence of the variable so nothing
+     * has to be propagated.
      * 
      * @param tv      the type variable to substitute
      * @param newType the new type for tv.
      */
     public void updateSubstitutions(VarType tv, Type newType) {
-        // Propigate the substitution information tv := newType into
-        // the existing rules.
-        for (VarType lhs : subst.keySet())
-            subst.replace(lhs,
-                    propagateSubstitution(tv, newType, subst.get(lhs)));
-
-        // Add the new type information to the substitution map.
-        subst.put(tv, newType);
+        tv.bind(newType);
+        trail.add(tv);
     }
 
     /**
-     * Get the string form of the substition
-     * 
-     * @return A string representation of the known substitutions.
+     * Takes over the bindings made through {@code other}, so they are undone
+     * with the bindings made here. The other substitutions are left empty.
+     *
+     * @param other the substitutions to take the bindings of.
      */
-    @Override
-    public String toString() {
-        return "Substitutions: " + subst;
+    public void merge(Substitutions other)
+    {
+        trail.addAll(other.trail);
+        other.trail.clear();
     }
 
     /**
-     * Propigates the new type information to the rest of the substitutions.
-     * This method potentially updates the substitutions.
-     * 
-     * @param tv       the type variable with a new substitiution
-     * @param newType  the new substitution
-     * @param currType the current type (before new substitution information is
-     *                 applied).
-     * @return A new type that takes into account the new type information tv := 
-     *         newType.
+     * Undoes every binding made through the substitution, freeing the type
+     * variables again. Types that outlive a type check, such as those in a
+     * type environment, are then unaffected by the bindings it made.
      */
-    private Type propagateSubstitution(VarType tv, Type newType, Type currType) {
-
-        // No variable in this rhs just return.
-        if (currType instanceof IntType || currType instanceof RealType
-                || currType instanceof BoolType)
-            return currType;
-
-        // Handle variable substitutions.
-        else if (currType instanceof VarType) {
-            if (tv.equals((VarType) currType)) {
-                if (newType instanceof VarType)
-                    ((VarType) newType).copyConstraints(tv);
-                return newType;
-            } else
-                return currType;
-        }
-
-        // Handle list substitutions.
-        else if (currType instanceof ListType) {
-            return new ListType(propagateSubstitution(tv, newType,
-                    ((ListType) currType).getElementType()));
-        }
+    public void undo()
+    {
+        for (int i = trail.size() - 1; i >= 0; i--)
+            trail.get(i).bind(null);
+        trail.clear();
+    }
 
-        // Handle function substitutions.
-        else if (currType instanceof FunType) {
-            FunType f = (FunType) currType;
-            Type newParam  = propagateSubstitution(tv, newType, f.getParamType());
-            Type newReturn = propagateSubstitution(tv, newType, f.getReturnType());
-            return new FunType(newParam, newReturn);
+    /**
+     * Get the string form of the substition
+     * 
+     * @return A string representation of the known substitutions.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Substitutions: {");
+        for (int i = 0; i < trail.size(); i++)
+        {
+            VarType tv = trail.get(i);
+            if (i > 0)
+                sb.append(", ");
+            sb.append("t").append(tv.getSerialNumber()).append("=")
+                    .append(apply(tv));
         }
-
-        // When in doubt, do nothing.
-        return currType;
-
+        return sb.append("}").toString();
     }
 
     /**
@@ -191,7 +201,7 @@ public class Substitutions {
 
         // Handle the list type.
         else if (type instanceof ListType)
-            return new ListType(
+            return TypeFactory.listType(
                     externalizeHelper(exSubst, tenv, ((ListType) type).getElementType()));
 
         // Handle the function type.
@@ -199,11 +209,13 @@ public class Substitutions {
             FunType f = (FunType) type;
             Type newParam  = externalizeHelper(exSubst, tenv, f.getParamType());
             Type newReturn = externalizeHelper(exSubst, tenv, f.getReturnType());
-            return new FunType(newParam, newReturn);
+            return TypeFactory.funType(newParam, newReturn);
         }
 
         // Handle the var type.
         else if (type instanceof VarType) {
+            if (((VarType) type).getInstance() != null)
+                return externalizeHelper(exSubst, tenv, prune(type));
             if (exSubst.containsKey((VarType) type))
                 return exSubst.get((VarType) type);
 
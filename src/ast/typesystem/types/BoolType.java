@@ -24,9 +24,9 @@ public final class BoolType extends Type
 {
 
     /**
-     * Default constructor.
+     * Default constructor, the type is built by {@code TypeFactory}.
      */
-    public BoolType() {}
+    BoolType() {}
     
     /**
      * Check equality of bool types.
@@ -6,11 +6,19 @@ public final class FunType extends Type
 {
     private final Type paramType;
     private final Type returnType;
+    private final boolean ground;
 
-    public FunType(Type paramType, Type returnType)
+    FunType(Type paramType, Type returnType)
     {
         this.paramType = paramType;
         this.returnType = returnType;
+        this.ground = paramType.isGround() && returnType.isGround();
+    }
+
+    @Override
+    public boolean isGround()
+    {
+        return ground;
     }
 
     public Type getParamType()
@@ -29,8 +37,14 @@ public final class FunType extends Type
         if (this == obj) return true;
         if (!(obj instanceof FunType)) return false;
         FunType f = (FunType) obj;
-        return paramType.equals(f.paramType) &&
-               returnType.equals(f.returnType);
+        return paramType == f.paramType && returnType == f.returnType;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * System.identityHashCode(paramType)
+                + System.identityHashCode(returnType);
     }
 
     /**
@@ -23,9 +23,9 @@ package ast.typesystem.types;
 public final class IntType extends Type
 {
     /**
-     * Default constructor.
+     * Default constructor, the type is built by {@code TypeFactory}.
      */
-    public IntType() {}
+    IntType() {}
     
     /**
      * Check equality of int types.
@@ -26,15 +26,29 @@ import ast.typesystem.inferencer.Inferencer;
 public final class ListType extends Type
 {
     private Type elementType; // The element type.
+    private boolean ground;   // True if no type variable occurs in the type.
 
     /**
-     * Construct a new list type with the element type.
+     * Construct a new list type with the element type. List types are
+     * interned, they are built through {@code TypeFactory}.
      * 
      * @param elementType the type of the argument.
      */
-    public ListType(Type elementType)
+    ListType(Type elementType)
     {
         this.elementType = elementType;
+        this.ground = elementType.isGround();
+    }
+
+    /**
+     * Determine if the type is free of type variables.
+     * 
+     * @return true if the element type is ground.
+     */
+    @Override
+    public boolean isGround()
+    {
+        return ground;
     }
 
     /**
@@ -48,7 +62,8 @@ public final class ListType extends Type
     }
 
     /**
-     * Check equality of list types.
+     * Check equality of list types. Every type is equal only to itself, so
+     * the element types are compared by reference.
      * 
      * @param obj the object to test.
      */
@@ -65,7 +80,18 @@ public final class ListType extends Type
 
         ListType rhs = (ListType) obj;
 
-        return rhs.elementType.equals(this.elementType);
+        return rhs.elementType == this.elementType;
+    }
+
+    /**
+     * Get the hash code of the type.
+     * 
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+        return System.identityHashCode(elementType);
     }
 
     /**
@@ -24,9 +24,9 @@ public final class RealType extends Type
 {
 
     /**
-     * Default constructor.
+     * Default constructor, the type is built by {@code TypeFactory}.
      */
-    public RealType() {}
+    RealType() {}
     
     /**
      * Check equality of real types.
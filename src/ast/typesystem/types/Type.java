@@ -45,6 +45,17 @@ public abstract class Type
         return (obj instanceof Type);
     }
 
+    /**
+     * Determine if the type is free of type variables. Substitutions leave
+     * such a type unchanged.
+     * 
+     * @return true if no type variable occurs in the type.
+     */
+    public boolean isGround()
+    {
+        return true;
+    }
+
     /**
      * Gets the type as a string.
      * 
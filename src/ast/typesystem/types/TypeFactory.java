@@ -0,0 +1,117 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.typesystem.types;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Builds the types of the type system. The base types are singletons and
+ * list and function types are interned, a type is built once and shared by
+ * every use with the same components. Two types built by the factory are
+ * therefore equal exactly when they are the same object. Type variables are
+ * not interned, each fresh variable is a new type.
+ *
+ * @author Zach Kissel
+ */
+public final class TypeFactory
+{
+    private static final IntType INT = new IntType();
+    private static final RealType REAL = new RealType();
+    private static final BoolType BOOL = new BoolType();
+
+    // The interned list and function types. The table only holds the types
+    // weakly so the types nothing refers to anymore can be collected.
+    private static final WeakHashMap<Type, WeakReference<Type>> table =
+            new WeakHashMap<>();
+
+    /**
+     * The factory is not meant to be instantiated.
+     */
+    private TypeFactory()
+    {
+    }
+
+    /**
+     * Get the int type.
+     *
+     * @return the int type.
+     */
+    public static IntType intType()
+    {
+        return INT;
+    }
+
+    /**
+     * Get the real type.
+     *
+     * @return the real type.
+     */
+    public static RealType realType()
+    {
+        return REAL;
+    }
+
+    /**
+     * Get the bool type.
+     *
+     * @return the bool type.
+     */
+    public static BoolType boolType()
+    {
+        return BOOL;
+    }
+
+    /**
+     * Get the type of lists of {@code elementType}.
+     *
+     * @param elementType the element type.
+     * @return the list type.
+     */
+    public static ListType listType(Type elementType)
+    {
+        return (ListType) intern(new ListType(elementType));
+    }
+
+    /**
+     * Get the type of functions from {@code paramType} to
+     * {@code returnType}.
+     *
+     * @param paramType  the type of the argument.
+     * @param returnType the type of the result.
+     * @return the function type.
+     */
+    public static FunType funType(Type paramType, Type returnType)
+    {
+        return (FunType) intern(new FunType(paramType, returnType));
+    }
+
+    /**
+     * Get the interned type with the same components as {@code type},
+     * making {@code type} the interned one if there is none yet.
+     */
+    private static synchronized Type intern(Type type)
+    {
+        WeakReference<Type> ref = table.get(type);
+        Type canon = ref == null ? null : ref.get();
+        if (canon != null)
+            return canon;
+
+        table.put(type, new WeakReference<>(type));
+        return type;
+    }
+}
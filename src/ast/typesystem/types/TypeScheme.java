@@ -0,0 +1,194 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.typesystem.types;
+
+import java.util.ArrayList;
+
+import environment.TypeEnvironment;
+
+/**
+ * Represents the type of a let bound name, a type some of whose variables
+ * are generic. Each use of the name instantiates the generic variables with
+ * fresh ones, so the name can be used at different types.
+ *
+ * <p>
+ * The generic variables are found by level. A type variable is created at
+ * the level of the binding being checked, and unification lowers the level
+ * of a variable whenever it becomes reachable from an enclosing binding. The
+ * variables still above the level of the binding once it is checked are
+ * known to nothing else in the environment, and so can be generalized
+ * without looking at the environment.
+ *
+ * @author Zach Kissel
+ */
+public final class TypeScheme
+{
+    private static final VarType[] NONE = new VarType[0];
+
+    private final Type body;            // The type of the name.
+    private final VarType[] generics;   // The generic variables of the type.
+
+    /**
+     * Constructs a scheme without generic variables.
+     *
+     * @param body the type.
+     */
+    public TypeScheme(Type body)
+    {
+        this(body, NONE);
+    }
+
+    /**
+     * Constructs a scheme.
+     *
+     * @param body     the type.
+     * @param generics the generic variables of the type.
+     */
+    private TypeScheme(Type body, VarType[] generics)
+    {
+        this.body = body;
+        this.generics = generics;
+    }
+
+    /**
+     * Generalizes the type variables of {@code type} whose level is above
+     * {@code level}.
+     *
+     * @param type  the type to generalize.
+     * @param level the level of the enclosing binding.
+     * @return the scheme of the type.
+     */
+    public static TypeScheme generalize(Type type, int level)
+    {
+        ArrayList<VarType> found = new ArrayList<>();
+        Type resolved = resolve(type, level, found);
+        if (found.isEmpty())
+            return new TypeScheme(resolved);
+        return new TypeScheme(resolved, found.toArray(NONE));
+    }
+
+    /**
+     * Get the type of the scheme at a new use. The generic variables are
+     * replaced by fresh variables from {@code tenv}; a scheme without
+     * generic variables is its type.
+     *
+     * @param tenv the type environment to get fresh variables from.
+     * @return the type of the use.
+     */
+    public Type instantiate(TypeEnvironment tenv)
+    {
+        if (generics.length == 0)
+            return body;
+        return instantiate(body, new VarType[generics.length], tenv);
+    }
+
+    /**
+     * Get the type of the scheme, with its generic variables left in place.
+     *
+     * @return the type.
+     */
+    public Type getType()
+    {
+        return body;
+    }
+
+    /**
+     * Gets the scheme as a string.
+     *
+     * @return the scheme as a string.
+     */
+    @Override
+    public String toString()
+    {
+        return body.toString();
+    }
+
+    /**
+     * Follows the bindings of the variables of {@code type}, collecting the
+     * free variables above {@code level}.
+     */
+    private static Type resolve(Type type, int level,
+            ArrayList<VarType> found)
+    {
+        while (type instanceof VarType
+                && ((VarType) type).getInstance() != null)
+            type = ((VarType) type).getInstance();
+
+        if (type instanceof VarType)
+        {
+            VarType tv = (VarType) type;
+            if (tv.getLevel() > level && !found.contains(tv))
+                found.add(tv);
+            return tv;
+        }
+        else if (type instanceof ListType)
+        {
+            Type elem = ((ListType) type).getElementType();
+            Type newElem = resolve(elem, level, found);
+            return newElem == elem ? type : TypeFactory.listType(newElem);
+        }
+        else if (type instanceof FunType)
+        {
+            FunType f = (FunType) type;
+            Type param = resolve(f.getParamType(), level, found);
+            Type ret = resolve(f.getReturnType(), level, found);
+            if (param == f.getParamType() && ret == f.getReturnType())
+                return type;
+            return TypeFactory.funType(param, ret);
+        }
+        return type;
+    }
+
+    /**
+     * Copies {@code type}, replacing the generic variables by the fresh
+     * variables in {@code fresh}. Fresh variables are made as needed.
+     */
+    private Type instantiate(Type type, VarType[] fresh, TypeEnvironment tenv)
+    {
+        while (type instanceof VarType
+                && ((VarType) type).getInstance() != null)
+            type = ((VarType) type).getInstance();
+
+        if (type instanceof VarType)
+        {
+            for (int i = 0; i < generics.length; i++)
+                if (generics[i] == type)
+                {
+                    if (fresh[i] == null)
+                        fresh[i] = tenv.getTypeVariable();
+                    return fresh[i];
+                }
+            return type;
+        }
+        else if (type instanceof ListType)
+        {
+            Type elem = ((ListType) type).getElementType();
+            Type newElem = instantiate(elem, fresh, tenv);
+            return newElem == elem ? type : TypeFactory.listType(newElem);
+        }
+        else if (type instanceof FunType)
+        {
+            FunType f = (FunType) type;
+            Type param = instantiate(f.getParamType(), fresh, tenv);
+            Type ret = instantiate(f.getReturnType(), fresh, tenv);
+            if (param == f.getParamType() && ret == f.getReturnType())
+                return type;
+            return TypeFactory.funType(param, ret);
+        }
+        return type;
+    }
+}
@@ -16,8 +16,6 @@
  */
 package ast.typesystem.types;
 
-import java.util.LinkedList;
-
 /**
  * Represents a type variable/generic type.
  * 
@@ -26,7 +24,8 @@ import java.util.LinkedList;
 public final class VarType extends Type
 {
     private int serialNumber; // The unique identifier for this type variable.
-    private LinkedList<Type> constraints; // Tracks type constraints for thsi variable.
+    private Type instance;    // The type the variable is bound to, if any.
+    private int level;        // The lowest level the variable is visible at.
 
     /**
      * Construct a new type variable.
@@ -35,95 +34,120 @@ public final class VarType extends Type
      */
     public VarType(int serialNumber)
     {
-        this.serialNumber = serialNumber;
-        this.constraints = new LinkedList<>();
+        this(serialNumber, 0);
     }
 
     /**
-     * Sets {@code this} VarType's serial number to {@code type}'s serial
-     * number.
+     * Construct a new type variable created at the given level.
      * 
-     * @param type the type {@code this} should match.
+     * @param serialNumber the identifier for the new variable type.
+     * @param level        the level the variable is created at.
      */
-    public void setEqual(VarType type)
+    public VarType(int serialNumber, int level)
     {
-        serialNumber = type.serialNumber;
+        this.serialNumber = serialNumber;
+        this.instance = null;
+        this.level = level;
     }
 
     /**
-     * Check equality of variable types.
+     * A type variable is never ground, even once bound.
      * 
-     * @param obj the object to test.
+     * @return false.
      */
     @Override
-    public boolean equals(Object obj)
+    public boolean isGround()
     {
-        // Check to see if we are comparing to ourself.
-        if (obj == this)
-            return true;
-
-        // Make sure we are looking at a variable type.
-        if (!(obj instanceof VarType))
-            return false;
+        return false;
+    }
 
-        VarType rhs = (VarType) obj;
+    /**
+     * Get the serial number of the variable.
+     * 
+     * @return the identifier of the variable.
+     */
+    public int getSerialNumber()
+    {
+        return serialNumber;
+    }
 
-        return rhs.serialNumber == this.serialNumber;
+    /**
+     * Get the type the variable is bound to. Unification binds a variable by
+     * setting its instance rather than recording it in a map, so every
+     * occurrence of the variable sees the binding at once.
+     * 
+     * @return the instance of the variable or null if it is free.
+     */
+    public Type getInstance()
+    {
+        return instance;
     }
 
     /**
-     * Gets the type as a string.
+     * Binds the variable to {@code type}, or frees it again if {@code type}
+     * is null.
      * 
-     * @return a the type as a string.
+     * @param type the new instance of the variable.
      */
-    @Override
-    public String toString()
+    public void bind(Type type)
     {
-        if (constraints.isEmpty())
-            return "t" + String.valueOf(serialNumber);
-        else
-            return "t" + String.valueOf(serialNumber) + "/Constraints: "
-                    + constraints;
+        instance = type;
     }
 
     /**
-     * Adds a constraint to the possible values the type variable can take on.
+     * Get the level of the variable.
      * 
-     * @param t the type to add to the constraints.
+     * @return the level of the variable.
      */
-    public void addConstraint(Type t)
+    public int getLevel()
     {
-        constraints.add(t);
+        return level;
     }
 
     /**
-     * Copies the constraints from one type variable to this.
+     * Sets the level of the variable.
      * 
-     * @param type a VarType to copy the contraints of.
+     * @param level the new level.
      */
-    public void copyConstraints(VarType type)
+    public void setLevel(int level)
     {
-        this.constraints.addAll(type.constraints);
+        this.level = level;
     }
 
     /**
-     * Checks if the constraints are satisified.
+     * Check equality of variable types. A type variable is only equal to
+     * itself, like every other type built by {@code TypeFactory}, so the
+     * types built over it are equal exactly when they are the same object.
      * 
-     * @param t the type to check against constraints.
-     * @return {@code true} if the constraint is satisifed, {@code false}
-     *         otherwise.
+     * @param obj the object to test.
      */
-    public boolean checkConstraint(Type t)
+    @Override
+    public boolean equals(Object obj)
     {
-        if (constraints.isEmpty())
-            return true;
+        return obj == this;
+    }
 
-        if (t instanceof VarType)
-            return true;
+    /**
+     * Get the hash code of the variable.
+     * 
+     * @return the identity hash code of the variable.
+     */
+    @Override
+    public int hashCode()
+    {
+        return System.identityHashCode(this);
+    }
 
-        for (Type c : constraints)
-            if (t.getClass() == c.getClass())
-                return true;
-        return false;
+    /**
+     * Gets the type as a string.
+     * 
+     * @return a the type as a string.
+     */
+    @Override
+    public String toString()
+    {
+        if (instance != null)
+            return instance.toString();
+        return "t" + String.valueOf(serialNumber);
     }
 }
@@ -0,0 +1,357 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A minimal writer for JVM class files. It knows just enough of the format
+ * to hold the constant pool and a list of methods. The class files are
+ * version 49, which the JVM verifies by type inference, so no stack map
+ * frames have to be computed.
+ *
+ * @author Zach Kissel
+ */
+final class ClassWriter
+{
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final String name;                      // The class name.
+    private final String superName;                 // The super class.
+    private final String[] interfaces;              // The interfaces.
+    private final ByteArrayOutputStream poolBytes;  // The encoded pool.
+    private final DataOutputStream pool;
+    private final HashMap<String, Integer> entries; // Pool entry indices.
+    private int poolCount;                          // The next pool index.
+    private final ArrayList<MethodWriter> methods;  // The methods.
+
+    /**
+     * Constructs a writer for a new class.
+     *
+     * @param name       the internal name of the class.
+     * @param superName  the internal name of the super class.
+     * @param interfaces the internal names of the implemented interfaces.
+     */
+    ClassWriter(String name, String superName, String... interfaces)
+    {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.poolBytes = new ByteArrayOutputStream();
+        this.pool = new DataOutputStream(poolBytes);
+        this.entries = new HashMap<>();
+        this.poolCount = 1;
+        this.methods = new ArrayList<>();
+    }
+
+    /**
+     * Get the internal name of the class being written.
+     *
+     * @return the class name.
+     */
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds a new method to the class.
+     *
+     * @param access     the access flags of the method.
+     * @param methodName the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @return the writer for the code of the method.
+     */
+    MethodWriter addMethod(int access, String methodName, String descriptor)
+    {
+        MethodWriter mw = new MethodWriter(this, access, methodName,
+                descriptor);
+        methods.add(mw);
+        return mw;
+    }
+
+    /**
+     * Get the pool index of a UTF-8 constant.
+     *
+     * @param s the string.
+     * @return the index of the constant.
+     */
+    int utf8(String s)
+    {
+        Integer idx = entries.get("U" + s);
+        if (idx != null)
+            return idx;
+
+        try
+        {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(s);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        return record("U" + s, 1);
+    }
+
+    /**
+     * Get the pool index of a class constant.
+     *
+     * @param className the internal name of the class.
+     * @return the index of the constant.
+     */
+    int classRef(String className)
+    {
+        return ref("C" + className, CONSTANT_CLASS, utf8(className), -1);
+    }
+
+    /**
+     * Get the pool index of a string constant.
+     *
+     * @param s the string.
+     * @return the index of the constant.
+     */
+    int string(String s)
+    {
+        return ref("S" + s, CONSTANT_STRING, utf8(s), -1);
+    }
+
+    /**
+     * Get the pool index of an integer constant.
+     *
+     * @param value the value of the constant.
+     * @return the index of the constant.
+     */
+    int integer(int value)
+    {
+        Integer idx = entries.get("I" + value);
+        if (idx != null)
+            return idx;
+
+        write(CONSTANT_INTEGER, value);
+        return record("I" + value, 1);
+    }
+
+    /**
+     * Get the pool index of a double constant.
+     *
+     * @param value the value of the constant.
+     * @return the index of the constant.
+     */
+    int doubleConst(double value)
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        Integer idx = entries.get("D" + bits);
+        if (idx != null)
+            return idx;
+
+        write(CONSTANT_DOUBLE, (int) (bits >>> 32));
+        try
+        {
+            pool.writeInt((int) bits);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        // Doubles take up two entries of the pool.
+        return record("D" + bits, 2);
+    }
+
+    /**
+     * Get the pool index of a field reference.
+     *
+     * @param owner      the class declaring the field.
+     * @param fieldName  the name of the field.
+     * @param descriptor the type of the field.
+     * @return the index of the constant.
+     */
+    int fieldRef(String owner, String fieldName, String descriptor)
+    {
+        return memberRef(CONSTANT_FIELDREF, owner, fieldName, descriptor);
+    }
+
+    /**
+     * Get the pool index of a method reference.
+     *
+     * @param owner      the class declaring the method.
+     * @param methodName the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @return the index of the constant.
+     */
+    int methodRef(String owner, String methodName, String descriptor)
+    {
+        return memberRef(CONSTANT_METHODREF, owner, methodName, descriptor);
+    }
+
+    /**
+     * Get the pool index of an interface method reference.
+     *
+     * @param owner      the interface declaring the method.
+     * @param methodName the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @return the index of the constant.
+     */
+    int interfaceMethodRef(String owner, String methodName,
+            String descriptor)
+    {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, methodName,
+                descriptor);
+    }
+
+    /**
+     * Produces the bytes of the class file.
+     *
+     * @return the class file.
+     * @throws CompileException if the class exceeds a limit of the format.
+     */
+    byte[] toByteArray() throws CompileException
+    {
+        int thisIdx = classRef(name);
+        int superIdx = classRef(superName);
+        int[] interfaceIdx = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++)
+            interfaceIdx[i] = classRef(interfaces[i]);
+        int codeIdx = utf8("Code");
+
+        ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(methodBytes);
+        try
+        {
+            for (MethodWriter mw : methods)
+                mw.write(out, codeIdx);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        // The methods may have added entries, check the pool last.
+        if (poolCount > 0xFFFF)
+            throw new CompileException("too many constants.");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream file = new DataOutputStream(bytes);
+        try
+        {
+            file.writeInt(MAGIC);
+            file.writeShort(0);
+            file.writeShort(VERSION);
+            file.writeShort(poolCount);
+            poolBytes.writeTo(file);
+            file.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            file.writeShort(thisIdx);
+            file.writeShort(superIdx);
+            file.writeShort(interfaceIdx.length);
+            for (int idx : interfaceIdx)
+                file.writeShort(idx);
+            file.writeShort(0);                 // No fields.
+            file.writeShort(methods.size());
+            methodBytes.writeTo(file);
+            file.writeShort(0);                 // No class attributes.
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Find or add an entry made of a tag and one or two indices.
+     */
+    private int ref(String key, int tag, int first, int second)
+    {
+        Integer idx = entries.get(key);
+        if (idx != null)
+            return idx;
+
+        try
+        {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            if (second >= 0)
+                pool.writeShort(second);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        return record(key, 1);
+    }
+
+    /**
+     * Find or add a field, method, or interface method reference.
+     */
+    private int memberRef(int tag, String owner, String memberName,
+            String descriptor)
+    {
+        int nameAndType = ref("N" + memberName + ":" + descriptor,
+                CONSTANT_NAME_AND_TYPE, utf8(memberName), utf8(descriptor));
+        return ref(tag + owner + "." + memberName + ":" + descriptor, tag,
+                classRef(owner), nameAndType);
+    }
+
+    /**
+     * Write a tag followed by a four byte value.
+     */
+    private void write(int tag, int value)
+    {
+        try
+        {
+            pool.writeByte(tag);
+            pool.writeInt(value);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Remember the index of the entry just written.
+     */
+    private int record(String key, int width)
+    {
+        int idx = poolCount;
+        entries.put(key, idx);
+        poolCount += width;
+        return idx;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import ast.nodes.SyntaxNode;
+import environment.Scope;
+import lexer.Token;
+
+/**
+ * The view of the method being generated that the syntax nodes compile
+ * themselves against. Every node leaves exactly one boxed value on the operand
+ * stack. Frame slots become JVM local variables, the captured values and the
+ * top-level values live in arrays passed to every method.
+ *
+ * @author Zach Kissel
+ */
+public final class CodeGenerator
+{
+    /**
+     * The descriptor of a runtime operation on one value.
+     */
+    public static final String UNARY =
+            "(Ljava/lang/Object;I)Ljava/lang/Object;";
+
+    /**
+     * The descriptor of a runtime operation on two values.
+     */
+    public static final String BINARY =
+            "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;";
+
+    static final String OBJECT = "java/lang/Object";
+    static final String RUNTIME = "compiler/RuntimeSupport";
+
+    private final JvmCompiler compiler; // The compiler of the program.
+    private final MethodWriter mw;      // The method being generated.
+    private final int codeLocal;        // The local holding the program.
+    private final int capturedLocal;    // The local holding the captures.
+    private final int globalsLocal;     // The local holding the globals.
+    private final int slotBase;         // The local of frame slot 0.
+
+    /**
+     * Constructs a code generator for a method.
+     *
+     * @param compiler      the compiler of the program.
+     * @param mw            the method writer.
+     * @param codeLocal     the local holding the compiled program.
+     * @param capturedLocal the local holding the captured values, or -1.
+     * @param globalsLocal  the local holding the top-level values.
+     * @param slotBase      the local variable of the first frame slot.
+     */
+    CodeGenerator(JvmCompiler compiler, MethodWriter mw, int codeLocal,
+            int capturedLocal, int globalsLocal, int slotBase)
+    {
+        this.compiler = compiler;
+        this.mw = mw;
+        this.codeLocal = codeLocal;
+        this.capturedLocal = capturedLocal;
+        this.globalsLocal = globalsLocal;
+        this.slotBase = slotBase;
+        mw.useLocals(slotBase);
+    }
+
+    /**
+     * Push an unboxed integer.
+     *
+     * @param value the value.
+     */
+    public void pushInt(int value)
+    {
+        mw.pushInt(value);
+    }
+
+    /**
+     * Push a boxed integer.
+     *
+     * @param value the value.
+     */
+    public void pushInteger(int value)
+    {
+        mw.pushInt(value);
+        invokeStatic("java/lang/Integer", "valueOf",
+                "(I)Ljava/lang/Integer;");
+    }
+
+    /**
+     * Push a boxed real.
+     *
+     * @param value the value.
+     */
+    public void pushDouble(double value)
+    {
+        mw.ldc2(mw.getClassWriter().doubleConst(value));
+        invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+    }
+
+    /**
+     * Push a boxed boolean.
+     *
+     * @param value the value.
+     */
+    public void pushBoolean(boolean value)
+    {
+        mw.poolOp(MethodWriter.GETSTATIC, mw.getClassWriter().fieldRef(
+                "java/lang/Boolean", value ? "TRUE" : "FALSE",
+                "Ljava/lang/Boolean;"), 1);
+    }
+
+    /**
+     * Push a string.
+     *
+     * @param s the string.
+     */
+    public void pushString(String s)
+    {
+        mw.ldc(mw.getClassWriter().string(s));
+    }
+
+    /**
+     * Push null.
+     */
+    public void pushNull()
+    {
+        mw.op(MethodWriter.ACONST_NULL, 1);
+    }
+
+    /**
+     * Discard the value on top of the stack.
+     */
+    public void pop()
+    {
+        mw.op(MethodWriter.POP, -1);
+    }
+
+    /**
+     * Push the value of a frame slot.
+     *
+     * @param slot the slot.
+     */
+    public void loadLocal(int slot)
+    {
+        mw.local(MethodWriter.ALOAD, slotBase + slot, 1);
+    }
+
+    /**
+     * Pop a value into a frame slot.
+     *
+     * @param slot the slot.
+     */
+    public void storeLocal(int slot)
+    {
+        mw.local(MethodWriter.ASTORE, slotBase + slot, -1);
+    }
+
+    /**
+     * Push a captured value.
+     *
+     * @param index the capture index.
+     * @throws CompileException if the method has no captured values.
+     */
+    public void loadCaptured(int index) throws CompileException
+    {
+        if (capturedLocal < 0)
+            throw new CompileException("capture outside of a function.");
+
+        mw.local(MethodWriter.ALOAD, capturedLocal, 1);
+        mw.pushInt(index);
+        mw.op(MethodWriter.AALOAD, -1);
+    }
+
+    /**
+     * Push the value of a top-level name.
+     *
+     * @param name the name.
+     * @param line the line of the reference.
+     */
+    public void loadGlobal(String name, int line)
+    {
+        mw.local(MethodWriter.ALOAD, globalsLocal, 1);
+        mw.pushInt(compiler.globalIndex(name));
+        pushString(name);
+        mw.pushInt(line);
+        callRuntime("global", "([Ljava/lang/Object;ILjava/lang/String;I)"
+                + "Ljava/lang/Object;");
+    }
+
+    /**
+     * Bind the value on top of the stack to a top-level name, the value is
+     * replaced by the name.
+     *
+     * @param name the name.
+     * @param line the line of the definition.
+     */
+    public void defineGlobal(String name, int line)
+    {
+        mw.local(MethodWriter.ALOAD, globalsLocal, 1);
+        mw.pushInt(compiler.globalIndex(name));
+        pushString(name);
+        mw.pushInt(line);
+        callRuntime("define", "(Ljava/lang/Object;[Ljava/lang/Object;I"
+                + "Ljava/lang/String;I)Ljava/lang/Object;");
+    }
+
+    /**
+     * Make sure the value on top of the stack is defined, a null value is
+     * reported as a reference to an undefined name.
+     *
+     * @param name the name the value was loaded from.
+     * @param line the line of the reference.
+     */
+    public void checkDefined(String name, int line)
+    {
+        Label ok = new Label();
+        mw.op(MethodWriter.DUP, 1);
+        mw.branch(MethodWriter.IFNONNULL, ok);
+        pop();
+        undefined(name, line);
+        mw.place(ok);
+    }
+
+    /**
+     * Report a reference to a name that has no value. The code pushes a
+     * value as far as the stack depth is concerned but never completes.
+     *
+     * @param name the name.
+     * @param line the line of the reference.
+     */
+    public void undefined(String name, int line)
+    {
+        pushString(name);
+        mw.pushInt(line);
+        callRuntime("undefined", "(Ljava/lang/String;I)Ljava/lang/Object;");
+    }
+
+    /**
+     * Call an operation of {@code RuntimeSupport}.
+     *
+     * @param name       the name of the operation.
+     * @param descriptor the descriptor of the operation.
+     */
+    public void callRuntime(String name, String descriptor)
+    {
+        invokeStatic(RUNTIME, name, descriptor);
+    }
+
+    /**
+     * Call a static method.
+     *
+     * @param owner      the internal name of the class of the method.
+     * @param name       the name of the method.
+     * @param descriptor the descriptor of the method.
+     */
+    public void invokeStatic(String owner, String name, String descriptor)
+    {
+        mw.invoke(MethodWriter.INVOKESTATIC, owner, name, descriptor);
+    }
+
+    /**
+     * Create a new label.
+     *
+     * @return the label.
+     */
+    public Label newLabel()
+    {
+        return new Label();
+    }
+
+    /**
+     * Branch to {@code target} if the int on top of the stack is zero.
+     *
+     * @param target the branch target.
+     */
+    public void branchIfFalse(Label target)
+    {
+        mw.branch(MethodWriter.IFEQ, target);
+    }
+
+    /**
+     * Branch to {@code target} unconditionally.
+     *
+     * @param target the branch target.
+     */
+    public void jump(Label target)
+    {
+        mw.branch(MethodWriter.GOTO, target);
+    }
+
+    /**
+     * Place {@code label} at the current position.
+     *
+     * @param label the label.
+     */
+    public void placeLabel(Label label)
+    {
+        mw.place(label);
+    }
+
+    /**
+     * Compile {@code body} into a method of its own and push a closure for
+     * it. The closure copies the values of the free variables of the body
+     * from the current method.
+     *
+     * @param parameter the parameter of the lambda.
+     * @param body      the body of the lambda.
+     * @param captures  where the free variables live in the current method.
+     * @throws CompileException if the body can not be compiled.
+     */
+    public void makeClosure(Token parameter, SyntaxNode body,
+            Scope.Address[] captures) throws CompileException
+    {
+        int id = compiler.addLambda(body);
+        ClassWriter cw = mw.getClassWriter();
+
+        mw.poolOp(MethodWriter.NEW, cw.classRef(JvmCompiler.CLOSURE), 1);
+        mw.op(MethodWriter.DUP, 1);
+        mw.local(MethodWriter.ALOAD, codeLocal, 1);
+        mw.pushInt(id);
+
+        if (captures.length == 0)
+            mw.poolOp(MethodWriter.GETSTATIC, cw.fieldRef(RUNTIME,
+                    "NO_VALUES", "[Ljava/lang/Object;"), 1);
+        else
+        {
+            mw.pushInt(captures.length);
+            mw.poolOp(MethodWriter.ANEWARRAY, cw.classRef(OBJECT), 0);
+            for (int i = 0; i < captures.length; i++)
+            {
+                mw.op(MethodWriter.DUP, 1);
+                mw.pushInt(i);
+                if (captures[i].getKind() == Scope.LOCAL)
+                    loadLocal(captures[i].getIndex());
+                else
+                    loadCaptured(captures[i].getIndex());
+                mw.op(MethodWriter.AASTORE, -3);
+            }
+        }
+
+        mw.local(MethodWriter.ALOAD, globalsLocal, 1);
+        pushString(parameter.getValue());
+        mw.invoke(MethodWriter.INVOKESPECIAL, JvmCompiler.CLOSURE, "<init>",
+                "(Lcompiler/CompiledCode;I[Ljava/lang/Object;"
+                        + "[Ljava/lang/Object;Ljava/lang/String;)V");
+    }
+
+    /**
+     * Compile a top-level expression into a method of its own and push its
+     * value. Splitting the program up this way keeps every method within the
+     * size limit of the JVM.
+     *
+     * @param expr the expression.
+     * @throws CompileException if the expression can not be compiled.
+     */
+    public void compileTopLevel(SyntaxNode expr) throws CompileException
+    {
+        String name = compiler.addTopLevel(expr);
+        mw.local(MethodWriter.ALOAD, codeLocal, 1);
+        mw.local(MethodWriter.ALOAD, globalsLocal, 1);
+        invokeStatic(JvmCompiler.CLASS_NAME, name, JvmCompiler.TOP_LEVEL);
+    }
+}
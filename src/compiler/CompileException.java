@@ -0,0 +1,35 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+/**
+ * An exception that represents a problem compiling a syntax tree.
+ *
+ * @author Zach Kissel
+ */
+public class CompileException extends Exception
+{
+    /**
+     * Constructs a new compile exception with the reason for the failure.
+     *
+     * @param reason the reason compilation failed.
+     */
+    public CompileException(String reason)
+    {
+        super("Compilation failed. " + reason);
+    }
+}
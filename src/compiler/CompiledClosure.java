@@ -0,0 +1,102 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import ast.Applicable;
+import ast.EvaluationException;
+import ast.MemoChain;
+import ast.MemoFunction;
+import ast.TailCall;
+
+/**
+ * The runtime value of a compiled lambda. It names the static method holding
+ * the body and keeps the values of its free variables.
+ *
+ * @author Zach Kissel
+ */
+public final class CompiledClosure implements Applicable
+{
+    private final CompiledCode code;    // The class holding the body.
+    private final int id;               // The number of the lambda.
+    private final Object[] captured;    // The captured values.
+    private final Object[] globals;     // The top-level values.
+    private final String parameter;     // The name of the parameter.
+
+    /**
+     * Constructs a new closure.
+     *
+     * @param code      the compiled program the lambda belongs to.
+     * @param id        the number of the lambda.
+     * @param captured  the values of the free variables.
+     * @param globals   the top-level values.
+     * @param parameter the name of the parameter.
+     */
+    public CompiledClosure(CompiledCode code, int id, Object[] captured,
+            Object[] globals, String parameter)
+    {
+        this.code = code;
+        this.id = id;
+        this.captured = captured;
+        this.globals = globals;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Applies the closure to {@code arg}. The calls the body makes in tail
+     * position come back as a {@link TailCall} and are made here in a loop,
+     * memoized functions included.
+     *
+     * @param arg the argument value.
+     * @return the value of the body.
+     * @throws EvaluationException if the evaluation of the body fails.
+     */
+    @Override
+    public Object apply(Object arg) throws EvaluationException
+    {
+        Object result = code.invoke(id, captured, globals, arg);
+        MemoChain chain = null;
+        while (result instanceof TailCall)
+        {
+            TailCall call = (TailCall) result;
+            Applicable function = call.getFunction();
+            arg = call.getArgument();
+
+            // A memoized function called in tail position runs here too.
+            if (function instanceof MemoFunction)
+            {
+                if (chain == null)
+                    chain = new MemoChain();
+                function = chain.enter((MemoFunction) function, arg);
+                if (function == null)
+                    return MemoChain.finish(chain, chain.getCached());
+            }
+            if (!(function instanceof CompiledClosure))
+                return MemoChain.finish(chain, function.apply(arg));
+
+            CompiledClosure closure = (CompiledClosure) function;
+            result = closure.code.invoke(closure.id, closure.captured,
+                    closure.globals, arg);
+        }
+        return MemoChain.finish(chain, result);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "<closure " + parameter + " -> ... >";
+    }
+}
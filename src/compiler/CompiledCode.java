@@ -0,0 +1,51 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import ast.EvaluationException;
+
+/**
+ * The interface implemented by the class generated for a program. The
+ * lambdas of the program are static methods of the class, {@code invoke}
+ * dispatches to them by number.
+ *
+ * @author Zach Kissel
+ */
+public interface CompiledCode
+{
+    /**
+     * Runs the top-level expressions of the program.
+     *
+     * @param globals the values of the top-level names.
+     * @return the value of the last expression.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    Object run(Object[] globals) throws EvaluationException;
+
+    /**
+     * Invokes the body of lambda {@code id}.
+     *
+     * @param id       the number of the lambda.
+     * @param captured the values captured by the closure.
+     * @param globals  the values of the top-level names.
+     * @param arg      the argument.
+     * @return the value of the body.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    Object invoke(int id, Object[] captured, Object[] globals, Object arg)
+            throws EvaluationException;
+}
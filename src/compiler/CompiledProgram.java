@@ -0,0 +1,55 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import ast.EvaluationException;
+
+/**
+ * A program compiled to a JVM class. Each run starts from the top-level
+ * values the program was compiled against, so the program can be run as
+ * many times as needed.
+ *
+ * @author Zach Kissel
+ */
+public final class CompiledProgram
+{
+    private final CompiledCode code;    // The generated code.
+    private final Object[] initial;     // The initial top-level values.
+
+    /**
+     * Constructs a new compiled program.
+     *
+     * @param code    the generated code.
+     * @param initial the values of the top-level names before the run.
+     */
+    CompiledProgram(CompiledCode code, Object[] initial)
+    {
+        this.code = code;
+        this.initial = initial;
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @return the value of the last expression of the program.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public Object run() throws EvaluationException
+    {
+        return code.run(initial.clone());
+    }
+}
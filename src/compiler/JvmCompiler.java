@@ -0,0 +1,222 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import ast.nodes.SyntaxNode;
+import environment.Environment;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Compiles a resolved syntax tree to a JVM class. Each top-level expression
+ * and each lambda becomes a static method; a closure is a small object
+ * holding the number of its lambda and the values it captured. The class is
+ * loaded as a hidden class so it can be unloaded with the program.
+ *
+ * @author Zach Kissel
+ */
+public final class JvmCompiler
+{
+    static final String CLASS_NAME = "compiler/MflCode";
+    static final String CLOSURE = "compiler/CompiledClosure";
+    static final String CODE = "compiler/CompiledCode";
+    static final String TOP_LEVEL =
+            "(Lcompiler/CompiledCode;[Ljava/lang/Object;)Ljava/lang/Object;";
+    static final String LAMBDA = "(Lcompiler/CompiledCode;"
+            + "[Ljava/lang/Object;[Ljava/lang/Object;Ljava/lang/Object;)"
+            + "Ljava/lang/Object;";
+
+    private final ClassWriter cw;                   // The generated class.
+    private final ArrayList<String> globals;        // The top-level names.
+    private final HashMap<String, Integer> globalIdx;
+    private int lambdaCount;                        // The lambdas so far.
+    private int topLevelCount;                      // The expressions so far.
+
+    /**
+     * Constructs a new compiler.
+     */
+    private JvmCompiler()
+    {
+        this.cw = new ClassWriter(CLASS_NAME, CodeGenerator.OBJECT, CODE);
+        this.globals = new ArrayList<>();
+        this.globalIdx = new HashMap<>();
+        this.lambdaCount = 0;
+        this.topLevelCount = 0;
+    }
+
+    /**
+     * Compiles the program rooted at {@code root}. The tree must already be
+     * resolved. The top-level values of {@code env} are the initial values
+     * of every run of the compiled program.
+     *
+     * @param root the root of the syntax tree.
+     * @param env  the environment the program is compiled against.
+     * @return the compiled program.
+     * @throws CompileException if the program can not be compiled.
+     */
+    public static CompiledProgram compile(SyntaxNode root, Environment env)
+            throws CompileException
+    {
+        JvmCompiler jc = new JvmCompiler();
+        for (String name : env.getKnownNames())
+            jc.globalIndex(name);
+
+        jc.writeConstructor();
+        MethodWriter run = jc.cw.addMethod(ClassWriter.ACC_PUBLIC, "run",
+                "([Ljava/lang/Object;)Ljava/lang/Object;");
+        root.compile(new CodeGenerator(jc, run, 0, -1, 1, 2));
+        run.op(MethodWriter.ARETURN, -1);
+        jc.writeDispatch();
+
+        CompiledCode code = jc.load(jc.cw.toByteArray());
+
+        Object[] initial = new Object[jc.globals.size()];
+        for (int i = 0; i < initial.length; i++)
+            initial[i] = env.lookupGlobal(new Token(TokenType.ID,
+                    jc.globals.get(i)));
+        return new CompiledProgram(code, initial);
+    }
+
+    /**
+     * Get the index of a top-level name in the array of top-level values.
+     *
+     * @param name the name.
+     * @return the index of the name.
+     */
+    int globalIndex(String name)
+    {
+        Integer idx = globalIdx.get(name);
+        if (idx == null)
+        {
+            idx = globals.size();
+            globals.add(name);
+            globalIdx.put(name, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Compiles the body of a lambda into a new static method.
+     *
+     * @param body the body of the lambda.
+     * @return the number of the lambda.
+     * @throws CompileException if the body can not be compiled.
+     */
+    int addLambda(SyntaxNode body) throws CompileException
+    {
+        int id = lambdaCount++;
+        MethodWriter mw = cw.addMethod(ClassWriter.ACC_STATIC, "lambda$" + id,
+                LAMBDA);
+
+        // The argument is in frame slot 0.
+        body.compile(new CodeGenerator(this, mw, 0, 1, 2, 3));
+        mw.op(MethodWriter.ARETURN, -1);
+        return id;
+    }
+
+    /**
+     * Compiles a top-level expression into a new static method.
+     *
+     * @param expr the expression.
+     * @return the name of the method.
+     * @throws CompileException if the expression can not be compiled.
+     */
+    String addTopLevel(SyntaxNode expr) throws CompileException
+    {
+        String name = "top$" + topLevelCount++;
+        MethodWriter mw = cw.addMethod(ClassWriter.ACC_STATIC, name,
+                TOP_LEVEL);
+        expr.compile(new CodeGenerator(this, mw, 0, -1, 1, 2));
+        mw.op(MethodWriter.ARETURN, -1);
+        return name;
+    }
+
+    /**
+     * Writes the no argument constructor.
+     */
+    private void writeConstructor()
+    {
+        MethodWriter mw = cw.addMethod(ClassWriter.ACC_PUBLIC, "<init>",
+                "()V");
+        mw.local(MethodWriter.ALOAD, 0, 1);
+        mw.invoke(MethodWriter.INVOKESPECIAL, CodeGenerator.OBJECT, "<init>",
+                "()V");
+        mw.op(MethodWriter.RETURN, 0);
+    }
+
+    /**
+     * Writes {@code invoke}, which selects the lambda method with a table
+     * switch on the number of the lambda.
+     */
+    private void writeDispatch()
+    {
+        MethodWriter mw = cw.addMethod(ClassWriter.ACC_PUBLIC, "invoke",
+                "(I[Ljava/lang/Object;[Ljava/lang/Object;Ljava/lang/Object;)"
+                        + "Ljava/lang/Object;");
+
+        if (lambdaCount > 0)
+        {
+            Label dflt = new Label();
+            Label[] targets = new Label[lambdaCount];
+            for (int i = 0; i < lambdaCount; i++)
+                targets[i] = new Label();
+
+            mw.local(MethodWriter.ILOAD, 1, 1);
+            mw.tableSwitch(dflt, targets);
+            for (int i = 0; i < lambdaCount; i++)
+            {
+                mw.place(targets[i]);
+                mw.local(MethodWriter.ALOAD, 0, 1);
+                mw.local(MethodWriter.ALOAD, 2, 1);
+                mw.local(MethodWriter.ALOAD, 3, 1);
+                mw.local(MethodWriter.ALOAD, 4, 1);
+                mw.invoke(MethodWriter.INVOKESTATIC, CLASS_NAME, "lambda$" + i,
+                        LAMBDA);
+                mw.op(MethodWriter.ARETURN, -1);
+            }
+            mw.place(dflt);
+        }
+        mw.op(MethodWriter.ACONST_NULL, 1);
+        mw.op(MethodWriter.ARETURN, -1);
+    }
+
+    /**
+     * Defines the generated class as a hidden class and creates an instance.
+     *
+     * @param bytes the class file.
+     * @return the instance of the class.
+     * @throws CompileException if the class can not be loaded.
+     */
+    private CompiledCode load(byte[] bytes) throws CompileException
+    {
+        try
+        {
+            Class<?> cls = MethodHandles.lookup()
+                    .defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledCode) cls.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError ex)
+        {
+            throw new CompileException("could not load the generated code, "
+                    + ex.getMessage());
+        }
+    }
+}
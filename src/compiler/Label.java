@@ -0,0 +1,33 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import java.util.ArrayList;
+
+/**
+ * A position in the code of a method that can be the target of a branch.
+ * Branches to a label that has not been placed yet are patched when the label
+ * is placed.
+ *
+ * @author Zach Kissel
+ */
+public final class Label
+{
+    int position = -1;                              // The code offset.
+    int stack = -1;                                 // The stack depth.
+    final ArrayList<int[]> branches = new ArrayList<>(); // Pending branches.
+}
@@ -0,0 +1,436 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Accumulates the bytecode of a single method. The writer tracks the depth of
+ * the operand stack as instructions are added so the maximum can be recorded
+ * in the class file.
+ *
+ * @author Zach Kissel
+ */
+final class MethodWriter
+{
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3A;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9A;
+    static final int GOTO = 0xA7;
+    static final int TABLESWITCH = 0xAA;
+    static final int ARETURN = 0xB0;
+    static final int RETURN = 0xB1;
+    static final int GETSTATIC = 0xB2;
+    static final int INVOKEVIRTUAL = 0xB6;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKESTATIC = 0xB8;
+    static final int INVOKEINTERFACE = 0xB9;
+    static final int NEW = 0xBB;
+    static final int ANEWARRAY = 0xBD;
+    static final int ATHROW = 0xBF;
+    static final int CHECKCAST = 0xC0;
+    static final int WIDE = 0xC4;
+    static final int IFNULL = 0xC6;
+    static final int IFNONNULL = 0xC7;
+
+    private static final int MAX_CODE = 0xFFFF;
+
+    private final ClassWriter cw;     // The class the method belongs to.
+    private final int access;         // The access flags.
+    private final String name;        // The method name.
+    private final String descriptor;  // The method descriptor.
+    private byte[] code;              // The bytecode.
+    private int length;               // The number of bytes of code.
+    private int stack;                // The current stack depth.
+    private int maxStack;             // The deepest the stack gets.
+    private int maxLocals;            // The number of local variables.
+
+    /**
+     * Constructs a writer for a method of {@code cw}.
+     */
+    MethodWriter(ClassWriter cw, int access, String name, String descriptor)
+    {
+        this.cw = cw;
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.code = new byte[64];
+        this.length = 0;
+        this.stack = 0;
+        this.maxStack = 0;
+        this.maxLocals = argumentSlots(descriptor)
+                + ((access & ClassWriter.ACC_STATIC) == 0 ? 1 : 0);
+    }
+
+    /**
+     * Get the class writer this method belongs to.
+     *
+     * @return the class writer.
+     */
+    ClassWriter getClassWriter()
+    {
+        return cw;
+    }
+
+    /**
+     * Make sure the method has room for {@code count} local variables.
+     *
+     * @param count the number of locals used.
+     */
+    void useLocals(int count)
+    {
+        maxLocals = Math.max(maxLocals, count);
+    }
+
+    /**
+     * Add an instruction without operands.
+     *
+     * @param opcode the opcode.
+     * @param delta  the effect of the instruction on the stack depth.
+     */
+    void op(int opcode, int delta)
+    {
+        emit(opcode);
+        adjust(delta);
+    }
+
+    /**
+     * Push an integer constant using the shortest encoding.
+     *
+     * @param value the value to push.
+     */
+    void pushInt(int value)
+    {
+        if (value >= -1 && value <= 5)
+            emit(ICONST_0 + value);
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+        {
+            emit(BIPUSH);
+            emit(value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+        {
+            emit(SIPUSH);
+            emit2(value);
+        }
+        else
+        {
+            ldc(cw.integer(value));
+            return;
+        }
+        adjust(1);
+    }
+
+    /**
+     * Push a single word pool constant.
+     *
+     * @param idx the index of the constant.
+     */
+    void ldc(int idx)
+    {
+        if (idx <= 0xFF)
+        {
+            emit(LDC);
+            emit(idx);
+        }
+        else
+        {
+            emit(LDC_W);
+            emit2(idx);
+        }
+        adjust(1);
+    }
+
+    /**
+     * Push a double pool constant.
+     *
+     * @param idx the index of the constant.
+     */
+    void ldc2(int idx)
+    {
+        emit(LDC2_W);
+        emit2(idx);
+        adjust(2);
+    }
+
+    /**
+     * Add a load or store of a local variable.
+     *
+     * @param opcode the load or store opcode.
+     * @param local  the local variable.
+     * @param delta  the effect of the instruction on the stack depth.
+     */
+    void local(int opcode, int local, int delta)
+    {
+        if (local > 0xFF)
+        {
+            emit(WIDE);
+            emit(opcode);
+            emit2(local);
+        }
+        else
+        {
+            emit(opcode);
+            emit(local);
+        }
+        useLocals(local + 1);
+        adjust(delta);
+    }
+
+    /**
+     * Add an instruction with a two byte constant pool operand.
+     *
+     * @param opcode the opcode.
+     * @param idx    the index of the constant.
+     * @param delta  the effect of the instruction on the stack depth.
+     */
+    void poolOp(int opcode, int idx, int delta)
+    {
+        emit(opcode);
+        emit2(idx);
+        adjust(delta);
+    }
+
+    /**
+     * Add a method invocation.
+     *
+     * @param opcode     the invoke opcode.
+     * @param owner      the class declaring the method.
+     * @param methodName the name of the method.
+     * @param desc       the descriptor of the method.
+     */
+    void invoke(int opcode, String owner, String methodName, String desc)
+    {
+        int args = argumentSlots(desc);
+        int delta = returnSlots(desc) - args
+                - (opcode == INVOKESTATIC ? 0 : 1);
+
+        if (opcode == INVOKEINTERFACE)
+        {
+            emit(opcode);
+            emit2(cw.interfaceMethodRef(owner, methodName, desc));
+            emit(args + 1);
+            emit(0);
+        }
+        else
+        {
+            emit(opcode);
+            emit2(cw.methodRef(owner, methodName, desc));
+        }
+        adjust(delta);
+    }
+
+    /**
+     * Add a branch to {@code target}.
+     *
+     * @param opcode the branch opcode.
+     * @param target the label to branch to.
+     */
+    void branch(int opcode, Label target)
+    {
+        int at = length;
+        emit(opcode);
+        emit2(0);
+        target.branches.add(new int[] { at, at + 1 });
+
+        if (opcode == GOTO)
+        {
+            target.stack = stack;
+            stack = -1;             // Nothing falls through a goto.
+        }
+        else
+        {
+            adjust(-1);
+            target.stack = stack;
+        }
+
+        if (target.position >= 0)
+            patch(target);
+    }
+
+    /**
+     * Places {@code label} at the current position.
+     *
+     * @param label the label to place.
+     */
+    void place(Label label)
+    {
+        label.position = length;
+        if (stack < 0)
+            stack = label.stack;
+        patch(label);
+    }
+
+    /**
+     * Add a table switch over the consecutive keys {@code 0 ... n - 1}.
+     *
+     * @param dflt    the default target.
+     * @param targets the target of each key.
+     */
+    void tableSwitch(Label dflt, Label[] targets)
+    {
+        int at = length;
+        emit(TABLESWITCH);
+        while (length % 4 != 0)
+            emit(0);
+
+        adjust(-1);
+        addSwitchTarget(at, dflt);
+        emit4(0);
+        emit4(targets.length - 1);
+        for (Label target : targets)
+            addSwitchTarget(at, target);
+        stack = -1;
+    }
+
+    /**
+     * Writes the method, including its code attribute, to {@code out}.
+     *
+     * @param out     the stream to write to.
+     * @param codeIdx the pool index of the "Code" attribute name.
+     * @throws IOException      if the stream can not be written.
+     * @throws CompileException if the method is too large.
+     */
+    void write(DataOutputStream out, int codeIdx)
+            throws IOException, CompileException
+    {
+        if (length > MAX_CODE)
+            throw new CompileException("method " + name + " is too large.");
+
+        out.writeShort(access);
+        out.writeShort(cw.utf8(name));
+        out.writeShort(cw.utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(codeIdx);
+        out.writeInt(12 + length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0);      // No exception handlers.
+        out.writeShort(0);      // No code attributes.
+    }
+
+    /**
+     * Records a four byte switch offset to {@code target}.
+     */
+    private void addSwitchTarget(int at, Label target)
+    {
+        target.branches.add(new int[] { at, length, 4 });
+        target.stack = stack;
+        emit4(0);
+        if (target.position >= 0)
+            patch(target);
+    }
+
+    /**
+     * Fill in the offsets of the branches to a placed label.
+     */
+    private void patch(Label label)
+    {
+        for (int[] br : label.branches)
+        {
+            int offset = label.position - br[0];
+            if (br.length == 3)
+            {
+                code[br[1]] = (byte) (offset >>> 24);
+                code[br[1] + 1] = (byte) (offset >>> 16);
+                code[br[1] + 2] = (byte) (offset >>> 8);
+                code[br[1] + 3] = (byte) offset;
+            }
+            else
+            {
+                // Methods over the limit are rejected when written.
+                code[br[1]] = (byte) (offset >>> 8);
+                code[br[1] + 1] = (byte) offset;
+            }
+        }
+        label.branches.clear();
+    }
+
+    private void adjust(int delta)
+    {
+        stack += delta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void emit(int b)
+    {
+        if (length == code.length)
+            code = Arrays.copyOf(code, 2 * code.length);
+        code[length++] = (byte) b;
+    }
+
+    private void emit2(int s)
+    {
+        emit(s >>> 8);
+        emit(s);
+    }
+
+    private void emit4(int i)
+    {
+        emit2(i >>> 16);
+        emit2(i);
+    }
+
+    /**
+     * Count the local variable slots taken by the arguments of a method.
+     */
+    private static int argumentSlots(String desc)
+    {
+        int slots = 0;
+        int i = 1;
+        while (desc.charAt(i) != ')')
+        {
+            char c = desc.charAt(i);
+            boolean array = c == '[';
+            while (c == '[')
+                c = desc.charAt(++i);
+            if (c == 'L')
+                i = desc.indexOf(';', i);
+            slots += (c == 'J' || c == 'D') && !array ? 2 : 1;
+            i++;
+        }
+        return slots;
+    }
+
+    /**
+     * Count the stack slots taken by the result of a method.
+     */
+    private static int returnSlots(String desc)
+    {
+        char c = desc.charAt(desc.indexOf(')') + 1);
+        if (c == 'V')
+            return 0;
+        return (c == 'J' || c == 'D') ? 2 : 1;
+    }
+}
@@ -0,0 +1,788 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package compiler;
+
+import java.util.Iterator;
+
+import ast.Applicable;
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.Memoizer;
+import ast.ParallelMap;
+import ast.TailCall;
+
+/**
+ * The operations compiled code calls on boxed values. Each one behaves like
+ * the {@code evaluate} method of the corresponding node, including the
+ * errors it reports, so compiled and interpreted programs agree. The methods
+ * are small and static which lets the JIT inline them into the generated
+ * code.
+ *
+ * @author Zach Kissel
+ */
+public final class RuntimeSupport
+{
+    /**
+     * The captured values of a closure without free variables.
+     */
+    public static final Object[] NO_VALUES = new Object[0];
+
+    /**
+     * The fold flag of {@link #reduce} for a right fold.
+     */
+    public static final int FOLD_RIGHT = 1;
+
+    /**
+     * The fold flag of {@link #reduce} for a function asserted to be
+     * associative.
+     */
+    public static final int FOLD_ASSERTED = 2;
+
+    private RuntimeSupport()
+    {
+    }
+
+    /**
+     * Logs an error to the screen.
+     *
+     * @param msg  the error message to display.
+     * @param line the line the error occurred on.
+     */
+    private static void logError(String msg, int line)
+    {
+        System.out.println("Error (line " + line + "): " + msg);
+    }
+
+    /**
+     * Reports a reference to a name that has no value.
+     *
+     * @param name the name.
+     * @param line the line of the reference.
+     * @return never returns normally.
+     * @throws EvaluationException always.
+     */
+    public static Object undefined(String name, int line)
+            throws EvaluationException
+    {
+        logError("undefined value " + name + ".", line);
+        throw new EvaluationException();
+    }
+
+    /**
+     * Get the value of a top-level name.
+     *
+     * @param globals the top-level values.
+     * @param idx     the index of the name.
+     * @param name    the name.
+     * @param line    the line of the reference.
+     * @return the value.
+     * @throws EvaluationException if the name has no value.
+     */
+    public static Object global(Object[] globals, int idx, String name,
+            int line) throws EvaluationException
+    {
+        Object val = globals[idx];
+        if (val == null)
+            return undefined(name, line);
+        return val;
+    }
+
+    /**
+     * Binds a top-level name.
+     *
+     * @param val     the value.
+     * @param globals the top-level values.
+     * @param idx     the index of the name.
+     * @param name    the name.
+     * @param line    the line of the definition.
+     * @return the name.
+     * @throws EvaluationException if the name is already bound.
+     */
+    public static Object define(Object val, Object[] globals, int idx,
+            String name, int line) throws EvaluationException
+    {
+        if (globals[idx] != null)
+        {
+            logError(name + " already defined.", line);
+            throw new EvaluationException();
+        }
+        globals[idx] = val;
+        return name;
+    }
+
+    /**
+     * Memoizes the value of a top-level name if it is a function.
+     *
+     * @param val  the value.
+     * @param name the name the value is bound to.
+     * @return the value to bind.
+     */
+    public static Object memoize(Object val, String name)
+    {
+        return Memoizer.memoize(name, val);
+    }
+
+    /**
+     * Checks the value of a let variable can be bound.
+     *
+     * @param val  the value.
+     * @param name the variable.
+     * @param line the line of the let expression.
+     * @return the value to bind or null if the value can not be bound.
+     */
+    public static Object letValue(Object val, String name, int line)
+    {
+        if (val instanceof Integer || val instanceof Double
+                || val instanceof Boolean || val instanceof ListValue
+                || val instanceof Applicable)
+            return val;
+
+        logError("[Internal] Failed to add " + name + " with  value "
+                + val.getClass(), line);
+        return null;
+    }
+
+    /**
+     * Get the truth value of an if condition.
+     *
+     * @param cond the value of the condition.
+     * @param line the line of the if expression.
+     * @return the truth value.
+     * @throws EvaluationException if the value is not boolean.
+     */
+    public static boolean truth(Object cond, int line)
+            throws EvaluationException
+    {
+        if (!(cond instanceof Boolean))
+        {
+            logError("if condition must be boolean.", line);
+            throw new EvaluationException();
+        }
+        return (Boolean) cond;
+    }
+
+    /**
+     * Make sure the operands of an arithmetic or logical operation agree.
+     */
+    private static void checkOperands(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!(lval instanceof Integer || lval instanceof Double
+                || lval instanceof Boolean)
+                && !(rval instanceof Double || rval instanceof Integer
+                        || lval instanceof Boolean))
+            throw new EvaluationException();
+
+        if (lval.getClass() != rval.getClass())
+        {
+            logError("mixed type expression.", line);
+            throw new EvaluationException();
+        }
+    }
+
+    /**
+     * Adds two numbers.
+     */
+    public static Object add(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        if (lval instanceof Double)
+            return (Double) lval + (Double) rval;
+        return (Integer) lval + (Integer) rval;
+    }
+
+    /**
+     * Subtracts two numbers.
+     */
+    public static Object sub(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        if (lval instanceof Double)
+            return (Double) lval - (Double) rval;
+        return (Integer) lval - (Integer) rval;
+    }
+
+    /**
+     * Multiplies two numbers.
+     */
+    public static Object mul(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        if (lval instanceof Double)
+            return (Double) lval * (Double) rval;
+        return (Integer) lval * (Integer) rval;
+    }
+
+    /**
+     * Divides two numbers.
+     */
+    public static Object div(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        if (lval instanceof Double)
+            return (Double) lval / (Double) rval;
+        return (Integer) lval / (Integer) rval;
+    }
+
+    /**
+     * Computes the remainder of two integers.
+     */
+    public static Object mod(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        if (lval instanceof Double)
+        {
+            logError("Error: Mod requires integer arguments.", line);
+            throw new EvaluationException();
+        }
+        return (Integer) lval % (Integer) rval;
+    }
+
+    /**
+     * Computes the conjunction of two booleans.
+     */
+    public static Object and(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        return (Boolean) lval && (Boolean) rval;
+    }
+
+    /**
+     * Computes the disjunction of two booleans.
+     */
+    public static Object or(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        checkOperands(lval, rval, line);
+        return (Boolean) lval || (Boolean) rval;
+    }
+
+    /**
+     * Appends two lists.
+     *
+     * @param lval the left list.
+     * @param rval the right list.
+     * @param line the line of the expression.
+     * @return the combined list or null if either value is not a list.
+     * @throws EvaluationException if the lists hold different types.
+     */
+    public static Object concat(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!(lval instanceof ListValue) || !(rval instanceof ListValue))
+            return null;
+
+        ListValue leftList = (ListValue) lval;
+        ListValue rightList = (ListValue) rval;
+
+        if (leftList.isEmpty())
+            return rightList;
+        else if (rightList.isEmpty())
+            return leftList;
+
+        if (leftList.head().getClass() != rightList.head().getClass())
+        {
+            logError("mixed type list not supported.", line);
+            throw new EvaluationException();
+        }
+
+        // The result shares the cells of the right list.
+        return leftList.append(rightList);
+    }
+
+    /**
+     * Make sure the operands of a relational operation agree.
+     *
+     * @return true if the operands have the same type.
+     */
+    private static boolean checkRelational(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!(lval instanceof Integer || lval instanceof Double)
+                && !(rval instanceof Double || rval instanceof Integer))
+            throw new EvaluationException();
+
+        if (lval.getClass() != rval.getClass())
+        {
+            logError("mixed type expression.", line);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares two numbers with {@code <}.
+     */
+    public static Object lt(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        if (lval instanceof Double)
+            return (Double) lval < (Double) rval;
+        return (Integer) lval < (Integer) rval;
+    }
+
+    /**
+     * Compares two numbers with {@code <=}.
+     */
+    public static Object lte(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        if (lval instanceof Double)
+            return (Double) lval <= (Double) rval;
+        return (Integer) lval <= (Integer) rval;
+    }
+
+    /**
+     * Compares two numbers with {@code >}.
+     */
+    public static Object gt(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        if (lval instanceof Double)
+            return (Double) lval > (Double) rval;
+        return (Integer) lval > (Integer) rval;
+    }
+
+    /**
+     * Compares two numbers with {@code >=}.
+     */
+    public static Object gte(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        if (lval instanceof Double)
+            return (Double) lval >= (Double) rval;
+        return (Integer) lval >= (Integer) rval;
+    }
+
+    /**
+     * Compares two numbers for equality.
+     */
+    public static Object eq(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        return lval.equals(rval);
+    }
+
+    /**
+     * Compares two numbers for inequality.
+     */
+    public static Object neq(Object lval, Object rval, int line)
+            throws EvaluationException
+    {
+        if (!checkRelational(lval, rval, line))
+            return null;
+        return !lval.equals(rval);
+    }
+
+    /**
+     * Negates a boolean.
+     */
+    public static Object not(Object val, int line) throws EvaluationException
+    {
+        if (!(val instanceof Boolean))
+        {
+            logError("Boolean expected.", line);
+            throw new EvaluationException();
+        }
+        return !((Boolean) val);
+    }
+
+    /**
+     * Negates a number.
+     */
+    public static Object neg(Object val, int line) throws EvaluationException
+    {
+        if (!(val instanceof Integer) && !(val instanceof Double))
+        {
+            logError("Integer or real expected.", line);
+            throw new EvaluationException();
+        }
+        if (val instanceof Integer)
+            return -1 * (Integer) val;
+        return -1 * (Double) val;
+    }
+
+    /**
+     * Get the empty list.
+     *
+     * @return the empty list.
+     */
+    public static Object emptyList()
+    {
+        return ListValue.EMPTY;
+    }
+
+    /**
+     * Starts a list literal with its first element.
+     *
+     * @param first the first element.
+     * @param line  the line of the list literal.
+     * @return the builder of the new list.
+     * @throws EvaluationException if the element can not be in a list.
+     */
+    public static Object listFirst(Object first, int line)
+            throws EvaluationException
+    {
+        ListValue.Builder lst = new ListValue.Builder();
+        if (first instanceof Integer || first instanceof Double
+                || first instanceof Boolean)
+            lst.add(first);
+        else if (first instanceof ListValue)
+        {
+            logError("nested lists not supported.", line);
+            throw new EvaluationException();
+        }
+        else
+        {
+            logError("unknown list type.", line);
+            throw new EvaluationException();
+        }
+        return lst;
+    }
+
+    /**
+     * Adds the next element of a list literal.
+     *
+     * @param lst  the builder of the list.
+     * @param val  the element.
+     * @param line the line of the list literal.
+     * @return the builder.
+     * @throws EvaluationException if the element does not fit the list.
+     */
+    public static Object listAdd(Object lst, Object val, int line)
+            throws EvaluationException
+    {
+        ListValue.Builder theList = (ListValue.Builder) lst;
+        if (!(val instanceof Integer) && !(val instanceof Double)
+                && !(val instanceof ListValue)
+                && !(val instanceof Boolean))
+        {
+            logError("unknown element type.", line);
+            throw new EvaluationException();
+        }
+
+        if (theList.first().getClass() != val.getClass())
+        {
+            logError("Mixed mode list not supported.", line);
+            throw new EvaluationException();
+        }
+        return theList.add(val);
+    }
+
+    /**
+     * Finishes a list literal.
+     *
+     * @param lst the builder of the list.
+     * @return the list.
+     */
+    public static Object listEnd(Object lst)
+    {
+        return ((ListValue.Builder) lst).build();
+    }
+
+    /**
+     * Get the first element of a list.
+     */
+    public static Object head(Object val, int line) throws EvaluationException
+    {
+        if (!(val instanceof ListValue))
+        {
+            logError("list expected.", line);
+            return null;
+        }
+
+        ListValue lst = (ListValue) val;
+        if (lst.isEmpty())
+        {
+            logError("empty list.", line);
+            throw new EvaluationException();
+        }
+        return lst.head();
+    }
+
+    /**
+     * Get all but the first element of a list.
+     */
+    public static Object tail(Object val, int line) throws EvaluationException
+    {
+        if (!(val instanceof ListValue))
+        {
+            logError("list expected.", line);
+            throw new EvaluationException();
+        }
+
+        ListValue lst = (ListValue) val;
+        if (lst.isEmpty())
+        {
+            logError("can't find tail of list.", line);
+            throw new EvaluationException();
+        }
+        return lst.tail();
+    }
+
+    /**
+     * Get the length of a list.
+     */
+    public static Object len(Object val, int line) throws EvaluationException
+    {
+        if (!(val instanceof ListValue))
+        {
+            logError("Linked list expected.", line);
+            throw new EvaluationException();
+        }
+        return ((ListValue) val).size();
+    }
+
+    /**
+     * Get the element of a list at an index.
+     */
+    public static Object nth(Object index, Object val, int line)
+            throws EvaluationException
+    {
+        if (!(val instanceof ListValue))
+        {
+            logError("list expected.", line);
+            throw new EvaluationException();
+        }
+        if (!(index instanceof Integer))
+        {
+            logError("integer index expected.", line);
+            throw new EvaluationException();
+        }
+
+        ListValue lst = (ListValue) val;
+        int i = (Integer) index;
+        if (i < 0 || i >= lst.size())
+        {
+            logError("index " + i + " out of range.", line);
+            throw new EvaluationException();
+        }
+        return lst.get(i);
+    }
+
+    /**
+     * Get the first elements of a list.
+     */
+    public static Object take(Object count, Object val, int line)
+            throws EvaluationException
+    {
+        return slice(count, val, line).take((Integer) count);
+    }
+
+    /**
+     * Get a list without its first elements.
+     */
+    public static Object drop(Object count, Object val, int line)
+            throws EvaluationException
+    {
+        return slice(count, val, line).drop((Integer) count);
+    }
+
+    /**
+     * Check the arguments of take and drop.
+     */
+    private static ListValue slice(Object count, Object val, int line)
+            throws EvaluationException
+    {
+        if (!(val instanceof ListValue))
+        {
+            logError("list expected.", line);
+            throw new EvaluationException();
+        }
+        if (!(count instanceof Integer))
+        {
+            logError("integer count expected.", line);
+            throw new EvaluationException();
+        }
+        return (ListValue) val;
+    }
+
+    /**
+     * Make sure the value in function position of an application is a
+     * function.
+     *
+     * @param f    the value.
+     * @param line the line of the application.
+     * @return the function.
+     * @throws EvaluationException if the value is not a function.
+     */
+    public static Object function(Object f, int line)
+            throws EvaluationException
+    {
+        if (!(f instanceof Applicable))
+            throw new EvaluationException();
+        return f;
+    }
+
+    /**
+     * Applies a function to an argument.
+     *
+     * @param f   the function.
+     * @param arg the argument.
+     * @return the result of the application.
+     * @throws EvaluationException if the evaluation of the body fails.
+     */
+    public static Object apply(Object f, Object arg)
+            throws EvaluationException
+    {
+        return ((Applicable) f).apply(arg);
+    }
+
+    /**
+     * Builds the pending call for an application in tail position. The
+     * closure running the enclosing body makes the call.
+     *
+     * @param f   the function.
+     * @param arg the argument.
+     * @return the pending call.
+     */
+    public static Object tailCall(Object f, Object arg)
+    {
+        return new TailCall((Applicable) f, arg);
+    }
+
+    /**
+     * Make sure the first argument of map is a function.
+     */
+    public static Object mapFunction(Object f, int line)
+            throws EvaluationException
+    {
+        if (!(f instanceof Applicable))
+        {
+            logError("map: first argument must be a function.", line);
+            throw new EvaluationException();
+        }
+        return f;
+    }
+
+    /**
+     * Applies a function to every element of a list.
+     */
+    public static Object map(Object f, Object lst, int line)
+            throws EvaluationException
+    {
+        if (!(lst instanceof ListValue))
+        {
+            logError("map: second argument must be a list.", line);
+            throw new EvaluationException();
+        }
+
+        return ParallelMap.map((Applicable) f, (ListValue) lst);
+    }
+
+    /**
+     * Make sure the first argument of a fold is a function.
+     */
+    public static Object foldFunction(Object f, int line)
+            throws EvaluationException
+    {
+        if (!(f instanceof Applicable))
+        {
+            logError("fold: first argument must be a function.", line);
+            throw new EvaluationException();
+        }
+        return f;
+    }
+
+    /**
+     * Folds a list from the left.
+     */
+    public static Object foldl(Object f, Object acc, Object lst, int line)
+            throws EvaluationException
+    {
+        ListValue xs = foldList(lst, line);
+        for (Object elem : xs)
+            acc = applyTwo(f, acc, elem, line);
+        return acc;
+    }
+
+    /**
+     * Folds a list from the right.
+     */
+    public static Object foldr(Object f, Object acc, Object lst, int line)
+            throws EvaluationException
+    {
+        Iterator<Object> elems = foldList(lst, line).reverseIterator();
+        while (elems.hasNext())
+            acc = applyTwo(f, elems.next(), acc, line);
+        return acc;
+    }
+
+    /**
+     * Folds a list with an associative function. Long lists are reduced in
+     * parallel; reals only when the associativity was asserted by
+     * {@code pfold}, since the grouping changes how their sums round.
+     */
+    public static Object reduce(Object f, Object acc, Object lst, int mode,
+            int line) throws EvaluationException
+    {
+        ListValue xs = foldList(lst, line);
+        boolean right = (mode & FOLD_RIGHT) != 0;
+        if (ParallelMap.isParallel(xs.size())
+                && ((mode & FOLD_ASSERTED) != 0 || !(acc instanceof Double)))
+        {
+            Object all = ParallelMap.reduce(
+                    (left, rest) -> applyTwo(f, left, rest, line), xs);
+            return right ? applyTwo(f, all, acc, line)
+                    : applyTwo(f, acc, all, line);
+        }
+        return right ? foldr(f, acc, lst, line) : foldl(f, acc, lst, line);
+    }
+
+    private static ListValue foldList(Object lst, int line)
+            throws EvaluationException
+    {
+        if (!(lst instanceof ListValue))
+        {
+            logError("fold: third argument must be a list.", line);
+            throw new EvaluationException();
+        }
+        return (ListValue) lst;
+    }
+
+    /**
+     * Applies a curried function to two arguments.
+     */
+    private static Object applyTwo(Object f, Object arg1, Object arg2,
+            int line) throws EvaluationException
+    {
+        Object first = apply(f, arg1);
+        if (!(first instanceof Applicable))
+        {
+            logError("fold: function must take two arguments (curried).",
+                    line);
+            throw new EvaluationException();
+        }
+        return apply(first, arg2);
+    }
+}
@@ -16,61 +16,213 @@
  */
 package environment;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Set;
 
 import lexer.Token;
 
 /**
- * A simple representation of an executional environment.
- * 
+ * A simple representation of an executional environment. Each function
+ * activation gets an array-backed frame whose slots hold the parameter and
+ * the let-bound variables, along with the values its closure captured. The
+ * resolver addresses both by index. The root environment holds the named
+ * top-level values in a persistent map, so a copy of the environment is a
+ * constant time snapshot.
+ *
  * @author Zach Kissel
  */
 public class Environment
 {
-    private HashMap<String, Object> env;
+    private PersistentMap<String, Object> env; // The named (top-level) values.
+    private Environment root;                  // The frame holding the names.
+    private Environment parent;                // The enclosing frame.
+    private Token[] names;                     // The names of the slots.
+    private Object[] slots;                    // The values of the slots.
+    private Object[] captured;                 // The captured values.
 
     /**
      * Sets up the initial environment.
      */
     public Environment()
     {
-        env = new HashMap<>();
+        env = PersistentMap.empty();
+        root = this;
+        parent = null;
+        names = new Token[0];
+        slots = new Object[0];
+        captured = slots;
+    }
+
+    /**
+     * Sets up a new frame whose enclosing frame is {@code parent}.
+     *
+     * @param parent the enclosing frame.
+     * @param names  the names of the slots in the frame.
+     */
+    public Environment(Environment parent, Token[] names)
+    {
+        this(parent, names, parent.captured);
+    }
+
+    /**
+     * Sets up a new frame for a closure activation.
+     *
+     * @param parent   the enclosing frame.
+     * @param names    the names of the slots in the frame.
+     * @param captured the values captured by the closure.
+     */
+    public Environment(Environment parent, Token[] names, Object[] captured)
+    {
+        this.env = null;
+        this.root = parent.root;
+        this.parent = parent;
+        this.names = names;
+        this.slots = new Object[names.length];
+        this.captured = captured;
     }
 
     /**
      * Returns the evironment value associated with a token.
-     * 
+     *
      * @param tok the token to look up the value of.
      * @return the value of {@code tok} in the environment. A value of null is
      *         returned if the token is not in the environment.
      */
     public Object lookup(Token tok)
     {
-        return env.get(tok.getValue());
+        for (Environment frame = this; frame != null; frame = frame.parent)
+            for (int i = frame.names.length - 1; i >= 0; i--)
+                if (frame.names[i].getValue().equals(tok.getValue())
+                        && frame.slots[i] != null)
+                    return frame.slots[i];
+        return root.env.get(tok.getValue());
+    }
+
+    /**
+     * Returns the value stored in slot {@code slot} of this frame.
+     *
+     * @param slot the slot.
+     * @return the value in the slot or null if the slot has not been set.
+     */
+    public Object lookupLocal(int slot)
+    {
+        return slots[slot];
+    }
+
+    /**
+     * Returns the captured value at {@code index}.
+     *
+     * @param index the capture index.
+     * @return the captured value.
+     */
+    public Object lookupCaptured(int index)
+    {
+        return captured[index];
+    }
+
+    /**
+     * Returns the top-level environment of this frame.
+     *
+     * @return the environment holding the named values.
+     */
+    public Environment getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Returns the top-level value associated with a token.
+     *
+     * @param tok the token to look up the value of.
+     * @return the value of {@code tok} or null if it has no top-level value.
+     */
+    public Object lookupGlobal(Token tok)
+    {
+        return root.env.get(tok.getValue());
     }
 
     /**
      * Update the environment such that token {@code tok} has the given value
      * {@code val}.
-     * 
+     *
      * @param tok the token to update.
      * @param val the value to associate with the token.
      */
     public void updateEnvironment(Token tok, Object val)
     {
-        if (env.replace(tok.getValue(), val) == null)
-            env.put(tok.getValue(), val);
+        for (int i = names.length - 1; i >= 0; i--)
+            if (names[i].getValue().equals(tok.getValue()))
+            {
+                slots[i] = val;
+                return;
+            }
+
+        // Only the path to the entry is copied, any snapshot taken earlier
+        // keeps seeing the old value.
+        root.env = root.env.put(tok.getValue(), val);
+    }
+
+    /**
+     * Binds the top-level name {@code tok} to {@code val}. The slots of the
+     * frames are not looked at, a top-level let of the same name does not
+     * hide the binding.
+     *
+     * @param tok the token to bind.
+     * @param val the value to associate with the token.
+     */
+    public void updateGlobal(Token tok, Object val)
+    {
+        root.env = root.env.put(tok.getValue(), val);
+    }
+
+    /**
+     * Update slot {@code slot} of this frame to hold {@code val}.
+     *
+     * @param slot the slot to update.
+     * @param val  the value to store in the slot.
+     */
+    public void updateEnvironment(int slot, Object val)
+    {
+        slots[slot] = val;
+    }
+
+    /**
+     * Clears the slots of this frame so it can hold a new activation of the
+     * same function.
+     */
+    public void reset()
+    {
+        Arrays.fill(slots, null);
+    }
+
+    /**
+     * Get the names of all of the top-level values.
+     *
+     * @return the set of top-level names.
+     */
+    public Set<String> getKnownNames()
+    {
+        return root.env.keySet();
     }
 
     /**
-     * Makes a copy of the current environment.
-     * 
+     * Makes a copy of the current environment. The named values are shared
+     * with the original until either side is updated, so the cost of a copy
+     * does not depend on how many values are in scope.
+     *
      * @return a copy of the environment.
      */
     public Environment copy()
     {
         Environment newEnv = new Environment();
-        newEnv.env.putAll(env);
+        newEnv.env = root.env;
+        if (root != this)
+        {
+            newEnv.parent = parent;
+            newEnv.names = names;
+            newEnv.slots = slots.clone();
+            newEnv.captured = captured;
+        }
         return newEnv;
     }
 }
@@ -0,0 +1,381 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package environment;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A persistent hash array mapped trie. Updates never modify an existing map,
+ * instead they copy the path from the root to the changed entry and share
+ * everything else. This makes taking a snapshot of a map free.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ * @author Zach Kissel
+ */
+public final class PersistentMap<K, V>
+{
+    private static final int BITS = 5;              // Hash bits per level.
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<Object, Object> EMPTY =
+            new PersistentMap<>(null, 0);
+
+    private final Node root;    // The root of the trie.
+    private final int size;     // The number of entries.
+
+    /**
+     * Constructs a map from a root node.
+     *
+     * @param root the root of the trie.
+     * @param size the number of entries in the trie.
+     */
+    private PersistentMap(Node root, int size)
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty map.
+     *
+     * @param <K> the type of the keys.
+     * @param <V> the type of the values.
+     * @return the empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty()
+    {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Get the value associated with a key.
+     *
+     * @param key the key to look up.
+     * @return the value associated with {@code key} or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key)
+    {
+        if (root == null)
+            return null;
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /**
+     * Determines if the map has an entry for a key.
+     *
+     * @param key the key to check.
+     * @return true if {@code key} has an entry; otherwise, false.
+     */
+    public boolean containsKey(K key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key the key.
+     * @param val the value to associate with {@code key}.
+     * @return a new map with the association, this map is left unchanged.
+     */
+    public PersistentMap<K, V> put(K key, V val)
+    {
+        Node start = (root == null) ? BitmapNode.EMPTY_NODE : root;
+        boolean[] added = new boolean[1];
+        Node newRoot = start.assoc(0, hash(key), key, val, added);
+        if (newRoot == root)
+            return this;
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Get the number of entries in the map.
+     *
+     * @return the number of entries.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Get the set of keys in the map. The set is a copy.
+     *
+     * @return the keys of the map.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<K> keySet()
+    {
+        HashSet<K> keys = new HashSet<>();
+        if (root != null)
+            root.collectKeys((Set<Object>) keys);
+        return keys;
+    }
+
+    /**
+     * Provides a string representing the map.
+     *
+     * @return a string representation of the map.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("{");
+        for (K key : keySet())
+        {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(key).append("=").append(get(key));
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * Spread the hash of a key so the low order bits are well mixed.
+     *
+     * @param key the key to hash.
+     * @return the hash of the key.
+     */
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A node of the trie.
+     */
+    private abstract static class Node
+    {
+        /**
+         * Find the value of a key in the subtrie.
+         *
+         * @param shift the number of hash bits consumed so far.
+         * @param hash  the hash of the key.
+         * @param key   the key.
+         * @return the value or null.
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * Associate a value with a key in the subtrie.
+         *
+         * @param shift the number of hash bits consumed so far.
+         * @param hash  the hash of the key.
+         * @param key   the key.
+         * @param val   the value.
+         * @param added set to true when a new entry was created.
+         * @return the new subtrie, or this node if nothing changed.
+         */
+        abstract Node assoc(int shift, int hash, Object key, Object val,
+                boolean[] added);
+
+        /**
+         * Add every key of the subtrie to {@code keys}.
+         *
+         * @param keys the set to add to.
+         */
+        abstract void collectKeys(Set<Object> keys);
+    }
+
+    /**
+     * An interior node. The bitmap records which of the 32 children are
+     * present, the array holds them densely as key/value pairs where a null
+     * key marks a sub node stored in the value position.
+     */
+    private static final class BitmapNode extends Node
+    {
+        static final BitmapNode EMPTY_NODE = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array)
+        {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit)
+        {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key)
+        {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return null;
+
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null)
+                return ((Node) v).find(shift + BITS, hash, key);
+            if (k == key || k.equals(key))
+                return v;
+            return null;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object val,
+                boolean[] added)
+        {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int idx = index(bit);
+
+            // The slot is free, so grow the node.
+            if ((bitmap & bit) == 0)
+            {
+                int n = Integer.bitCount(bitmap);
+                Object[] newArray = new Object[2 * (n + 1)];
+                System.arraycopy(array, 0, newArray, 0, 2 * idx);
+                newArray[2 * idx] = key;
+                newArray[2 * idx + 1] = val;
+                System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1),
+                        2 * (n - idx));
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+
+            // The slot holds a sub node.
+            if (k == null)
+            {
+                Node n = ((Node) v).assoc(shift + BITS, hash, key, val, added);
+                if (n == v)
+                    return this;
+                return new BitmapNode(bitmap, with(2 * idx + 1, n));
+            }
+
+            // The slot holds the key itself.
+            if (k == key || k.equals(key))
+            {
+                if (v == val)
+                    return this;
+                return new BitmapNode(bitmap, with(2 * idx + 1, val));
+            }
+
+            // The slot holds a different key, push both down a level.
+            added[0] = true;
+            Node sub = split(shift + BITS, k, v, hash, key, val);
+            Object[] newArray = with(2 * idx + 1, sub);
+            newArray[2 * idx] = null;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        void collectKeys(Set<Object> keys)
+        {
+            for (int i = 0; i < array.length; i += 2)
+                if (array[i] == null)
+                    ((Node) array[i + 1]).collectKeys(keys);
+                else
+                    keys.add(array[i]);
+        }
+
+        private Object[] with(int i, Object o)
+        {
+            Object[] newArray = array.clone();
+            newArray[i] = o;
+            return newArray;
+        }
+
+        /**
+         * Build the node holding two keys that collided at the level above.
+         */
+        private static Node split(int shift, Object k1, Object v1, int h2,
+                Object k2, Object v2)
+        {
+            int h1 = hash(k1);
+            if (h1 == h2)
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+
+            boolean[] ignored = new boolean[1];
+            return EMPTY_NODE.assoc(shift, h1, k1, v1, ignored)
+                    .assoc(shift, h2, k2, v2, ignored);
+        }
+    }
+
+    /**
+     * A leaf holding keys whose hashes are identical.
+     */
+    private static final class CollisionNode extends Node
+    {
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array)
+        {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key)
+        {
+            for (int i = 0; i < array.length; i += 2)
+                if (array[i].equals(key))
+                    return array[i + 1];
+            return null;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object val,
+                boolean[] added)
+        {
+            if (hash != this.hash)
+            {
+                // Nest this node beneath a bitmap node and try again.
+                int bit = 1 << ((this.hash >>> shift) & MASK);
+                return new BitmapNode(bit, new Object[] { null, this })
+                        .assoc(shift, hash, key, val, added);
+            }
+
+            for (int i = 0; i < array.length; i += 2)
+                if (array[i].equals(key))
+                {
+                    if (array[i + 1] == val)
+                        return this;
+                    Object[] newArray = array.clone();
+                    newArray[i + 1] = val;
+                    return new CollisionNode(hash, newArray);
+                }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = val;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        void collectKeys(Set<Object> keys)
+        {
+            for (int i = 0; i < array.length; i += 2)
+                keys.add(array[i]);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package environment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import lexer.Token;
+
+/**
+ * The compile time counterpart of an {@code Environment}. The resolver uses a
+ * chain of scopes to give every identifier an address. Each function body
+ * (and the top level of the program) gets its own scope; the parameter and
+ * the let expressions within it get slots in that scope's frame. A name bound
+ * by an enclosing function is a free variable of the function, it is
+ * recorded as a capture and its value is copied into the closure.
+ *
+ * @author Zach Kissel
+ */
+public class Scope
+{
+    /**
+     * The kind of a name held in a slot of the current frame.
+     */
+    public static final int LOCAL = 0;
+
+    /**
+     * The kind of a name captured by the closure of the current function.
+     */
+    public static final int CAPTURED = 1;
+
+    /**
+     * The kind of a name bound at the top level.
+     */
+    public static final int GLOBAL = -1;
+
+    /**
+     * The kind of a name that is not bound at all.
+     */
+    public static final int UNBOUND = -2;
+
+    /**
+     * The address of an identifier.
+     */
+    public static final class Address
+    {
+        private final int kind;     // LOCAL, CAPTURED, GLOBAL, or UNBOUND.
+        private final int index;    // The slot or capture index.
+
+        /**
+         * Constructs a new address.
+         *
+         * @param kind  the kind of address.
+         * @param index the slot or capture index.
+         */
+        public Address(int kind, int index)
+        {
+            this.kind = kind;
+            this.index = index;
+        }
+
+        /**
+         * Get the kind of the address.
+         *
+         * @return one of {@code LOCAL}, {@code CAPTURED}, {@code GLOBAL}, or
+         *         {@code UNBOUND}.
+         */
+        public int getKind()
+        {
+            return kind;
+        }
+
+        /**
+         * Get the slot or capture index of the address.
+         *
+         * @return the index.
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+    }
+
+    private Scope parent;                 // The enclosing function scope.
+    private HashSet<String> globals;      // The known top-level names.
+    private ArrayList<Token> slots;       // The names of the frame slots.
+    private ArrayList<Integer> uses;      // The uses of each slot.
+    private ArrayList<Integer> visible;   // The slots currently in scope.
+    private ArrayList<Token> captures;    // The free variables.
+    private ArrayList<Address> sources;   // Where the free variables live.
+
+    /**
+     * Sets up the global scope for the environment {@code env}.
+     *
+     * @param env the environment the program will be evaluated under.
+     */
+    public Scope(Environment env)
+    {
+        this.parent = null;
+        this.globals = new HashSet<>(env.getKnownNames());
+        this.slots = new ArrayList<>();
+        this.uses = new ArrayList<>();
+        this.visible = new ArrayList<>();
+        this.captures = new ArrayList<>();
+        this.sources = new ArrayList<>();
+    }
+
+    /**
+     * Sets up a new function scope nested in {@code parent}.
+     *
+     * @param parent the enclosing scope.
+     */
+    public Scope(Scope parent)
+    {
+        this.parent = parent;
+        this.globals = parent.globals;
+        this.slots = new ArrayList<>();
+        this.uses = new ArrayList<>();
+        this.visible = new ArrayList<>();
+        this.captures = new ArrayList<>();
+        this.sources = new ArrayList<>();
+    }
+
+    /**
+     * Declares a new top-level name.
+     *
+     * @param tok the name to declare.
+     */
+    public void declareGlobal(Token tok)
+    {
+        globals.add(tok.getValue());
+    }
+
+    /**
+     * Allocates a new slot for {@code tok} in this scope and brings it into
+     * scope.
+     *
+     * @param tok the name to bind.
+     * @return the slot the name was bound to.
+     */
+    public int declare(Token tok)
+    {
+        slots.add(tok);
+        uses.add(0);
+        visible.add(slots.size() - 1);
+        return slots.size() - 1;
+    }
+
+    /**
+     * Marks the current set of visible names so it can be restored with
+     * {@code release}.
+     *
+     * @return the mark.
+     */
+    public int mark()
+    {
+        return visible.size();
+    }
+
+    /**
+     * Takes the names declared since {@code mark} out of scope. Their slots
+     * are not reused.
+     *
+     * @param mark a value previously returned by {@code mark}.
+     */
+    public void release(int mark)
+    {
+        while (visible.size() > mark)
+            visible.remove(visible.size() - 1);
+    }
+
+    /**
+     * Get the names of the slots of this scope, this is the layout of the
+     * runtime frame.
+     *
+     * @return the slot names.
+     */
+    public Token[] getSlotNames()
+    {
+        return slots.toArray(new Token[slots.size()]);
+    }
+
+    /**
+     * Get the addresses, in the enclosing scope, of the free variables of
+     * this scope. The closure copies these values in this order.
+     *
+     * @return the capture sources.
+     */
+    public Address[] getCaptureSources()
+    {
+        return sources.toArray(new Address[sources.size()]);
+    }
+
+    /**
+     * Get the number of times the name of a slot was resolved. A use from a
+     * nested function counts as two since the function may run any number
+     * of times.
+     *
+     * @param slot the slot.
+     * @return the number of uses, two meaning two or more.
+     */
+    public int uses(int slot)
+    {
+        return Math.min(uses.get(slot), 2);
+    }
+
+    /**
+     * Resolves {@code tok} to its address in this scope. If the name is bound
+     * by an enclosing function it becomes a free variable of this scope (and
+     * of every scope in between).
+     *
+     * @param tok the identifier to resolve.
+     * @return the address of the identifier.
+     */
+    public Address resolve(Token tok)
+    {
+        return resolve(tok, 1);
+    }
+
+    /**
+     * Resolves {@code tok}, counting {@code weight} uses of the slot it is
+     * found in.
+     */
+    private Address resolve(Token tok, int weight)
+    {
+        for (int i = visible.size() - 1; i >= 0; i--)
+            if (slots.get(visible.get(i)).getValue().equals(tok.getValue()))
+            {
+                int slot = visible.get(i);
+                uses.set(slot, uses.get(slot) + weight);
+                return new Address(LOCAL, slot);
+            }
+
+        for (int i = 0; i < captures.size(); i++)
+            if (captures.get(i).getValue().equals(tok.getValue()))
+                return new Address(CAPTURED, i);
+
+        if (parent == null)
+            return new Address(globals.contains(tok.getValue()) ? GLOBAL
+                    : UNBOUND, -1);
+
+        Address outer = parent.resolve(tok, 2);
+        if (outer.kind != LOCAL && outer.kind != CAPTURED)
+            return outer;
+
+        captures.add(tok);
+        sources.add(outer);
+        return new Address(CAPTURED, captures.size() - 1);
+    }
+}
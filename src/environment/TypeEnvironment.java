@@ -16,15 +16,18 @@
  */
 package environment;
 
-import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeScheme;
 import ast.typesystem.types.VarType;
 import lexer.Token;
 
 /**
- * A simple representation of an type environment.
+ * A simple representation of an type environment. The types are held in a
+ * persistent map, so a copy of the environment for a new scope takes
+ * constant time no matter how many names are in scope.
  * 
  * @author Zach Kissel
  */
@@ -33,44 +36,59 @@ public class TypeEnvironment
     /**
      * A private inner class to maintain the serial number logic. It 
      * is responsible for maintaining the uniqueness of type variables.
+     * Environments forked for parallel checking share the generator, so
+     * the serial number is atomic.
      */
-    private class VarGenerator
+    private static final class VarGenerator
     {
-        private int currentSerialNumber;       // The last serial number used.
+        private final AtomicInteger currentSerialNumber; // The last serial
+                                                         // number used.
 
         /**
          * Initialize the variable generator.
          */
         public VarGenerator()
         {
-            currentSerialNumber = -1;
+            currentSerialNumber = new AtomicInteger(-1);
         }
 
         /**
          * Generate a new unique type variable.
+         * @param level the let level of the variable.
          * @return A new type variable with a unique serial number.
          */
-        public VarType getNextVar()
+        public VarType getNextVar(int level)
         {
-            currentSerialNumber++;
-            return new VarType(currentSerialNumber);
+            return new VarType(currentSerialNumber.incrementAndGet(), level);
         }
     }
 
+    /**
+     * The let level of a check. The copies of an environment made for the
+     * scopes of a check share it, a fork gets one of its own.
+     */
+    private static final class Level
+    {
+        private int current;        // The current let level.
+    }
+
     private VarGenerator gen;               // The type varaible generator.
-    private HashMap<String, Type> env;      // The environemnt
+    private Level level;                    // The let level.
+    private PersistentMap<String, TypeScheme> env; // The environemnt
 
     /**
      * Sets up the initial environment.
      */
     public TypeEnvironment()
     {
-        env = new HashMap<>();
+        env = PersistentMap.empty();
         gen = new VarGenerator();
+        level = new Level();
     }
 
     /**
-     * Returns the type associated with a token.
+     * Returns the type associated with a token. A name with a polymorphic
+     * type gets a fresh instance of the type at each lookup.
      * 
      * @param tok the token to look up the value of.
      * @return the type of {@code tok} in the environment. A value of null is
@@ -78,7 +96,35 @@ public class TypeEnvironment
      */
     public Type lookup(Token tok)
     {
-        return env.get(tok.getValue());
+        TypeScheme scheme = env.get(tok.getValue());
+        if (scheme == null)
+            return null;
+        return scheme.instantiate(this);
+    }
+
+    /**
+     * Returns the scheme of the type of {@code name}, without instantiating
+     * it.
+     * 
+     * @param name the name to look up.
+     * @return the scheme of {@code name} or null if it is not in the
+     *         environment.
+     */
+    public TypeScheme lookupScheme(String name)
+    {
+        return env.get(name);
+    }
+
+    /**
+     * Update the environment such that {@code name} has the scheme
+     * {@code scheme}.
+     * 
+     * @param name   the name to update.
+     * @param scheme the scheme to associate with the name.
+     */
+    public void updateEnvironment(String name, TypeScheme scheme)
+    {
+        env = env.put(name, scheme);
     }
 
     /**
@@ -86,7 +132,7 @@ public class TypeEnvironment
      */
     public void clearTenv()
     {
-        env.clear();
+        env = PersistentMap.empty();
     }
 
     /**
@@ -98,25 +144,74 @@ public class TypeEnvironment
      */
     public void updateEnvironment(Token tok, Type type)
     {
-        if (env.replace(tok.getValue(), type) == null)
-            env.put(tok.getValue(), type);
+        // Only the path to the entry is copied, copies made earlier keep
+        // seeing the old type.
+        env = env.put(tok.getValue(), new TypeScheme(type));
+    }
+
+    /**
+     * Update the environment such that token {@code tok} has the type
+     * {@code type} generalized. The type variables created since the last
+     * call to {@code enterLevel} that were not unified with a type from
+     * outside it become generic. Call {@code leaveLevel} first.
+     * 
+     * @param tok  the token to update.
+     * @param type the type to generalize.
+     */
+    public void generalize(Token tok, Type type)
+    {
+        env = env.put(tok.getValue(), TypeScheme.generalize(type, level.current));
+    }
+
+    /**
+     * Enters the level of a new let binding. The type variables made until
+     * the matching call to {@code leaveLevel} belong to the binding.
+     */
+    public void enterLevel()
+    {
+        level.current++;
+    }
+
+    /**
+     * Leaves the level of a let binding.
+     */
+    public void leaveLevel()
+    {
+        level.current--;
     }
 
     /**
-     * Makes a copy of the current environment.
+     * Makes a copy of the current environment. The types are shared with the
+     * original until either side is updated.
      * 
      * @return a copy of the environment.
      */
     public TypeEnvironment copy()
     {
         TypeEnvironment newEnv = new TypeEnvironment();
-        newEnv.env.putAll(env);
+        newEnv.env = env;
 
         // Don't make a copy of the variable generator since
         // we want to maintain the invariant that all type 
         // variables are unique across all copies of 
         // a given type environment.
         newEnv.gen = this.gen;
+        newEnv.level = this.level;
+        return newEnv;
+    }
+
+    /**
+     * Makes a copy of the current environment for a check that runs on
+     * another thread. The fork shares the variable generator but keeps its
+     * own let level, starting at the current one.
+     * 
+     * @return a fork of the environment.
+     */
+    public TypeEnvironment fork()
+    {
+        TypeEnvironment newEnv = copy();
+        newEnv.level = new Level();
+        newEnv.level.current = level.current;
         return newEnv;
     }
 
@@ -136,7 +231,7 @@ public class TypeEnvironment
      */
     public VarType getTypeVariable()
     {
-       return gen.getNextVar();
+       return gen.getNextVar(level.current);
     }
 
     /**
@@ -265,6 +265,7 @@ public class Lexer
         keywords.put("or", TokenType.OR);
         keywords.put("not", TokenType.NOT);
         keywords.put("val", TokenType.VAL);
+        keywords.put("memo", TokenType.MEMO);
         keywords.put("true", TokenType.TRUE);
         keywords.put("false", TokenType.FALSE);
         keywords.put("mod", TokenType.MOD);
@@ -276,9 +277,13 @@ public class Lexer
         keywords.put("then", TokenType.THEN);
         keywords.put("else", TokenType.ELSE);
         keywords.put("len", TokenType.LEN);
+        keywords.put("nth", TokenType.NTH);
+        keywords.put("take", TokenType.TAKE);
+        keywords.put("drop", TokenType.DROP);
         keywords.put("map", TokenType.MAP);
         keywords.put("foldl", TokenType.FOLDL);
         keywords.put("foldr", TokenType.FOLDR);
+        keywords.put("pfold", TokenType.PFOLD);
         keywords.put("fn", TokenType.FN);
     }
 
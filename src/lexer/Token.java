@@ -165,6 +165,8 @@ public class Token
             return "COMMENT";
         case VAL:
             return "VAL";
+        case MEMO:
+            return "MEMO";
         case ASSIGN:
             return "ASSIGN";
         case MOD:
@@ -141,6 +141,11 @@ public enum TokenType
      */
     VAL,
 
+    /**
+     * A memoized global value.
+     */
+    MEMO,
+
     /**
      * Modulus operation
      */
@@ -196,6 +201,21 @@ public enum TokenType
      */
     LEN,
 
+    /**
+     * The element of a list at an index.
+     */
+    NTH,
+
+    /**
+     * The first elements of a list.
+     */
+    TAKE,
+
+    /**
+     * A list without its first elements.
+     */
+    DROP,
+
     /**
      * Map over a list.
      */
@@ -211,6 +231,11 @@ public enum TokenType
      */
     FOLDR,
 
+    /**
+     * Fold over a list with an associative function.
+     */
+    PFOLD,
+
     /**
      * If Statement.
      */
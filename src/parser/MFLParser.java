@@ -31,8 +31,10 @@ import ast.nodes.LenNode;
 import ast.nodes.LetNode;
 import ast.nodes.ListNode;
 import ast.nodes.MapNode;
+import ast.nodes.NthNode;
 import ast.nodes.ProgNode;
 import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
 import ast.nodes.SyntaxNode;
 import ast.nodes.TailNode;
 import ast.nodes.TokenNode;
@@ -109,12 +111,17 @@ public class MFLParser extends Parser
     }
 
     /**
-     * this is <values> = val-def | expr
+     * this is <values> = [memo] val-def | expr
      */
     private SyntaxNode evalValues() throws ParseException
     {
+        if (checkMatch(TokenType.MEMO))
+        {
+            match(TokenType.VAL, "val");
+            return getGoodParse(handleValues(true));
+        }
         if (checkMatch(TokenType.VAL))
-            return getGoodParse(handleValues());
+            return getGoodParse(handleValues(false));
         else
             return getGoodParse(evalExpr());
     }
@@ -249,6 +256,7 @@ public class MFLParser extends Parser
      *   map f xs
      *   foldl f init xs
      *   foldr f init xs
+     *   pfold f init xs
      *   function application
      */
     private SyntaxNode evalFactor() throws ParseException
@@ -320,6 +328,21 @@ public class MFLParser extends Parser
             }
         }
 
+        // this is pfold f init xs, a left fold the user asserts is associative
+        if (checkMatch(TokenType.PFOLD))
+        {
+            // support both: pfold f init xs  and  pfold( f init xs )
+            boolean paren = tokenIs(TokenType.LPAREN);
+            if (paren)
+                match(TokenType.LPAREN, "(");
+            SyntaxNode func = getGoodParse(evalExpr());
+            SyntaxNode init = getGoodParse(evalExpr());
+            SyntaxNode lst  = getGoodParse(evalExpr());
+            if (paren)
+                match(TokenType.RPAREN, ")");
+            return new FoldNode(func, init, lst, false, true, getCurrLine());
+        }
+
         // this is unary minus
         if (checkMatch(TokenType.SUB))
         {
@@ -363,6 +386,45 @@ public class MFLParser extends Parser
             return null;
         }
 
+        // this is nth(index expr)
+        else if (checkMatch(TokenType.NTH))
+        {
+            if (match(TokenType.LPAREN, "("))
+            {
+                SyntaxNode idx = getGoodParse(evalExpr());
+                fact = getGoodParse(evalExpr());
+                if (match(TokenType.RPAREN, ")"))
+                    return new NthNode(idx, fact, getCurrLine());
+            }
+            return null;
+        }
+
+        // this is take(count expr)
+        else if (checkMatch(TokenType.TAKE))
+        {
+            if (match(TokenType.LPAREN, "("))
+            {
+                SyntaxNode count = getGoodParse(evalExpr());
+                fact = getGoodParse(evalExpr());
+                if (match(TokenType.RPAREN, ")"))
+                    return new SliceNode(count, fact, true, getCurrLine());
+            }
+            return null;
+        }
+
+        // this is drop(count expr)
+        else if (checkMatch(TokenType.DROP))
+        {
+            if (match(TokenType.LPAREN, "("))
+            {
+                SyntaxNode count = getGoodParse(evalExpr());
+                fact = getGoodParse(evalExpr());
+                if (match(TokenType.RPAREN, ")"))
+                    return new SliceNode(count, fact, false, getCurrLine());
+            }
+            return null;
+        }
+
         // this is list constructor
         else if (checkMatch(TokenType.LBRACK))
             return getGoodParse(evalListExpr());
@@ -458,8 +520,10 @@ public class MFLParser extends Parser
      *
      *   val x := expr
      *   val f x := expr    (sugar for val f := fn x -> expr)
+     *
+     * this is where memo val binds a function whose results are cached
      */
-    private SyntaxNode handleValues() throws ParseException
+    private SyntaxNode handleValues(boolean memo) throws ParseException
     {
         // this is the name being defined
         Token id = getCurrToken();
@@ -482,7 +546,7 @@ public class MFLParser extends Parser
             expr = new LambdaNode(param, expr, getCurrLine());
         }
 
-        return new ValNode(id, expr, getCurrLine());
+        return new ValNode(id, expr, memo, getCurrLine());
     }
 
     /**
@@ -0,0 +1,371 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import ast.nodes.SyntaxNode;
+import compiler.CompileException;
+import environment.Environment;
+import environment.Scope;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Builds the bytecode of one function. The syntax nodes assemble themselves
+ * by emitting instructions; the assembler tracks the depth of the operand
+ * stack and the number of frame slots, and fuses a load of a slot, an integer
+ * constant, and an arithmetic or relational operation into a single
+ * superinstruction. The constant pool, the top-level names, and the list of
+ * functions are shared by every assembler of a program.
+ *
+ * @author Zach Kissel
+ */
+public final class Assembler
+{
+    private final ArrayList<Object> constants;          // The constant pool.
+    private final HashMap<Object, Integer> constantIdx;
+    private final ArrayList<String> globals;            // Top-level names.
+    private final HashMap<String, Integer> globalIdx;
+    private final ArrayList<Prototype> functions;       // The lambdas.
+
+    private int[] code;         // The instructions.
+    private int length;         // The number of ints of code.
+    private int depth;          // The current stack depth, -1 if unreachable.
+    private int maxDepth;       // The deepest the stack gets.
+    private int frameSize;      // The number of frame slots used.
+    private int last;           // The start of the last instruction.
+    private int beforeLast;     // The start of the one before it.
+    private int lastLabel;      // The position of the last label placed.
+    private int[] labelPos;     // The position of each label.
+    private int[] labelDepth;   // The stack depth at each label.
+    private int labelCount;     // The number of labels.
+    private ArrayList<int[]> jumps; // The operand and label of each jump.
+
+    /**
+     * Constructs the assembler for the top level of a program.
+     */
+    private Assembler()
+    {
+        this.constants = new ArrayList<>();
+        this.constantIdx = new HashMap<>();
+        this.globals = new ArrayList<>();
+        this.globalIdx = new HashMap<>();
+        this.functions = new ArrayList<>();
+        reset();
+    }
+
+    /**
+     * Constructs the assembler for a function nested in {@code outer}.
+     *
+     * @param outer the assembler of the enclosing function.
+     */
+    private Assembler(Assembler outer)
+    {
+        this.constants = outer.constants;
+        this.constantIdx = outer.constantIdx;
+        this.globals = outer.globals;
+        this.globalIdx = outer.globalIdx;
+        this.functions = outer.functions;
+        reset();
+    }
+
+    /**
+     * Assembles the program rooted at {@code root}. The tree must already be
+     * resolved. The top-level values of {@code env} are the initial values of
+     * every run of the program.
+     *
+     * @param root the root of the syntax tree.
+     * @param env  the environment the program is compiled against.
+     * @return the program.
+     * @throws CompileException if the program can not be assembled.
+     */
+    public static Program assemble(SyntaxNode root, Environment env)
+            throws CompileException
+    {
+        Assembler asm = new Assembler();
+        for (String name : env.getKnownNames())
+            asm.global(name);
+
+        root.assemble(asm);
+        asm.emit(Opcode.RETURN);
+        Prototype main = asm.finish(new Scope.Address[0], null);
+
+        Object[] initial = new Object[asm.globals.size()];
+        for (int i = 0; i < initial.length; i++)
+            initial[i] = env.lookupGlobal(new Token(TokenType.ID,
+                    asm.globals.get(i)));
+        return new Program(main,
+                asm.functions.toArray(new Prototype[asm.functions.size()]),
+                asm.constants.toArray(), initial);
+    }
+
+    /**
+     * Get the index of a value in the constant pool.
+     *
+     * @param value the value.
+     * @return the index of the constant.
+     */
+    public int constant(Object value)
+    {
+        Integer idx = constantIdx.get(value);
+        if (idx == null)
+        {
+            idx = constants.size();
+            constants.add(value);
+            constantIdx.put(value, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Get the index of a top-level name in the array of top-level values.
+     *
+     * @param name the name.
+     * @return the index of the name.
+     */
+    public int global(String name)
+    {
+        Integer idx = globalIdx.get(name);
+        if (idx == null)
+        {
+            idx = globals.size();
+            globals.add(name);
+            globalIdx.put(name, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Emit an instruction.
+     *
+     * @param op       the opcode.
+     * @param operands the operands of the instruction.
+     */
+    public void emit(int op, int... operands)
+    {
+        if (isFusable(op) && fuse(op, operands[0]))
+            return;
+
+        if (op == Opcode.LOAD || op == Opcode.LET)
+            frameSize = Math.max(frameSize, operands[0] + 1);
+
+        beforeLast = last;
+        last = length;
+        append(op);
+        for (int operand : operands)
+            append(operand);
+        adjust(Opcode.stackEffect(op));
+    }
+
+    /**
+     * Create a new label.
+     *
+     * @return the label.
+     */
+    public int newLabel()
+    {
+        if (labelCount == labelPos.length)
+        {
+            labelPos = Arrays.copyOf(labelPos, 2 * labelCount);
+            labelDepth = Arrays.copyOf(labelDepth, 2 * labelCount);
+        }
+        labelPos[labelCount] = -1;
+        labelDepth[labelCount] = -1;
+        return labelCount++;
+    }
+
+    /**
+     * Emit a jump to a label. The target is the first operand of the
+     * instruction.
+     *
+     * @param op    either {@code JUMP} or {@code JUMP_IF_FALSE}.
+     * @param label the label to jump to.
+     * @param extra the operands following the target.
+     */
+    public void emitJump(int op, int label, int... extra)
+    {
+        beforeLast = last;
+        last = length;
+        append(op);
+        jumps.add(new int[] { length, label });
+        append(-1);
+        for (int operand : extra)
+            append(operand);
+        adjust(Opcode.stackEffect(op));
+
+        labelDepth[label] = depth;
+        if (op == Opcode.JUMP)
+            depth = -1;     // Nothing falls through a jump.
+    }
+
+    /**
+     * Place a label at the current position.
+     *
+     * @param label the label.
+     */
+    public void placeLabel(int label)
+    {
+        labelPos[label] = length;
+        lastLabel = length;
+        if (depth < 0)
+            depth = labelDepth[label];
+    }
+
+    /**
+     * Assemble {@code body} as a function of its own and emit the
+     * instruction building a closure for it.
+     *
+     * @param parameter the parameter of the lambda.
+     * @param body      the body of the lambda.
+     * @param captures  where the free variables live in this function.
+     * @throws CompileException if the body can not be assembled.
+     */
+    public void emitClosure(Token parameter, SyntaxNode body,
+            Scope.Address[] captures) throws CompileException
+    {
+        Assembler asm = new Assembler(this);
+        body.assemble(asm);
+        asm.emit(Opcode.RETURN);
+
+        functions.add(asm.finish(captures, parameter.getValue()));
+        emit(Opcode.CLOSURE, functions.size() - 1);
+    }
+
+    /**
+     * Start a new, empty function.
+     */
+    private void reset()
+    {
+        code = new int[32];
+        length = 0;
+        depth = 0;
+        maxDepth = 0;
+        frameSize = 1;          // The parameter is always in slot 0.
+        last = -1;
+        beforeLast = -1;
+        lastLabel = -1;
+        labelPos = new int[8];
+        labelDepth = new int[8];
+        labelCount = 0;
+        jumps = new ArrayList<>();
+    }
+
+    /**
+     * Resolve the jumps and package the code as a prototype.
+     */
+    private Prototype finish(Scope.Address[] captures, String parameter)
+            throws CompileException
+    {
+        for (int[] jump : jumps)
+        {
+            if (labelPos[jump[1]] < 0)
+                throw new CompileException("jump to an unplaced label.");
+            code[jump[0]] = labelPos[jump[1]];
+        }
+
+        int[] kinds = new int[captures.length];
+        int[] indices = new int[captures.length];
+        for (int i = 0; i < captures.length; i++)
+        {
+            kinds[i] = captures[i].getKind();
+            indices[i] = captures[i].getIndex();
+        }
+        return new Prototype(Arrays.copyOf(code, length), frameSize,
+                maxDepth, kinds, indices, parameter);
+    }
+
+    /**
+     * Determine if an operation has a superinstruction form.
+     */
+    private static boolean isFusable(int op)
+    {
+        return op == Opcode.ADD || op == Opcode.SUB || op == Opcode.MUL
+                || (op >= Opcode.LT && op <= Opcode.NEQ);
+    }
+
+    /**
+     * Replace {@code LOAD s; CONST k; op} by the superinstruction for
+     * {@code op} when {@code k} is an integer and nothing jumps between the
+     * instructions.
+     *
+     * @return true if the instructions were fused.
+     */
+    private boolean fuse(int op, int line)
+    {
+        if (beforeLast < 0 || lastLabel > beforeLast
+                || code[beforeLast] != Opcode.LOAD
+                || last != beforeLast + 4 || code[last] != Opcode.CONST
+                || !(constants.get(code[last + 1]) instanceof Integer))
+            return false;
+
+        int slot = code[beforeLast + 1];
+        int name = code[beforeLast + 2];
+        int k = code[last + 1];
+
+        length = beforeLast;
+        depth -= 2;
+        last = -1;
+        beforeLast = -1;
+        emit(superinstruction(op), slot, name, k, line);
+        return true;
+    }
+
+    /**
+     * Get the superinstruction taking a slot and an integer constant as the
+     * operands of {@code op}.
+     */
+    private static int superinstruction(int op)
+    {
+        switch (op)
+        {
+        case Opcode.ADD:
+            return Opcode.ADD_LI;
+        case Opcode.SUB:
+            return Opcode.SUB_LI;
+        case Opcode.MUL:
+            return Opcode.MUL_LI;
+        case Opcode.LT:
+            return Opcode.LT_LI;
+        case Opcode.LTE:
+            return Opcode.LTE_LI;
+        case Opcode.GT:
+            return Opcode.GT_LI;
+        case Opcode.GTE:
+            return Opcode.GTE_LI;
+        case Opcode.EQ:
+            return Opcode.EQ_LI;
+        default:
+            return Opcode.NEQ_LI;
+        }
+    }
+
+    private void append(int value)
+    {
+        if (length == code.length)
+            code = Arrays.copyOf(code, 2 * length);
+        code[length++] = value;
+    }
+
+    private void adjust(int delta)
+    {
+        depth += delta;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+/**
+ * The instructions of the MFL virtual machine. An instruction is an opcode
+ * followed by its operands in the same {@code int[]}. Operands named
+ * {@code line} give the source line used in error messages, operands named
+ * {@code name} are the constant pool index of the name of a variable.
+ *
+ * @author Zach Kissel
+ */
+public final class Opcode
+{
+    /** CONST k: push constant {@code k}. */
+    public static final int CONST = 0;
+    /** NULL: push null. */
+    public static final int NULL = 1;
+    /** POP: discard the top of the stack. */
+    public static final int POP = 2;
+    /** LOAD s name line: push frame slot {@code s}. */
+    public static final int LOAD = 3;
+    /** LOAD_CAPTURED i name line: push captured value {@code i}. */
+    public static final int LOAD_CAPTURED = 4;
+    /** LOAD_GLOBAL g name line: push top-level value {@code g}. */
+    public static final int LOAD_GLOBAL = 5;
+    /** UNDEFINED name line: report a reference to an unbound name. */
+    public static final int UNDEFINED = 6;
+    /** LET s name line: pop a value into frame slot {@code s}. */
+    public static final int LET = 7;
+    /** DEFINE g name line: bind top-level value {@code g}, push the name. */
+    public static final int DEFINE = 8;
+    /** ADD line. */
+    public static final int ADD = 9;
+    /** SUB line. */
+    public static final int SUB = 10;
+    /** MUL line. */
+    public static final int MUL = 11;
+    /** DIV line. */
+    public static final int DIV = 12;
+    /** MOD line. */
+    public static final int MOD = 13;
+    /** AND line. */
+    public static final int AND = 14;
+    /** OR line. */
+    public static final int OR = 15;
+    /** CONCAT line. */
+    public static final int CONCAT = 16;
+    /** LT line. */
+    public static final int LT = 17;
+    /** LTE line. */
+    public static final int LTE = 18;
+    /** GT line. */
+    public static final int GT = 19;
+    /** GTE line. */
+    public static final int GTE = 20;
+    /** EQ line. */
+    public static final int EQ = 21;
+    /** NEQ line. */
+    public static final int NEQ = 22;
+    /** NEG line. */
+    public static final int NEG = 23;
+    /** NOT line. */
+    public static final int NOT = 24;
+    /** HEAD line. */
+    public static final int HEAD = 25;
+    /** TAIL line. */
+    public static final int TAIL = 26;
+    /** LEN line. */
+    public static final int LEN = 27;
+    /** NIL: push a new empty list. */
+    public static final int NIL = 28;
+    /** LIST_FIRST line: replace the top value by a list holding it. */
+    public static final int LIST_FIRST = 29;
+    /** LIST_ADD line: pop a value and add it to the list below it. */
+    public static final int LIST_ADD = 30;
+    /** JUMP target: continue at {@code target}. */
+    public static final int JUMP = 31;
+    /** JUMP_IF_FALSE target line: pop a condition, jump if it is false. */
+    public static final int JUMP_IF_FALSE = 32;
+    /** CLOSURE f: push a closure of function {@code f}. */
+    public static final int CLOSURE = 33;
+    /** FUNCTION line: check the top of the stack is a function. */
+    public static final int FUNCTION = 34;
+    /** APPLY: pop an argument and a function, push the result. */
+    public static final int APPLY = 35;
+    /** MAP_FUNCTION line: check the first argument of map. */
+    public static final int MAP_FUNCTION = 36;
+    /** MAP line: pop a list and a function, push the mapped list. */
+    public static final int MAP = 37;
+    /** FOLD_FUNCTION line: check the first argument of a fold. */
+    public static final int FOLD_FUNCTION = 38;
+    /** FOLDL line: pop a list, an initial value, and a function. */
+    public static final int FOLDL = 39;
+    /** FOLDR line: pop a list, an initial value, and a function. */
+    public static final int FOLDR = 40;
+    /** RETURN: return the top of the stack. */
+    public static final int RETURN = 41;
+
+    // Superinstructions for a frame slot combined with an integer constant,
+    // the shape of loop counters and recursion (n - 1, n < 2, n = 0).
+
+    /** ADD_LI s name k line: push slot {@code s} + constant {@code k}. */
+    public static final int ADD_LI = 42;
+    /** SUB_LI s name k line: push slot {@code s} - constant {@code k}. */
+    public static final int SUB_LI = 43;
+    /** MUL_LI s name k line: push slot {@code s} * constant {@code k}. */
+    public static final int MUL_LI = 44;
+    /** LT_LI s name k line: push slot {@code s} &lt; constant {@code k}. */
+    public static final int LT_LI = 45;
+    /** LTE_LI s name k line: push slot {@code s} &lt;= constant {@code k}. */
+    public static final int LTE_LI = 46;
+    /** GT_LI s name k line: push slot {@code s} &gt; constant {@code k}. */
+    public static final int GT_LI = 47;
+    /** GTE_LI s name k line: push slot {@code s} &gt;= constant {@code k}. */
+    public static final int GTE_LI = 48;
+    /** EQ_LI s name k line: push slot {@code s} = constant {@code k}. */
+    public static final int EQ_LI = 49;
+    /** NEQ_LI s name k line: push slot {@code s} != constant {@code k}. */
+    public static final int NEQ_LI = 50;
+
+    /**
+     * TAIL_APPLY: pop an argument and a function and call the function in
+     * place of the current activation.
+     */
+    public static final int TAIL_APPLY = 51;
+
+    /** MEMO name: memoize the function on top of the stack. */
+    public static final int MEMO = 52;
+
+    /**
+     * REDUCE mode line: pop a list, an initial value, and an associative
+     * function and fold the list, in parallel when it is long enough. The
+     * mode holds the {@code RuntimeSupport.FOLD_*} flags.
+     */
+    public static final int REDUCE = 53;
+
+    /** LIST_END: replace the list being built by the finished list. */
+    public static final int LIST_END = 54;
+
+    /** NTH line: pop a list and an index, push the element at the index. */
+    public static final int NTH = 55;
+    /** TAKE line: pop a list and a count, push the first elements. */
+    public static final int TAKE = 56;
+    /** DROP line: pop a list and a count, push the rest of the list. */
+    public static final int DROP = 57;
+
+    private static final String[] NAMES = { "CONST", "NULL", "POP", "LOAD",
+            "LOAD_CAPTURED", "LOAD_GLOBAL", "UNDEFINED", "LET", "DEFINE",
+            "ADD", "SUB", "MUL", "DIV", "MOD", "AND", "OR", "CONCAT", "LT",
+            "LTE", "GT", "GTE", "EQ", "NEQ", "NEG", "NOT", "HEAD", "TAIL",
+            "LEN", "NIL", "LIST_FIRST", "LIST_ADD", "JUMP", "JUMP_IF_FALSE",
+            "CLOSURE", "FUNCTION", "APPLY", "MAP_FUNCTION", "MAP",
+            "FOLD_FUNCTION", "FOLDL", "FOLDR", "RETURN", "ADD_LI", "SUB_LI",
+            "MUL_LI", "LT_LI", "LTE_LI", "GT_LI", "GTE_LI", "EQ_LI",
+            "NEQ_LI", "TAIL_APPLY", "MEMO", "REDUCE", "LIST_END", "NTH",
+            "TAKE", "DROP" };
+
+    private static final int[] OPERANDS = { 1, 0, 0, 3, 3, 3, 2, 3, 3, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 1, 1, 1, 2,
+            1, 1, 0, 1, 1, 1, 1, 1, 0, 4, 4, 4, 4, 4, 4, 4, 4, 4, 0, 1, 2, 0,
+            1, 1, 1 };
+
+    private static final int[] STACK_EFFECT = { 1, 1, -1, 1, 1, 1, 1, -1, 0,
+            -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, 0, 0,
+            0, 0, 1, 0, -1, 0, -1, 1, 0, -1, 0, -1, 0, -2, -2, -1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, -1, 0, -2, 0, -1, -1, -1 };
+
+    private Opcode()
+    {
+    }
+
+    /**
+     * Get the name of an opcode.
+     *
+     * @param op the opcode.
+     * @return the name of the opcode.
+     */
+    public static String name(int op)
+    {
+        return NAMES[op];
+    }
+
+    /**
+     * Get the number of operands of an opcode.
+     *
+     * @param op the opcode.
+     * @return the number of operands that follow the opcode.
+     */
+    public static int operands(int op)
+    {
+        return OPERANDS[op];
+    }
+
+    /**
+     * Get the change in the stack depth caused by an opcode.
+     *
+     * @param op the opcode.
+     * @return the stack effect.
+     */
+    public static int stackEffect(int op)
+    {
+        return STACK_EFFECT[op];
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+import ast.EvaluationException;
+
+/**
+ * A program compiled to MFL bytecode. Each run starts from the top-level
+ * values the program was compiled against, so the program can be run as many
+ * times as needed.
+ *
+ * @author Zach Kissel
+ */
+public final class Program
+{
+    private final Prototype main;           // The top level.
+    private final Prototype[] functions;    // The lambdas.
+    private final Object[] constants;       // The constant pool.
+    private final Object[] initial;         // The initial top-level values.
+
+    /**
+     * Constructs a new program.
+     *
+     * @param main      the top level of the program.
+     * @param functions the lambdas of the program.
+     * @param constants the constant pool.
+     * @param initial   the values of the top-level names before the run.
+     */
+    Program(Prototype main, Prototype[] functions, Object[] constants,
+            Object[] initial)
+    {
+        this.main = main;
+        this.functions = functions;
+        this.constants = constants;
+        this.initial = initial;
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @return the value of the last expression of the program.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public Object run() throws EvaluationException
+    {
+        VirtualMachine vm = new VirtualMachine(functions, constants,
+                initial.clone());
+        return vm.execute(main, VirtualMachine.NO_VALUES, null);
+    }
+
+    /**
+     * Produces a listing of the instructions of the program.
+     *
+     * @return the listing.
+     */
+    public String disassemble()
+    {
+        StringBuilder sb = new StringBuilder();
+        list(sb, "main", main);
+        for (int i = 0; i < functions.length; i++)
+            list(sb, "function " + i + " (" + functions[i].parameter + ")",
+                    functions[i]);
+        return sb.toString();
+    }
+
+    /**
+     * List the instructions of one function.
+     */
+    private void list(StringBuilder sb, String title, Prototype fn)
+    {
+        sb.append(title).append(":\n");
+        int pc = 0;
+        while (pc < fn.code.length)
+        {
+            int op = fn.code[pc];
+            sb.append(String.format("%6d  %s", pc, Opcode.name(op)));
+            for (int i = 1; i <= Opcode.operands(op); i++)
+                sb.append(' ').append(fn.code[pc + i]);
+            if (op == Opcode.CONST)
+                sb.append("  ; ").append(constants[fn.code[pc + 1]]);
+            sb.append('\n');
+            pc += 1 + Opcode.operands(op);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+/**
+ * The compiled form of a function body (or of the top level of a program).
+ *
+ * @author Zach Kissel
+ */
+public final class Prototype
+{
+    final int[] code;           // The instructions.
+    final int frameSize;        // The number of frame slots.
+    final int maxStack;         // The deepest the operand stack gets.
+    final int[] captureKinds;   // LOCAL or CAPTURED for each free variable.
+    final int[] captureIndices; // Where each free variable lives.
+    final String parameter;     // The name of the parameter.
+
+    /**
+     * Constructs a new prototype.
+     *
+     * @param code           the instructions.
+     * @param frameSize      the number of frame slots.
+     * @param maxStack       the maximum depth of the operand stack.
+     * @param captureKinds   the kinds of the capture sources.
+     * @param captureIndices the indices of the capture sources.
+     * @param parameter      the name of the parameter.
+     */
+    Prototype(int[] code, int frameSize, int maxStack, int[] captureKinds,
+            int[] captureIndices, String parameter)
+    {
+        this.code = code;
+        this.frameSize = frameSize;
+        this.maxStack = maxStack;
+        this.captureKinds = captureKinds;
+        this.captureIndices = captureIndices;
+        this.parameter = parameter;
+    }
+}
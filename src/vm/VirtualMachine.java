@@ -0,0 +1,533 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+import java.util.Arrays;
+
+import ast.Applicable;
+import ast.EvaluationException;
+import ast.MemoChain;
+import ast.MemoFunction;
+import compiler.RuntimeSupport;
+import environment.Scope;
+
+/**
+ * A stack based virtual machine for MFL bytecode. Each activation of a
+ * function gets an array of frame slots and an operand stack sized by the
+ * assembler; the main loop dispatches with a single switch over the opcodes.
+ * The operations on values are shared with the JVM compiler so every backend
+ * reports the same errors.
+ *
+ * @author Zach Kissel
+ */
+public final class VirtualMachine
+{
+    /**
+     * The captured values of a closure without free variables.
+     */
+    static final Object[] NO_VALUES = new Object[0];
+
+    private final Prototype[] functions;    // The lambdas of the program.
+    private final Object[] constants;       // The constant pool.
+    private final Object[] globals;         // The top-level values.
+
+    /**
+     * Constructs a machine for one run of a program.
+     *
+     * @param functions the lambdas of the program.
+     * @param constants the constant pool.
+     * @param globals   the top-level values.
+     */
+    VirtualMachine(Prototype[] functions, Object[] constants,
+            Object[] globals)
+    {
+        this.functions = functions;
+        this.constants = constants;
+        this.globals = globals;
+    }
+
+    /**
+     * Executes a function.
+     *
+     * @param fn       the function.
+     * @param captured the values captured by the closure.
+     * @param arg      the argument, stored in slot 0.
+     * @return the value of the function.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    Object execute(Prototype fn, Object[] captured, Object arg)
+            throws EvaluationException
+    {
+        int[] code = fn.code;
+        final Object[] constants = this.constants;
+        Object[] locals = new Object[fn.frameSize];
+        Object[] stack = new Object[fn.maxStack];
+        int sp = 0;
+        int pc = 0;
+        Object lval;
+        Object rval;
+        MemoChain chain = null;     // The memoized functions tail called.
+
+        locals[0] = arg;
+        for (;;)
+        {
+            switch (code[pc])
+            {
+            case Opcode.CONST:
+                stack[sp++] = constants[code[pc + 1]];
+                pc += 2;
+                break;
+            case Opcode.NULL:
+                stack[sp++] = null;
+                pc += 1;
+                break;
+            case Opcode.POP:
+                sp--;
+                pc += 1;
+                break;
+            case Opcode.LOAD:
+                lval = locals[code[pc + 1]];
+                if (lval == null)
+                    lval = undefined(code[pc + 2], code[pc + 3]);
+                stack[sp++] = lval;
+                pc += 4;
+                break;
+            case Opcode.LOAD_CAPTURED:
+                lval = captured[code[pc + 1]];
+                if (lval == null)
+                    lval = undefined(code[pc + 2], code[pc + 3]);
+                stack[sp++] = lval;
+                pc += 4;
+                break;
+            case Opcode.LOAD_GLOBAL:
+                stack[sp++] = RuntimeSupport.global(globals, code[pc + 1],
+                        (String) constants[code[pc + 2]], code[pc + 3]);
+                pc += 4;
+                break;
+            case Opcode.UNDEFINED:
+                stack[sp++] = undefined(code[pc + 1], code[pc + 2]);
+                pc += 3;
+                break;
+            case Opcode.LET:
+                locals[code[pc + 1]] = RuntimeSupport.letValue(stack[--sp],
+                        (String) constants[code[pc + 2]], code[pc + 3]);
+                pc += 4;
+                break;
+            case Opcode.DEFINE:
+                stack[sp - 1] = RuntimeSupport.define(stack[sp - 1], globals,
+                        code[pc + 1], (String) constants[code[pc + 2]],
+                        code[pc + 3]);
+                pc += 4;
+                break;
+            case Opcode.MEMO:
+                stack[sp - 1] = RuntimeSupport.memoize(stack[sp - 1],
+                        (String) constants[code[pc + 1]]);
+                pc += 2;
+                break;
+            case Opcode.ADD:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.add(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.SUB:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.sub(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.MUL:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.mul(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.DIV:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.div(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.MOD:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.mod(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.AND:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.and(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.OR:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.or(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.CONCAT:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.concat(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.LT:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.lt(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.LTE:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.lte(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.GT:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.gt(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.GTE:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.gte(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.EQ:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.eq(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.NEQ:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.neq(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.NEG:
+                stack[sp - 1] = RuntimeSupport.neg(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.NOT:
+                stack[sp - 1] = RuntimeSupport.not(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.HEAD:
+                stack[sp - 1] = RuntimeSupport.head(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.TAIL:
+                stack[sp - 1] = RuntimeSupport.tail(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.LEN:
+                stack[sp - 1] = RuntimeSupport.len(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.NIL:
+                stack[sp++] = RuntimeSupport.emptyList();
+                pc += 1;
+                break;
+            case Opcode.LIST_FIRST:
+                stack[sp - 1] = RuntimeSupport.listFirst(stack[sp - 1],
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.LIST_END:
+                stack[sp - 1] = RuntimeSupport.listEnd(stack[sp - 1]);
+                pc += 1;
+                break;
+            case Opcode.LIST_ADD:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.listAdd(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.NTH:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.nth(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.TAKE:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.take(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.DROP:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.drop(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.JUMP:
+                pc = code[pc + 1];
+                break;
+            case Opcode.JUMP_IF_FALSE:
+                if (RuntimeSupport.truth(stack[--sp], code[pc + 2]))
+                    pc += 3;
+                else
+                    pc = code[pc + 1];
+                break;
+            case Opcode.CLOSURE:
+                stack[sp++] = makeClosure(functions[code[pc + 1]], locals,
+                        captured);
+                pc += 2;
+                break;
+            case Opcode.FUNCTION:
+                RuntimeSupport.function(stack[sp - 1], code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.APPLY:
+                rval = stack[--sp];
+                lval = stack[sp - 1];
+                if (lval instanceof VmClosure)
+                {
+                    VmClosure clo = (VmClosure) lval;
+                    stack[sp - 1] = clo.vm.execute(clo.function, clo.captured,
+                            rval);
+                }
+                else
+                    stack[sp - 1] = ((Applicable) lval).apply(rval);
+                pc += 1;
+                break;
+            case Opcode.TAIL_APPLY:
+                rval = stack[--sp];
+                lval = stack[sp - 1];
+
+                // A memoized function called in tail position runs here too.
+                if (lval instanceof MemoFunction)
+                {
+                    if (chain == null)
+                        chain = new MemoChain();
+                    lval = chain.enter((MemoFunction) lval, rval);
+                    if (lval == null)
+                        return MemoChain.finish(chain, chain.getCached());
+                }
+                if (!(lval instanceof VmClosure)
+                        || ((VmClosure) lval).vm != this)
+                {
+                    stack[sp - 1] = ((Applicable) lval).apply(rval);
+                    pc += 1;
+                    break;
+                }
+
+                // Run the callee in this activation, reusing the frame when
+                // the function calls itself.
+                VmClosure clo = (VmClosure) lval;
+                if (clo.function == fn)
+                    Arrays.fill(locals, null);
+                else
+                {
+                    fn = clo.function;
+                    code = fn.code;
+                    locals = new Object[fn.frameSize];
+                    stack = new Object[fn.maxStack];
+                }
+                captured = clo.captured;
+                locals[0] = rval;
+                sp = 0;
+                pc = 0;
+                break;
+            case Opcode.MAP_FUNCTION:
+                RuntimeSupport.mapFunction(stack[sp - 1], code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.MAP:
+                rval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.map(stack[sp - 1], rval,
+                        code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.FOLD_FUNCTION:
+                RuntimeSupport.foldFunction(stack[sp - 1], code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.FOLDL:
+                rval = stack[--sp];
+                lval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.foldl(stack[sp - 1], lval,
+                        rval, code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.FOLDR:
+                rval = stack[--sp];
+                lval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.foldr(stack[sp - 1], lval,
+                        rval, code[pc + 1]);
+                pc += 2;
+                break;
+            case Opcode.REDUCE:
+                rval = stack[--sp];
+                lval = stack[--sp];
+                stack[sp - 1] = RuntimeSupport.reduce(stack[sp - 1], lval,
+                        rval, code[pc + 1], code[pc + 2]);
+                pc += 3;
+                break;
+            case Opcode.RETURN:
+                return MemoChain.finish(chain, stack[sp - 1]);
+
+            // The superinstructions take the fast path when the slot holds an
+            // integer and fall back on the general operation otherwise.
+            case Opcode.ADD_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval + (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.add(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.SUB_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval - (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.sub(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.MUL_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval * (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.mul(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.LT_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval < (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.lt(lval, rval, code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.LTE_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval <= (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.lte(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.GT_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval > (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.gt(lval, rval, code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.GTE_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = (Integer) lval >= (Integer) rval;
+                else
+                    stack[sp++] = RuntimeSupport.gte(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.EQ_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = ((Integer) lval).intValue()
+                            == ((Integer) rval).intValue();
+                else
+                    stack[sp++] = RuntimeSupport.eq(lval, rval, code[pc + 4]);
+                pc += 5;
+                break;
+            case Opcode.NEQ_LI:
+                lval = local(locals, code, pc);
+                rval = constants[code[pc + 3]];
+                if (lval instanceof Integer)
+                    stack[sp++] = ((Integer) lval).intValue()
+                            != ((Integer) rval).intValue();
+                else
+                    stack[sp++] = RuntimeSupport.neq(lval, rval,
+                            code[pc + 4]);
+                pc += 5;
+                break;
+            default:
+                throw new IllegalStateException("bad opcode " + code[pc]
+                        + " at " + pc + ".");
+            }
+        }
+    }
+
+    /**
+     * Load the slot operand of a superinstruction.
+     */
+    private Object local(Object[] locals, int[] code, int pc)
+            throws EvaluationException
+    {
+        Object val = locals[code[pc + 1]];
+        if (val == null)
+            return undefined(code[pc + 2], code[pc + 4]);
+        return val;
+    }
+
+    /**
+     * Report a reference to a name without a value.
+     */
+    private Object undefined(int name, int line) throws EvaluationException
+    {
+        return RuntimeSupport.undefined((String) constants[name], line);
+    }
+
+    /**
+     * Build a closure of {@code fn}, copying its free variables from the
+     * current frame.
+     */
+    private VmClosure makeClosure(Prototype fn, Object[] locals,
+            Object[] captured)
+    {
+        int n = fn.captureKinds.length;
+        if (n == 0)
+            return new VmClosure(this, fn, NO_VALUES);
+
+        Object[] values = new Object[n];
+        for (int i = 0; i < n; i++)
+        {
+            if (fn.captureKinds[i] == Scope.LOCAL)
+                values[i] = locals[fn.captureIndices[i]];
+            else
+                values[i] = captured[fn.captureIndices[i]];
+        }
+        return new VmClosure(this, fn, values);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package vm;
+
+import ast.Applicable;
+import ast.EvaluationException;
+
+/**
+ * The runtime value of a lambda in the virtual machine.
+ *
+ * @author Zach Kissel
+ */
+public final class VmClosure implements Applicable
+{
+    final VirtualMachine vm;    // The machine running the program.
+    final Prototype function;   // The body of the lambda.
+    final Object[] captured;    // The values of the free variables.
+
+    /**
+     * Constructs a new closure.
+     *
+     * @param vm       the machine running the program.
+     * @param function the compiled body.
+     * @param captured the values of the free variables.
+     */
+    VmClosure(VirtualMachine vm, Prototype function, Object[] captured)
+    {
+        this.vm = vm;
+        this.function = function;
+        this.captured = captured;
+    }
+
+    @Override
+    public Object apply(Object arg) throws EvaluationException
+    {
+        return vm.execute(function, captured, arg);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "<closure " + function.parameter + " -> ... >";
+    }
+}
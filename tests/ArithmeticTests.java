@@ -70,4 +70,15 @@ public class ArithmeticTests extends LangTest
         runTypeTest("assocMultDivTest", "3.0 / 2.0 * 4.0;", "real");
         runEvalTest("assocMultDivTest", "3.0 / 2.0 * 4.0;", "6.0");
     }
+
+    /**
+     * An operation that first sees integers and then reals must still
+     * compute with reals.
+     */
+    @Test
+    public void specializationFallbackTest()
+    {
+        runEvalTest("specializationFallbackTest",
+                "val f := fn x -> x + x; val a := f(2); f(1.5);", "3.0");
+    }
 }
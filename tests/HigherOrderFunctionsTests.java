@@ -16,6 +16,7 @@
  *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 import org.junit.Test;
+import ast.ParallelMap;
 
 public class HigherOrderFunctionsTests extends LangTest
 {
@@ -73,4 +74,92 @@ public class HigherOrderFunctionsTests extends LangTest
                 "foldr((fn x -> fn y -> (x + y)/2.0) 54.0 [12.0, 4.0, 10.0, 6.0]);",
                 "12.0");
     }
+
+    /**
+     * Folds, maps, and lengths of a map are fused with the map; the result
+     * must be the same as building the mapped list.
+     */
+    @Test
+    public void fusedMaps()
+    {
+        runEvalTest("fusedMaps",
+                "map((fn x -> x * 2) map((fn x -> x + 1) [1, 2, 3]));",
+                "[4, 6, 8]");
+        runEvalTest("fusedMaps",
+                "foldl((fn x -> fn y -> 2*x + y) 4 "
+                        + "map((fn x -> x - 1) [2, 3, 4]));", "43");
+        runEvalTest("fusedMaps",
+                "foldr((fn x -> fn y -> x - y) 0 "
+                        + "map((fn x -> x * x) [1, 2, 3]));", "6");
+        runEvalTest("fusedMaps", "len(map((fn x -> x + 1) [1, 2, 3]));", "3");
+        runEvalTest("fusedMaps",
+                "val f := fn x -> foldl((fn a -> fn y -> a + y) x "
+                        + "map((fn y -> y * x) [x, 2])); f(3);", "18");
+    }
+
+    @Test
+    public void parallelMap()
+    {
+        ParallelMap.setParallelism(4);
+        ParallelMap.setThreshold(2);
+        try
+        {
+            runEvalTest("parallelMap",
+                    "map((fn x -> x * x) [1, 2, 3, 4, 5, 6, 7, 8, 9]);",
+                    "[1, 4, 9, 16, 25, 36, 49, 64, 81]");
+            runEvalTest("parallelMap",
+                    "val f := fn n -> if n < 2 then n else f(n - 1) + f(n - 2); "
+                            + "map(f [10, 11, 12, 13, 14, 15]);",
+                    "[55, 89, 144, 233, 377, 610]");
+            runEvalTest("parallelMap",
+                    "map((fn x -> hd(map((fn y -> y * x) [x, x, x]))) "
+                            + "[1, 2, 3, 4]);",
+                    "[1, 4, 9, 16]");
+            runEvalTest("parallelMap",
+                    "map((fn x -> let y := x + 1 in y * y) [1, 2, 3, 4]);",
+                    "[4, 9, 16, 25]");
+        }
+        finally
+        {
+            ParallelMap.setParallelism(1);
+            ParallelMap.setThreshold(1000);
+        }
+    }
+
+    @Test
+    public void parallelFold()
+    {
+        runTypeTest("parallelFold",
+                "pfold((fn a -> fn b -> a * b) 1 [1, 2, 3]);", "int");
+        runEvalTest("parallelFold",
+                "pfold((fn a -> fn b -> a * b) 1 [1, 2, 3, 4, 5]);", "120");
+
+        ParallelMap.setParallelism(4);
+        ParallelMap.setThreshold(2);
+        try
+        {
+            runEvalTest("parallelFold",
+                    "foldl((fn a -> fn b -> a + b) 10 "
+                            + "[1, 2, 3, 4, 5, 6, 7, 8, 9]);", "55");
+            runEvalTest("parallelFold",
+                    "foldr((fn x -> fn a -> x * a) 2 [1, 2, 3, 4, 5]);",
+                    "240");
+            runEvalTest("parallelFold",
+                    "foldl((fn a -> fn b -> a or b) false "
+                            + "[false, false, true, false]);", "true");
+            runEvalTest("parallelFold",
+                    "foldr((fn a -> fn b -> a - b) 0 [1, 2, 3, 4]);", "-2");
+            runEvalTest("parallelFold",
+                    "pfold((fn a -> fn b -> if a < b then b else a) 0 "
+                            + "[3, 9, 2, 7, 5, 1]);", "9");
+            runEvalTest("parallelFold",
+                    "foldl((fn a -> fn b -> a + b) 0 "
+                            + "map((fn x -> x * x) [1, 2, 3, 4]));", "30");
+        }
+        finally
+        {
+            ParallelMap.setParallelism(1);
+            ParallelMap.setThreshold(1000);
+        }
+    }
 }
@@ -16,6 +16,8 @@
  */
 import org.junit.Test;
 
+import ast.Memoizer;
+
 public class LambdaTests extends LangTest
 {
     /**
@@ -34,4 +36,124 @@ public class LambdaTests extends LangTest
         runTypeTest("curryTest", "((fn f -> fn x -> f(x)) (fn y -> y + 2))(3);", "int");
         runEvalTest("curryTest", "((fn f -> fn x -> f (x)) (fn y -> y + 2))(3);", "5");
     }
+
+    /**
+     * A closure sees the variables of every enclosing let and lambda, each
+     * level capturing what the levels inside it use.
+     */
+    @Test
+    public void nestedCaptureTest()
+    {
+        String prog = "let a := 1 in let b := 10 in "
+                + "(fn x -> fn y -> let c := 100 in "
+                + "(fn z -> a + b + c + x + y + z))(1000)(10000)(100000);";
+        runTypeTest("nestedCaptureTest", prog, "int");
+        runEvalTest("nestedCaptureTest", prog, "111111");
+
+        prog = "(fn a -> let b := a * 2 in fn c -> let d := c + b in "
+                + "fn e -> a + b + c + d + e)(1)(10)(100);";
+        runTypeTest("nestedCaptureTest", prog, "int");
+        runEvalTest("nestedCaptureTest", prog, "125");
+    }
+
+    /**
+     * A closure captures the binding in scope where it is written, not a
+     * binding of the same name made later or further in.
+     */
+    @Test
+    public void shadowedCaptureTest()
+    {
+        runEvalTest("shadowedCaptureTest",
+                "let x := 1 in let f := fn y -> x + y in "
+                        + "let x := 50 in f(x);", "51");
+        runEvalTest("shadowedCaptureTest",
+                "let x := 1 in (fn x -> fn y -> x + y)(20)(300);", "320");
+        runEvalTest("shadowedCaptureTest",
+                "(fn x -> let g := fn y -> fn x -> x + y in "
+                        + "(g(x))(7) + x)(5);", "17");
+        runEvalTest("shadowedCaptureTest",
+                "let x := 2 in let f := fn y -> let x := y * 10 in "
+                        + "fn z -> x + z in (f(3))(x);", "32");
+        runEvalTest("shadowedCaptureTest",
+                "val k := 4; let k := 40 in let f := fn y -> k + y in f(1);",
+                "41");
+    }
+
+    /**
+     * Calls in tail position must not grow the stack.
+     */
+    @Test
+    public void tailCallTest()
+    {
+        runEvalTest("tailCallTest",
+                "val count := fn n -> if n = 0 then 0 else count(n - 1); "
+                        + "count(200000);", "0");
+        runEvalTest("tailCallTest",
+                "val loop := fn n -> fn acc -> if n = 0 then acc "
+                        + "else let m := n - 1 in (loop(m))(acc + 2); "
+                        + "(loop(200000))(0);", "400000");
+    }
+
+    /**
+     * Calls in tail position must not grow the stack when the function
+     * called is memoized, and every call of the chain is cached.
+     */
+    @Test
+    public void memoTailCallTest()
+    {
+        try
+        {
+            Memoizer.setMemoizeAll(true);
+            runEvalTest("memoTailCallTest",
+                    "val loop n := if n = 0 then 0 else loop(n - 1); "
+                            + "loop(200000);", "0");
+            runEvalTest("memoTailCallTest",
+                    "val loop n := if n = 0 then 7 else loop(n - 1); "
+                            + "loop(200000) + loop(1000);", "14");
+        }
+        finally
+        {
+            Memoizer.setMemoizeAll(false);
+        }
+    }
+
+    /**
+     * Calls to small known functions are inlined, the names of the caller
+     * must not capture the names the inlined body uses.
+     */
+    @Test
+    public void inlineTest()
+    {
+        runEvalTest("inlineTest",
+                "val double := fn x -> x * 2; val k := 10; "
+                        + "val f := fn y -> let x := 1 in double(y + x); "
+                        + "f(3);", "8");
+        runEvalTest("inlineTest",
+                "val add := fn x -> fn y -> x + y; "
+                        + "val g := fn y -> (add(y))(1); g(4);", "5");
+        runEvalTest("inlineTest",
+                "val k := 10; val addK := fn x -> x + k; "
+                        + "val h := fn k -> addK(k); h(1);", "11");
+        runEvalTest("inlineTest",
+                "val twice := fn f -> fn x -> f(f(x)); "
+                        + "val inc := fn x -> x + 1; (twice(inc))(5);", "7");
+    }
+
+    /**
+     * Long chains of type variables bound to one another must resolve to
+     * the type at their end.
+     */
+    @Test
+    public void unifyChainTest()
+    {
+        StringBuilder prog = new StringBuilder("let f0 := fn y -> y + 1 in ");
+        for (int i = 1; i < 300; i++)
+            prog.append("let f" + i + " := fn y -> f" + (i - 1) + "(y) in ");
+        prog.append("f299(3);");
+
+        runTypeTest("unifyChainTest", prog.toString(), "int");
+        runEvalTest("unifyChainTest", prog.toString(), "4");
+        runTypeTest("unifyChainTest", "fn x -> fn y -> [x, y];",
+                "t0 -> t0 -> [ t0 ]");
+    }
 }
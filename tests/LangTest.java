@@ -16,12 +16,21 @@
  */
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import ast.EvaluationException;
 import ast.SyntaxTree;
+import ast.nodes.IncrementalChecker;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.ValNode;
+import ast.typesystem.types.Type;
 import ast.typesystem.TypeException;
+import compiler.CompileException;
+import compiler.CompiledProgram;
 import parser.ParseException;
 import parser.MFLParser;
+import vm.Program;
 
 /**
  * A super class for all language tests.
@@ -58,6 +67,126 @@ public class LangTest {
         }
 
         assertEquals(name + ":", expected, res.toString());
+        runCompiledTest(name, statement, expected);
+        runVmTest(name, statement, expected);
+        runLoweredTest(name, statement, expected);
+    }
+
+    /**
+     * Type check the expression so it is lowered to unboxed operations and
+     * check that evaluating it agrees with the interpreter. Expressions that
+     * do not type check are not lowered and are skipped.
+     * 
+     * @param name      the name of the test.
+     * @param statement the statement to evaluate.
+     * @param expected  the expected output of the test.
+     */
+    public void runLoweredTest(String name, String statement, String expected)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+        Object res = null;
+
+        try
+        {
+            ast.getType();
+        }
+        catch (TypeException ex)
+        {
+            return;
+        }
+
+        try
+        {
+            res = ast.evaluate();
+        }
+        catch (EvaluationException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+        }
+
+        assertEquals(name + " (lowered):", expected, res.toString());
+    }
+
+    /**
+     * Compile the expression to bytecode, run it twice, and check that both
+     * runs agree with the interpreter.
+     * 
+     * @param name      the name of the test.
+     * @param statement the statement to compile.
+     * @param expected  the expected output of the test.
+     */
+    public void runCompiledTest(String name, String statement, String expected)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+        Object res = null;
+
+        try
+        {
+            CompiledProgram prog = ast.compile();
+            res = prog.run();
+            assertEquals(name + " (compiled):", expected, res.toString());
+            res = prog.run();
+        }
+        catch (CompileException ex)
+        {
+            assertFalse(name + ": Unexpected Exception " + ex, true);
+        }
+        catch (EvaluationException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+        }
+
+        assertEquals(name + " (compiled):", expected, res.toString());
+    }
+
+    /**
+     * Assemble the expression to VM bytecode, run it twice, and check that
+     * both runs agree with the interpreter.
+     * 
+     * @param name      the name of the test.
+     * @param statement the statement to assemble.
+     * @param expected  the expected output of the test.
+     */
+    public void runVmTest(String name, String statement, String expected)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+        Object res = null;
+
+        try
+        {
+            Program prog = ast.assemble();
+            res = prog.run();
+            assertEquals(name + " (vm):", expected, res.toString());
+            res = prog.run();
+        }
+        catch (CompileException ex)
+        {
+            assertFalse(name + ": Unexpected Exception " + ex, true);
+        }
+        catch (EvaluationException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+        }
+
+        assertEquals(name + " (vm):", expected, res.toString());
     }
 
     /**
@@ -91,4 +220,85 @@ public class LangTest {
 
         assertEquals(name + ":", expected, res.toString());
     }
+
+    /**
+     * Type check the statement with the incremental checker {@code checker}
+     * and evaluate it. The check must infer exactly {@code inferred}
+     * definitions, the others are known to the checker.
+     * 
+     * @param name      the name of the test.
+     * @param checker   the incremental checker.
+     * @param statement the statement to evaluate.
+     * @param expected  the expected output of the test.
+     * @param inferred  the number of definitions the check infers.
+     */
+    public void runIncrementalTest(String name, IncrementalChecker checker,
+            String statement, String expected, int inferred)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+        Object res = null;
+
+        ast.setChecker(checker);
+        try
+        {
+            if (!ast.typeCheck())
+                assertFalse(name + ": Type check failed.", true);
+            res = ast.evaluate();
+        }
+        catch (EvaluationException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+            System.out.println(ex);
+        }
+
+        assertEquals(name + ": inferred", inferred, checker.getInferred());
+        assertEquals(name + ":", expected, res.toString());
+    }
+
+    /**
+     * Type check the statement and check the type recorded on the
+     * expression of its {@code index}-th definition. Getting the type of the
+     * checked tree must use the recorded types rather than infer them again.
+     * 
+     * @param name      the name of the test.
+     * @param statement the statement to check.
+     * @param index     the index of the definition.
+     * @param expected  the expected type of the expression.
+     */
+    public void runRecordedTypeTest(String name, String statement, int index,
+            String expected)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+
+        if (!ast.typeCheck())
+            assertFalse(name + ": Type check failed.", true);
+        ProgNode prog = (ProgNode) ast.getRootNode();
+        SyntaxNode expr =
+                ((ValNode) prog.getExpressions().get(index)).getExpression();
+        Type recorded = expr.getType();
+        assertEquals(name + ":", expected, String.valueOf(recorded));
+
+        try
+        {
+            ast.getType();
+        }
+        catch (TypeException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+        }
+        assertSame(name + " (not inferred again):", recorded, expr.getType());
+        assertEquals(name + ":", expected, String.valueOf(expr.getType()));
+    }
 }
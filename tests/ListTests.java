@@ -208,4 +208,114 @@ public class ListTests extends LangTest
         runEvalTest("nestedTlTest", "tl(tl([3, 4, 5]));",
                 "[5]");
     }
+
+    /**
+     * Concatenation builds a new list; constant lists are shared and must
+     * never change.
+     */
+    @Test
+    public void concatSharedListTest()
+    {
+        runEvalTest("concatSharedListTest",
+                "val f := fn x -> [1, 2] ++ [x]; val a := f(3); f(4);",
+                "[1, 2, 4]");
+        runEvalTest("concatSharedListTest",
+                "val xs := [1, 2]; val ys := xs ++ [3]; xs;", "[1, 2]");
+    }
+
+    /**
+     * Lists share their cells, a tail or a concatenation leaves the lists it
+     * came from as they were.
+     */
+    @Test
+    public void sharedCellsTest()
+    {
+        runEvalTest("sharedCellsTest",
+                "val xs := [1, 2, 3]; val ys := tl(xs) ++ xs; "
+                        + "[len(ys), hd(ys), len(xs), hd(xs)];",
+                "[5, 2, 3, 1]");
+        runEvalTest("sharedCellsTest",
+                "val range := fn n -> fn acc -> if n = 0 then acc "
+                        + "else (range(n - 1))([n] ++ acc); "
+                        + "val sum := fn l -> fn acc -> if len(l) = 0 "
+                        + "then acc else (sum(tl(l)))(acc + hd(l)); "
+                        + "(sum((range(20000))([])))(0);",
+                "200010000");
+    }
+
+    /**
+     * Tests that lists of ints, reals and bools, which are packed when they
+     * are built, behave like any other list.
+     */
+    @Test
+    public void packedListsTest()
+    {
+        runEvalTest("packedListsTest",
+                "val xs := [4, 5, 6]; [hd(tl(xs)), len(tl(tl(xs))), "
+                        + "hd(tl(xs ++ [7])), len([1] ++ xs)];",
+                "[5, 1, 5, 4]");
+        runEvalTest("packedListsTest",
+                "foldl((fn a -> fn b -> a + b) 1 map((fn x -> x * 2) "
+                        + "[1, 2, 3, 4]));",
+                "21");
+        runEvalTest("packedListsTest",
+                "foldr((fn a -> fn b -> a * b) 1.5 [2.0, 0.5, 4.0]);",
+                "6.0");
+        runEvalTest("packedListsTest",
+                "[foldl((fn a -> fn b -> a and b) true [true, false]), "
+                        + "hd(tl([false, true] ++ [false])), "
+                        + "foldr((fn a -> fn b -> a or b) false [false, true])];",
+                "[false, true, true]");
+    }
+
+    /**
+     * Tests indexing and slicing lists, including the long lists appending
+     * builds as vectors.
+     */
+    @Test
+    public void nthTakeDropTest()
+    {
+        runEvalTest("nthTakeDropTest",
+                "val xs := [1, 2, 3, 4, 5]; [nth(0 xs), nth(4 xs), "
+                        + "len(take(2 xs)), hd(drop(3 xs)), len(drop(9 xs)), "
+                        + "len(take(0 xs))];",
+                "[1, 5, 2, 4, 0, 0]");
+        runEvalTest("nthTakeDropTest",
+                "val build := fn n -> fn acc -> if n = 0 then acc "
+                        + "else (build(n - 1))(acc ++ [n]); "
+                        + "val xs := (build(2000))([]); val ys := xs ++ xs; "
+                        + "[len(ys), nth(1999 ys), nth(2000 ys), "
+                        + "hd(drop(2500 ys)), foldr((fn a -> fn b -> a - b) "
+                        + "0 take(3 drop(1999 ys)))];",
+                "[4000, 1, 2000, 1500, 0]");
+        runTypeTest("nthTakeDropTest", "nth(1 [true, false]);", "bool");
+        runTypeTest("nthTakeDropTest", "take(1 [1.5]);", "[ real ]");
+    }
+
+    /**
+     * Tests that lists a let binding uses once are reused in place without
+     * changing the lists other names still see.
+     */
+    @Test
+    public void reuseTest()
+    {
+        runEvalTest("reuseTest",
+                "val f := fn n -> let xs := map((fn x -> x + n) [1, 2, 3]) "
+                        + "in let ys := tl(map((fn x -> x * 2) xs)) "
+                        + "in ys ++ [n]; f(1);",
+                "[6, 8, 1]");
+        runEvalTest("reuseTest",
+                "val f := fn n -> let xs := [n, n + 1] in let ys := xs ++ xs "
+                        + "in map((fn x -> x > n) ys); f(1);",
+                "[false, true, false, true]");
+        runEvalTest("reuseTest",
+                "val f := fn n -> let xs := map((fn x -> x + n) [1, 2]) "
+                        + "in let ys := map((fn x -> x * 10) xs) "
+                        + "in xs ++ ys; f(1);",
+                "[2, 3, 20, 30]");
+        runEvalTest("reuseTest",
+                "val f := fn n -> let xs := map((fn x -> x + n) [1, 2]) "
+                        + "in let g := fn q -> xs in tl(xs) ++ g(0); f(1);",
+                "[3, 2, 3]");
+    }
 }
@@ -176,4 +176,16 @@ public class RelationalTests extends LangTest
         runTypeTest("simpleRealNotLTE", "3.1415 <= 3.0;", "bool");
         runEvalTest("simpleRealNotLTE", "3.1415 <= 3.0;", "false");
     }
+
+    /**
+     * A comparison that first sees integers and then reals must still
+     * compare reals.
+     */
+    @Test
+    public void specializationFallbackTest()
+    {
+        runEvalTest("specializationFallbackTest",
+                "val f := fn x -> fn y -> x < y; val g := f(1); val a := g(2); "
+                        + "val h := f(3.0); h(1.5);", "false");
+    }
 }
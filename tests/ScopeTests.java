@@ -66,4 +66,18 @@ public class ScopeTests extends LangTest
         runEvalTest("letWithIf", "let x := 7\nin if x mod 2 = 1 then\ntrue\nelse false;",
                 "true");
     }
+
+    /**
+     * A top-level let named like a val does not take the place of the val,
+     * functions defined before the let still see the val.
+     */
+    @Test
+    public void shadowValLetScope()
+    {
+        String prog = "val z := 1; val f := fn x -> z; let z := 100 in f(1);";
+        runTypeTest("shadowValLetScope", prog, "int");
+        runEvalTest("shadowValLetScope", prog, "1");
+        runEvalTest("shadowValLetScope", "val z := 1; let z := 100 in z;",
+                "100");
+    }
 }
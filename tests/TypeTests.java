@@ -0,0 +1,104 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import ast.typesystem.inferencer.Substitutions;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.TypeFactory;
+import ast.typesystem.types.VarType;
+
+public class TypeTests extends LangTest
+{
+    /**
+     * Test that list types over the same element type are the same object.
+     */
+    @Test
+    public void internListType()
+    {
+        VarType t = new VarType(0);
+        assertSame("internListType:", TypeFactory.listType(t),
+                TypeFactory.listType(t));
+        assertSame("internListType:",
+                TypeFactory.listType(TypeFactory.intType()),
+                TypeFactory.listType(TypeFactory.intType()));
+        assertSame("internListType:",
+                TypeFactory.listType(TypeFactory.listType(t)),
+                TypeFactory.listType(TypeFactory.listType(t)));
+    }
+
+    /**
+     * Test that function types with the same components are the same object
+     * and that distinct type variables give distinct types.
+     */
+    @Test
+    public void internFunType()
+    {
+        VarType a = new VarType(0);
+        VarType b = new VarType(0);
+        Type f = TypeFactory.funType(a, TypeFactory.listType(a));
+
+        assertSame("internFunType:", f,
+                TypeFactory.funType(a, TypeFactory.listType(a)));
+        assertSame("internFunType:",
+                TypeFactory.funType(TypeFactory.intType(), f),
+                TypeFactory.funType(TypeFactory.intType(),
+                        TypeFactory.funType(a, TypeFactory.listType(a))));
+        assertNotSame("internFunType:", f,
+                TypeFactory.funType(b, TypeFactory.listType(b)));
+    }
+
+    /**
+     * Test that applying substitutions that bind none of the variables of a
+     * type gives back the type itself.
+     */
+    @Test
+    public void applyUnbound()
+    {
+        Substitutions subst = new Substitutions();
+        VarType a = new VarType(0);
+        VarType b = new VarType(1);
+        Type f = TypeFactory.funType(a,
+                TypeFactory.funType(TypeFactory.listType(b), a));
+
+        assertSame("applyUnbound:", f, subst.apply(f));
+        assertSame("applyUnbound:", a, subst.apply(a));
+
+        subst.updateSubstitutions(new VarType(2), TypeFactory.intType());
+        assertSame("applyUnbound:", f, subst.apply(f));
+    }
+
+    /**
+     * Test the types recorded on the nodes by the type checker, including
+     * types whose variables are only fixed by a later unification.
+     */
+    @Test
+    public void recordedType()
+    {
+        runRecordedTypeTest("recordedType", "val f := fn x -> x + 1;", 0,
+                "int -> int");
+        runRecordedTypeTest("recordedType",
+                "val g := fn x -> fn y -> if y < 1 then x else [y];", 0,
+                "[ int ] -> int -> [ int ]");
+        runRecordedTypeTest("recordedType",
+                "val id := fn x -> x; val n := id(3);", 1, "int");
+        runRecordedTypeTest("recordedType", "val id := fn x -> x;", 0,
+                "t0 -> t0");
+    }
+}
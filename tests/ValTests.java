@@ -16,6 +16,11 @@
  */
 import org.junit.Test;
 
+import ast.MemoCache;
+import ast.Memoizer;
+import ast.ParallelMap;
+import ast.nodes.IncrementalChecker;
+
 public class ValTests extends LangTest
 {
     /**
@@ -108,4 +113,105 @@ public class ValTests extends LangTest
         runTypeTest("absFunc", "val abs := fn x -> if x < 0 then -1 * x else x;", "int -> int");
         runEvalTest("absFunc", "val abs := fn x -> if x < 0 then -1 * x else x;", "abs");
     }
+
+    /**
+     * A function bound by a val or a let is generic, each use may be at a
+     * different type.
+     */
+    @Test
+    public void polymorphicVal()
+    {
+        String prog = "val id x := x; if id(true) then id(1) else id(2);";
+        runTypeTest("polymorphicVal", prog, "int");
+        runEvalTest("polymorphicVal", prog, "1");
+
+        prog = "val twice f := fn x -> f(f(x)); "
+                + "(twice(fn x -> x * 2))(3) "
+                + "+ len((twice(fn l -> tl(l)))([1, 2, 3]));";
+        runTypeTest("polymorphicVal", prog, "int");
+        runEvalTest("polymorphicVal", prog, "13");
+
+        prog = "let pair := fn x -> [x, x] in "
+                + "len(pair(1)) + len(pair(true));";
+        runTypeTest("polymorphicVal", prog, "int");
+        runEvalTest("polymorphicVal", prog, "4");
+    }
+
+    /**
+     * A memoized function computes the result for an argument once, so an
+     * exponential recursion becomes linear. The result must not depend on
+     * the size or eviction policy of the cache.
+     */
+    @Test
+    public void memoVal()
+    {
+        String prog = "memo val fib n := if n < 2 then n "
+                + "else fib(n - 1) + fib(n - 2); fib(40);";
+        runTypeTest("memoVal", prog, "int");
+        runEvalTest("memoVal", prog, "102334155");
+        runEvalTest("memoVal", "memo val sum lst := if len(lst) = 0 then 0 "
+                + "else hd(lst) + sum(tl(lst)); sum([1, 2, 3]) + sum([1, 2, 3]);",
+                "12");
+
+        try
+        {
+            Memoizer.setCapacity(4);
+            Memoizer.setPolicy(MemoCache.Policy.TINYLFU);
+            runEvalTest("memoVal", "memo val fib n := if n < 2 then n "
+                    + "else fib(n - 1) + fib(n - 2); fib(25);", "75025");
+        }
+        finally
+        {
+            Memoizer.setCapacity(10000);
+            Memoizer.setPolicy(MemoCache.Policy.LRU);
+        }
+    }
+
+    /**
+     * Checking the definitions of a program on several workers must give
+     * the types the sequential checker gives, whatever order the
+     * independent definitions are checked in.
+     */
+    @Test
+    public void parallelVal()
+    {
+        String prog = "val id x := x; val a := id(1); val b := id(true); "
+                + "val fact n := if n < 2 then 1 else n * fact(n - 1); "
+                + "val pair x := [x, x]; val c := if b then fact(a + 4) "
+                + "else 0; val d := len(pair(b)); c + d;";
+
+        try
+        {
+            ParallelMap.setParallelism(4);
+            ParallelMap.setCheckThreshold(2);
+            runTypeTest("parallelVal", prog, "int");
+            runEvalTest("parallelVal", prog, "122");
+            runTypeTest("parallelVal", "val id x := x; val f := id; f;",
+                    "t0 -> t0");
+        }
+        finally
+        {
+            ParallelMap.setParallelism(1);
+            ParallelMap.setCheckThreshold(64);
+        }
+    }
+
+    /**
+     * Checking a program again only infers the definitions that changed
+     * and the definitions using them.
+     */
+    @Test
+    public void incrementalVal()
+    {
+        IncrementalChecker checker = new IncrementalChecker();
+        String prog = "val id x := x; val sq x := x * x; val a := sq(3); "
+                + "val b := id(true); val c := a + 1; if b then c else 0;";
+
+        runIncrementalTest("incrementalVal", checker, prog, "10", 5);
+        runIncrementalTest("incrementalVal", checker, prog, "10", 0);
+        runIncrementalTest("incrementalVal", checker,
+                prog.replace("val a := sq(3);", "val a := sq(4);"), "17", 2);
+        runIncrementalTest("incrementalVal", checker,
+                prog.replace("x * x", "x + x"), "7", 3);
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import environment.Environment;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Measures the cost of a function call and of an environment copy as the
+ * number of top-level values in scope grows. Both should stay flat.
+ */
+public class EnvironmentBenchmark
+{
+    private static final int[] SCOPE_SIZES = { 10, 100, 1000, 10000 };
+    private static final int CALLS = 2000;    // Calls per evaluation.
+    private static final int WARMUP = 1000;   // Untimed evaluations.
+    private static final int ROUNDS = 200;    // Timed evaluations.
+
+    /**
+     * Evaluates {@code src} under {@code env}, as the interactive mode does.
+     *
+     * @param env the environment to evaluate under.
+     * @param src the program text.
+     * @return the tree that was evaluated.
+     */
+    private static SyntaxTree run(Environment env, String src)
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = new MFLParser(src).parse();
+        ast.setEnvironment(env);
+        ast.evaluate();
+        return ast;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        System.out.printf("%10s %16s %16s%n", "vals", "ns/call", "ns/copy");
+        for (int n : SCOPE_SIZES)
+        {
+            Environment env = new Environment();
+            for (int i = 0; i < n; i++)
+                run(env, "val v" + i + " := " + i + ";");
+            run(env, "val count := fn n -> if n = 0 then 0 else count(n - 1);");
+
+            SyntaxTree call = new MFLParser("count(" + CALLS + ");").parse();
+            call.setEnvironment(env);
+
+            // Warm up, then time.
+            for (int i = 0; i < WARMUP; i++)
+                call.evaluate();
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++)
+                call.evaluate();
+            double perCall = (System.nanoTime() - start)
+                    / (double) (ROUNDS * (CALLS + 1));
+
+            Environment sink = null;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS * CALLS; i++)
+                sink = env.copy();
+            double perCopy = (System.nanoTime() - start)
+                    / (double) (ROUNDS * CALLS);
+            if (sink.lookup(new lexer.Token(lexer.TokenType.ID, "v0")) == null)
+                throw new IllegalStateException("snapshot lost a value");
+
+            System.out.printf("%10d %16.1f %16.1f%n", n, perCall, perCopy);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import ast.SyntaxTree;
+import ast.nodes.IncrementalChecker;
+import parser.MFLParser;
+
+/**
+ * Measures the time to check a program of thousands of definitions again
+ * after one of them is edited, compared to checking it from scratch.
+ */
+public class IncrementalCheckBenchmark
+{
+    private static final int DEFS = 5000;     // The definitions of the program.
+    private static final int WARMUP = 20;     // Untimed checks.
+    private static final int ROUNDS = 50;     // Timed checks.
+
+    /**
+     * Builds a program of {@code DEFS} definitions, pairs of a function and
+     * a value using it. Every fiftieth value also uses the one before it.
+     *
+     * @param edit the definition to write differently.
+     * @return the program text.
+     */
+    private static String program(int edit)
+    {
+        StringBuilder src = new StringBuilder();
+        for (int i = 0; i < DEFS; i += 2)
+        {
+            src.append("val f").append(i).append(" x := [x + ")
+                    .append(i == edit ? 1 : 0).append(", x * 2];\n");
+            src.append("val v").append(i).append(" := len(f").append(i)
+                    .append("(").append(i).append("))");
+            if (i % 100 == 0 && i > 0)
+                src.append(" + v").append(i - 2);
+            src.append(";\n");
+        }
+        src.append("v0;\n");
+        return src.toString();
+    }
+
+    /**
+     * Get the time, in milliseconds, to check {@code src} with
+     * {@code checker}.
+     *
+     * @param src     the program text.
+     * @param checker the checker, or null to check from scratch.
+     * @return the time of the check.
+     */
+    private static double time(String src, IncrementalChecker checker)
+            throws Exception
+    {
+        SyntaxTree ast = new MFLParser(src).parse();
+        if (checker != null)
+            ast.setChecker(checker);
+
+        long start = System.nanoTime();
+        if (!ast.typeCheck())
+            throw new IllegalStateException("program does not check");
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        IncrementalChecker checker = new IncrementalChecker();
+        double full = 0;
+        double again = 0;
+        for (int i = 0; i < WARMUP + ROUNDS; i++)
+        {
+            double f = time(program(-1), null);
+
+            // Every round edits a different definition near the middle.
+            time(program(-1), checker);
+            double a = time(program(DEFS / 2 + 2 * i), checker);
+            if (i >= WARMUP)
+            {
+                full += f;
+                again += a;
+            }
+        }
+
+        System.out.printf("%10s %16s %16s %16s%n", "defs", "ms/full",
+                "ms/edited", "inferred");
+        System.out.printf("%10d %16.2f %16.2f %16d%n", DEFS, full / ROUNDS,
+                again / ROUNDS, checker.getInferred());
+    }
+}
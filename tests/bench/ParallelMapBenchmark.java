@@ -0,0 +1,96 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import ast.ParallelMap;
+import ast.SyntaxTree;
+import parser.MFLParser;
+
+/**
+ * Compares a map applied sequentially with a map split between the workers
+ * of a parallel map, as the length of the list and the number of workers
+ * grow. Each element costs a naive call of fib.
+ */
+public class ParallelMapBenchmark
+{
+    private static final int[] LIST_SIZES = { 100, 1000, 10000 };
+    private static final int[] LEVELS = { 1, 2, 4, 8 };
+    private static final int ELEMENT = 10;    // The argument of fib.
+    private static final int WARMUP = 10;     // Untimed evaluations.
+    private static final int ROUNDS = 10;     // Timed evaluations.
+
+    /**
+     * Builds a program mapping fib over a list of {@code n} elements.
+     *
+     * @param n the length of the list.
+     * @return the program text.
+     */
+    private static String program(int n)
+    {
+        StringBuilder src = new StringBuilder();
+        src.append("val fib := fn n -> if n < 2 then n else ");
+        src.append("fib(n - 1) + fib(n - 2);\n");
+        src.append("map(fib [");
+        for (int i = 0; i < n; i++)
+            src.append(i == 0 ? "" : ", ").append(ELEMENT);
+        src.append("]);");
+        return src.toString();
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        System.out.printf("%10s", "elements");
+        for (int level : LEVELS)
+            System.out.printf(" %13s", level + " thr ms");
+        System.out.println();
+
+        ParallelMap.setThreshold(2);
+        for (int n : LIST_SIZES)
+        {
+            System.out.printf("%10d", n);
+            for (int level : LEVELS)
+            {
+                ParallelMap.setParallelism(level);
+
+                // Each run defines fib, so each needs a tree of its own.
+                SyntaxTree[] runs = new SyntaxTree[WARMUP + ROUNDS];
+                for (int i = 0; i < runs.length; i++)
+                {
+                    runs[i] = new MFLParser(program(n)).parse();
+                    runs[i].getType();
+                }
+
+                // Warm up, then time.
+                for (int i = 0; i < WARMUP; i++)
+                    runs[i].evaluate();
+                long start = System.nanoTime();
+                for (int i = WARMUP; i < runs.length; i++)
+                    runs[i].evaluate();
+                double perRun = (System.nanoTime() - start)
+                        / (double) ROUNDS / 1e6;
+                System.out.printf(" %13.2f", perRun);
+            }
+            System.out.println();
+        }
+        ParallelMap.setParallelism(1);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package bench;
+
+import ast.SyntaxTree;
+import parser.MFLParser;
+
+/**
+ * Measures the time to type check deeply nested functions and lets as the
+ * nesting depth grows. Every level opens a new scope, so the time per level
+ * should stay flat.
+ */
+public class TypeCheckBenchmark
+{
+    private static final int[] DEPTHS = { 1000, 2000, 4000, 8000 };
+    private static final int WARMUP = 5;      // Untimed checks.
+    private static final int ROUNDS = 10;     // Timed checks.
+    private static final long STACK = 1L << 28; // The stack of the thread.
+
+    /**
+     * Builds a function of {@code n} curried parameters adding the first and
+     * the last.
+     *
+     * @param n the nesting depth.
+     * @return the program text.
+     */
+    private static String lambdas(int n)
+    {
+        StringBuilder src = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            src.append("fn x").append(i).append(" -> ");
+        src.append("x0 + x").append(n - 1).append(";");
+        return src.toString();
+    }
+
+    /**
+     * Builds {@code n} nested lets, each using the one before it.
+     *
+     * @param n the nesting depth.
+     * @return the program text.
+     */
+    private static String lets(int n)
+    {
+        StringBuilder src = new StringBuilder("let v0 := 0 in ");
+        for (int i = 1; i < n; i++)
+            src.append("let v").append(i).append(" := v").append(i - 1)
+                    .append(" + 1 in ");
+        src.append("v").append(n - 1).append(";");
+        return src.toString();
+    }
+
+    /**
+     * Get the average time, in microseconds, to type check {@code src}.
+     *
+     * @param src the program text.
+     * @return the time per check.
+     */
+    private static double time(String src) throws Exception
+    {
+        for (int i = 0; i < WARMUP; i++)
+            check(src);
+
+        long elapsed = 0;
+        for (int i = 0; i < ROUNDS; i++)
+        {
+            SyntaxTree ast = new MFLParser(src).parse();
+            long start = System.nanoTime();
+            if (!ast.typeCheck())
+                throw new IllegalStateException("program does not check");
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed / (ROUNDS * 1000.0);
+    }
+
+    /**
+     * Parses and type checks {@code src}.
+     *
+     * @param src the program text.
+     */
+    private static void check(String src) throws Exception
+    {
+        if (!new MFLParser(src).parse().typeCheck())
+            throw new IllegalStateException("program does not check");
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        // The parser and the checker recurse once per level.
+        Thread t = new Thread(null, () -> {
+            try
+            {
+                run();
+            }
+            catch (Exception ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }, "bench", STACK);
+        t.start();
+        t.join();
+    }
+
+    /**
+     * Time the checks at each depth.
+     */
+    private static void run() throws Exception
+    {
+        System.out.printf("%10s %16s %16s %16s %16s%n", "depth", "us/lambdas",
+                "ns/level", "us/lets", "ns/level");
+        for (int n : DEPTHS)
+        {
+            double fun = time(lambdas(n));
+            double let = time(lets(n));
+            System.out.printf("%10d %16.1f %16.1f %16.1f %16.1f%n", n, fun,
+                    fun * 1000 / n, let, let * 1000 / n);
+        }
+    }
+}